@@ -1,14 +1,17 @@
 package de.timroes.axmlrpc;
 
 import de.timroes.axmlrpc.serializer.SerializerHandler;
-import de.timroes.axmlrpc.xmlcreator.SimpleXMLCreator;
-import de.timroes.axmlrpc.xmlcreator.XmlElement;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 
 /**
  * A Call object represents a call of a remote methode.
  * It contains the name of the method to be called and the parameters to use
  * in this remote procedure call. To send it over the network the method getXML
- * returns an xml representation according to the XML-RPC specification as a String.
+ * returns an xml representation according to the XML-RPC specification as a String,
+ * while writeXML writes that same representation to a stream.
  *
  * @author Tim Roes
  */
@@ -46,41 +49,44 @@ public class Call {
 	 * @see XMLRPCClient
 	 */
 	public String getXML() throws XMLRPCException {
+		StringWriter writer = new StringWriter();
+		try {
+			writeXML(writer);
+		} catch (IOException e) {
+			// A StringWriter never fails
+			throw new XMLRPCException(e);
+		}
+		return writer.toString();
+	}
 
-		SimpleXMLCreator creator = new SimpleXMLCreator();
-
-		XmlElement methodCall = new XmlElement(XMLRPCClient.METHOD_CALL);
-		creator.setRootElement(methodCall);
+	/**
+	 * Write the xml representation of the method call, as returned by getXML,
+	 * directly to a writer. The parameters are serialized while they are
+	 * written, so the full xml is never held in memory.
+	 *
+	 * @param writer The writer to write the xml to.
+	 * @throws XMLRPCException Will be thrown whenever the xml representation cannot
+	 * 		be build without errors.
+	 * @throws IOException Will be thrown whenever writing to the writer failed.
+	 */
+	public void writeXML(Writer writer) throws XMLRPCException, IOException {
 
-		XmlElement methodName = new XmlElement(XMLRPCClient.METHOD_NAME);
-		methodName.setContent(method);
-		methodCall.addChildren(methodName);
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		writer.write("<" + XMLRPCClient.METHOD_CALL + ">");
+		writer.write("<" + XMLRPCClient.METHOD_NAME + ">" + method + "</" + XMLRPCClient.METHOD_NAME + ">");
 
 		if(params != null && params.length > 0) {
-			XmlElement params = new XmlElement(XMLRPCClient.PARAMS);
-			methodCall.addChildren(params);
-
+			writer.write("<" + XMLRPCClient.PARAMS + ">");
 			for(Object o : this.params) {
-				params.addChildren(getXMLParam(o));
+				writer.write("<" + XMLRPCClient.PARAM + "><" + XMLRPCClient.VALUE + ">");
+				SerializerHandler.getDefault().write(o, writer);
+				writer.write("</" + XMLRPCClient.VALUE + "></" + XMLRPCClient.PARAM + ">");
 			}
+			writer.write("</" + XMLRPCClient.PARAMS + ">");
 		}
 
-		return creator.toString();
-	}
+		writer.write("</" + XMLRPCClient.METHOD_CALL + ">");
 
-	/**
-	 * Generates the param xml tag for a specific parameter object.
-	 *
-	 * @param o The parameter object.
-	 * @return The object serialized into an xml tag.
-	 * @throws XMLRPCException Will be thrown if the serialization failed.
-	 */
-	private XmlElement getXMLParam(Object o) throws XMLRPCException {
-		XmlElement param = new XmlElement(XMLRPCClient.PARAM);
-		XmlElement value = new XmlElement(XMLRPCClient.VALUE);
-		param.addChildren(value);
-		value.addChildren(SerializerHandler.getDefault().serialize(o));
-		return param;
 	}
 
 }
@@ -0,0 +1,105 @@
+package de.timroes.axmlrpc;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.protocol.HTTP;
+
+/**
+ * A http request entity that writes the xml of a Call straight onto the
+ * connection, rather than first building it as one String in memory. The
+ * content length is counted up front by serializing once without keeping the
+ * output, so the request is not sent chunked; some XML-RPC servers (such as
+ * SCGI gateways) do not accept that.
+ */
+class CallEntity extends AbstractHttpEntity {
+
+	private final Call call;
+	private final long contentLength;
+
+	/**
+	 * Create an entity for the given call.
+	 *
+	 * @param call The call to write as request body.
+	 * @throws XMLRPCException Will be thrown whenever the xml representation cannot
+	 * 		be build without errors.
+	 */
+	public CallEntity(Call call) throws XMLRPCException {
+		this.call = call;
+		CountingOutputStream counter = new CountingOutputStream();
+		try {
+			write(counter);
+		} catch (IOException e) {
+			// Counting never fails
+			throw new XMLRPCException(e);
+		}
+		this.contentLength = counter.count;
+		setContentType(XMLRPCClient.TYPE_XML);
+	}
+
+	private void write(OutputStream outstream) throws XMLRPCException, IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(outstream, HTTP.UTF_8));
+		call.writeXML(writer);
+		writer.flush();
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+		try {
+			return new ByteArrayInputStream(call.getXML().getBytes(HTTP.UTF_8));
+		} catch (XMLRPCException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public void writeTo(OutputStream outstream) throws IOException {
+		try {
+			write(outstream);
+		} catch (XMLRPCException e) {
+			// Already serialized once when counting the content length
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+	/**
+	 * Output stream that only counts the bytes written to it.
+	 */
+	private static class CountingOutputStream extends OutputStream {
+
+		private long count = 0;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+
+	}
+
+}
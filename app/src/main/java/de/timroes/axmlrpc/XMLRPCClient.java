@@ -4,15 +4,26 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.params.ClientPNames;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.protocol.HTTP;
 
 import de.timroes.axmlrpc.serializer.SerializerHandler;
 
@@ -137,6 +148,23 @@ public class XMLRPCClient {
 	public static final int FLAGS_APACHE_WS = FLAGS_IGNORE_NAMESPACES | FLAGS_NIL
 			| FLAGS_DEFAULT_TYPE_STRING;
 
+	/**
+	 * The maximum number of threads that run asynchronous calls, shared by all
+	 * clients.
+	 */
+	static final int ASYNC_MAX_THREADS = 4;
+
+	/**
+	 * The maximum number of asynchronous calls that run at the same time against
+	 * a single server; further calls wait in line for their turn.
+	 */
+	static final int ASYNC_MAX_CALLS_PER_SERVER = 2;
+
+	private static ThreadPoolExecutor asyncExecutor;
+	private static ScheduledExecutorService deadlineExecutor;
+	private static final Map<String,ServerQueue> serverQueues = new HashMap<String, ServerQueue>();
+	private static final AtomicLong nextCallId = new AtomicLong(System.currentTimeMillis());
+
 	private final int flags;
 
 	private DefaultHttpClient httpclient;
@@ -217,8 +245,37 @@ public class XMLRPCClient {
 	 * @return The id of the current request.
 	 */
 	public long callAsync(XMLRPCCallback listener, String methodName, Object... params) {
-		long id = System.currentTimeMillis();
-		new Caller(listener, id, methodName, params).start();
+		return callAsync(listener, 0, methodName, params);
+	}
+
+	/**
+	 * Asynchronously call a remote procedure on the server, as callAsync does, but
+	 * with a deadline. If the server did not respond within the given time
+	 * (including the time the call waited for its turn), the call is cancelled
+	 * and the onError method is called with an XMLRPCTimeoutException.
+	 * Asynchronous calls run on a small, shared pool of threads and at most
+	 * ASYNC_MAX_CALLS_PER_SERVER of them run against the same server at a time.
+	 *
+	 * @param listener A listener, which will be notified about the server response or errors.
+	 * @param deadlineMillis The time in milliseconds after which the call is abandoned,
+	 * 		or 0 to wait for as long as the connection allows.
+	 * @param methodName A method name to call on the server.
+	 * @param params An array of parameters for the method.
+	 * @return The id of the current request.
+	 */
+	public long callAsync(XMLRPCCallback listener, long deadlineMillis, String methodName, Object... params) {
+		long id = nextCallId.incrementAndGet();
+		final Caller caller = new Caller(listener, id, methodName, params);
+		backgroundCalls.put(id, caller);
+		if(deadlineMillis > 0) {
+			caller.deadline = getDeadlineExecutor().schedule(new Runnable() {
+				@Override
+				public void run() {
+					caller.timeout();
+				}
+			}, deadlineMillis, TimeUnit.MILLISECONDS);
+		}
+		getServerQueue().submit(caller);
 		return id;
 	}
 
@@ -235,18 +292,77 @@ public class XMLRPCClient {
 			return;
 		}
 
-		// Cancel the thread
+		// Cancel the call; if it did not start yet it will never run
 		cancel.cancel();
+		if(getServerQueue().remove(cancel)) {
+			cancel.finish();
+		}
 
 		try {
-			// Wait for the thread
-			cancel.join();
+			// Wait for the call to finish
+			cancel.done.await();
 		} catch (InterruptedException ex) {
 			// Ignore this
 		}
 
 	}
 
+	/**
+	 * Returns the queue of asynchronous calls to the server of this client.
+	 * Clients that connect to the same host and port share a queue.
+	 *
+	 * @return The queue to submit asynchronous calls to.
+	 */
+	private ServerQueue getServerQueue() {
+		String server;
+		try {
+			URI uri = URI.create(url);
+			server = uri.getHost() + ":" + uri.getPort();
+		} catch (IllegalArgumentException e) {
+			server = url;
+		}
+		synchronized (serverQueues) {
+			ServerQueue queue = serverQueues.get(server);
+			if(queue == null) {
+				queue = new ServerQueue();
+				serverQueues.put(server, queue);
+			}
+			return queue;
+		}
+	}
+
+	/**
+	 * Returns the thread pool that runs asynchronous calls, creating it when
+	 * first needed. Idle threads are stopped after a while.
+	 *
+	 * @return The shared thread pool.
+	 */
+	private static synchronized ThreadPoolExecutor getAsyncExecutor() {
+		if(asyncExecutor == null) {
+			asyncExecutor = new ThreadPoolExecutor(ASYNC_MAX_THREADS, ASYNC_MAX_THREADS, 30, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("XMLRPCCaller"));
+			asyncExecutor.allowCoreThreadTimeOut(true);
+		}
+		return asyncExecutor;
+	}
+
+	/**
+	 * Returns the single thread that cancels asynchronous calls which passed
+	 * their deadline, creating it when first needed.
+	 *
+	 * @return The shared deadline scheduler.
+	 */
+	private static synchronized ScheduledExecutorService getDeadlineExecutor() {
+		if(deadlineExecutor == null) {
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+					new NamedThreadFactory("XMLRPCDeadline"));
+			executor.setKeepAliveTime(30, TimeUnit.SECONDS);
+			executor.allowCoreThreadTimeOut(true);
+			deadlineExecutor = executor;
+		}
+		return deadlineExecutor;
+	}
+
 	/**
 	 * Create a call object from a given method string and parameters.
 	 *
@@ -276,17 +392,20 @@ public class XMLRPCClient {
 
 	/**
 	 * The Caller class is used to make asynchronous calls to the server.
-	 * For synchronous calls the Thread function of this class isn't used.
+	 * For synchronous calls the Runnable function of this class isn't used.
 	 */
-	private class Caller extends Thread {
+	private class Caller implements Runnable {
 
 		private XMLRPCCallback listener;
 		private long threadId;
 		private String methodName;
 		private Object[] params;
 
-		HttpPost post = null;
+		volatile HttpPost post = null;
 		private volatile boolean canceled;
+		private volatile boolean timedOut;
+		ScheduledFuture<?> deadline = null;
+		final CountDownLatch done = new CountDownLatch(1);
 
 		/**
 		 * Create a new Caller for asynchronous use.
@@ -305,14 +424,14 @@ public class XMLRPCClient {
 
 		/**
 		 * Create a new Caller for synchronous use.
-		 * If the caller has been created with this constructor you cannot use the
-		 * start method to start it as a thread. But you can call the call method
-		 * on it for synchronous use.
+		 * If the caller has been created with this constructor you cannot submit
+		 * it to run asynchronously. But you can call the call method on it for
+		 * synchronous use.
 		 */
 		public Caller() { }
 
 		/**
-		 * The run method is invoked when the thread gets started.
+		 * The run method is invoked when the call gets its turn on the thread pool.
 		 * This will only work, if the Caller has been created with parameters.
 		 * It execute the call method and notify the listener about the result.
 		 */
@@ -323,7 +442,9 @@ public class XMLRPCClient {
 				return;
 
 			try {
-				backgroundCalls.put(threadId, this);
+				if(canceled) {
+					throw new CancelException();
+				}
 				Object o = this.call(methodName, params);
 				listener.onResponse(threadId, o);
 			} catch(XMLRPCServerException ex) {
@@ -331,8 +452,11 @@ public class XMLRPCClient {
 			} catch (XMLRPCException ex) {
 				listener.onError(threadId, ex);
 			} catch (CancelException e) {
+				if(timedOut) {
+					listener.onError(threadId, new XMLRPCTimeoutException("The XMLRPC call passed its deadline."));
+				}
 			} finally {
-				backgroundCalls.remove(threadId);
+				finish();
 			}
 
 		}
@@ -344,8 +468,34 @@ public class XMLRPCClient {
 			// Set the flag, that this thread has been canceled
 			canceled = true;
 			// Disconnect the connection to the server
-			if (post != null)
-				post.abort();
+			HttpPost running = post;
+			if (running != null)
+				running.abort();
+		}
+
+		/**
+		 * Cancel this call because it passed its deadline. The listener will be
+		 * told about the timeout.
+		 */
+		void timeout() {
+			timedOut = true;
+			cancel();
+			if(getServerQueue().remove(this)) {
+				// It never started, so report the timeout here
+				listener.onError(threadId, new XMLRPCTimeoutException("The XMLRPC call passed its deadline."));
+				finish();
+			}
+		}
+
+		/**
+		 * Clean up after this call has run or was removed before it could run.
+		 */
+		void finish() {
+			if(deadline != null) {
+				deadline.cancel(false);
+			}
+			backgroundCalls.remove(threadId);
+			done.countDown();
 		}
 
 		/**
@@ -369,13 +519,16 @@ public class XMLRPCClient {
 
 				Call c = createCall(methodName, params);
 				
-				// Prepare POST request
-				// FIXME: where creating a new HttpPost so calling #cancel isn't going to do anything
+				// Prepare POST request; it is remembered so that #cancel can abort it
 				HttpPost post = new HttpPost(url);
+				this.post = post;
+				if(canceled) {
+					throw new CancelException();
+				}
 				post.getParams().setParameter(ClientPNames.HANDLE_REDIRECTS, false);
 				post.setHeader(CONTENT_TYPE, TYPE_XML);
-				StringEntity entity = new StringEntity(c.getXML(), HTTP.UTF_8);
-				entity.setContentType(TYPE_XML);
+				// Stream the xml onto the connection, as it may hold large (base64) values
+				CallEntity entity = new CallEntity(c);
 				post.setEntity(entity);
 				
 				HttpResponse response = httpclient.execute(post);
@@ -465,6 +618,85 @@ public class XMLRPCClient {
 		
 	}
 	
+	/**
+	 * Runs the asynchronous calls to one server on the shared thread pool, with
+	 * at most ASYNC_MAX_CALLS_PER_SERVER at the same time.
+	 */
+	private static class ServerQueue {
+
+		private final ArrayDeque<Caller> waiting = new ArrayDeque<Caller>();
+		private int running = 0;
+
+		/**
+		 * Run the call now if this server has room for it, or else when an earlier
+		 * call to this server finished.
+		 *
+		 * @param caller The call to run.
+		 */
+		synchronized void submit(Caller caller) {
+			if(running < ASYNC_MAX_CALLS_PER_SERVER) {
+				running++;
+				execute(caller);
+			} else {
+				waiting.add(caller);
+			}
+		}
+
+		/**
+		 * Remove a call that did not start yet.
+		 *
+		 * @param caller The call to remove.
+		 * @return True if the call was still waiting and will now never run.
+		 */
+		synchronized boolean remove(Caller caller) {
+			return waiting.remove(caller);
+		}
+
+		private void execute(final Caller caller) {
+			getAsyncExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						caller.run();
+					} finally {
+						next();
+					}
+				}
+			});
+		}
+
+		private synchronized void next() {
+			Caller caller = waiting.poll();
+			if(caller != null) {
+				execute(caller);
+			} else {
+				running--;
+			}
+		}
+
+	}
+
+	/**
+	 * Creates named daemon threads, so that pending calls never keep the process alive.
+	 */
+	private static class NamedThreadFactory implements ThreadFactory {
+
+		private final String name;
+		private final AtomicInteger count = new AtomicInteger();
+
+		NamedThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
 	public static class CancelException extends Exception {
 		private static final long serialVersionUID = 9125122307255855136L;
 	}
@@ -8,6 +8,7 @@ import de.timroes.axmlrpc.xmlcreator.XmlElement;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -288,4 +289,56 @@ public class SerializerHandler {
 
 	}
 
+	/**
+	 * Serialize an object directly onto a writer, as the type element for the use
+	 * within a value tag. Base64 data, arrays and structs are written as they are
+	 * traversed, so (large) values are never held in memory in serialized form.
+	 * All other values are written as serialize() would create them.
+	 *
+	 * @param object The object that should be serialized.
+	 * @param writer The writer to write the xml representation to.
+	 * @throws XMLRPCException Will be thrown, if an error occurs (e.g. the object
+	 * 		cannot be serialized to an xml element.
+	 * @throws IOException Will be thrown, if writing to the writer failed.
+	 */
+	public void write(Object object, Writer writer) throws XMLRPCException, IOException {
+
+		if(object instanceof byte[] || object instanceof Byte[]) {
+			byte[] bytes;
+			if(object instanceof Byte[]) {
+				Byte[] boxed = (Byte[])object;
+				bytes = new byte[boxed.length];
+				for(int i = 0; i < bytes.length; i++) {
+					bytes[i] = boxed[i];
+				}
+			} else {
+				bytes = (byte[])object;
+			}
+			writer.write("<" + TYPE_BASE64 + ">");
+			de.timroes.base64.Base64.encode(bytes, writer);
+			writer.write("</" + TYPE_BASE64 + ">");
+		} else if(object instanceof Map) {
+			writer.write("<" + TYPE_STRUCT + ">");
+			for(Map.Entry<?,?> member : ((Map<?,?>)object).entrySet()) {
+				writer.write("<" + TAG_MEMBER + "><" + TAG_NAME + ">");
+				writer.write(String.valueOf(member.getKey()));
+				writer.write("</" + TAG_NAME + "><" + TAG_VALUE + ">");
+				write(member.getValue(), writer);
+				writer.write("</" + TAG_VALUE + "></" + TAG_MEMBER + ">");
+			}
+			writer.write("</" + TYPE_STRUCT + ">");
+		} else if(object instanceof Iterable<?>) {
+			writer.write("<" + TYPE_ARRAY + "><" + TAG_DATA + ">");
+			for(Object obj : (Iterable<?>)object) {
+				writer.write("<" + TAG_VALUE + ">");
+				write(obj, writer);
+				writer.write("</" + TAG_VALUE + ">");
+			}
+			writer.write("</" + TAG_DATA + "></" + TYPE_ARRAY + ">");
+		} else {
+			writer.write(serialize(object).toString());
+		}
+
+	}
+
 }
\ No newline at end of file
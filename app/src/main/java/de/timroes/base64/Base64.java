@@ -1,5 +1,7 @@
 package de.timroes.base64;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 
 /**
@@ -114,6 +116,40 @@ public class Base64 {
 		return builder.toString();
 	}
 
+	/**
+	 * Encode a byte array directly onto a writer, in the same format as encode(byte[]) but
+	 * without building the encoded string in memory first.
+	 *
+	 * @param in The bytes to encode.
+	 * @param out The writer to write the encoded characters to.
+	 * @throws IOException Will be thrown if writing to the writer failed.
+	 */
+	public static void encode(byte[] in, Writer out) throws IOException {
+		// Buffer a number of complete lines of 72 characters plus their line break
+		char[] buffer = new char[73 * 16];
+		int pos = 0;
+		int written = 0;
+		int b1, b2, b3;
+		for(int i = 0; i < in.length; i+=3) {
+			b1 = in[i] & 0xFF;
+			b2 = i + 1 < in.length ? in[i+1] & 0xFF : 0;
+			b3 = i + 2 < in.length ? in[i+2] & 0xFF : 0;
+			buffer[pos++] = code[(b1 >>> 2) + 1];
+			buffer[pos++] = code[(((b1 & 0x03) << 4) | (b2 >>> 4)) + 1];
+			buffer[pos++] = i + 1 < in.length ? code[(((b2 & 0x0F) << 2) | (b3 >>> 6)) + 1] : code[0];
+			buffer[pos++] = i + 2 < in.length ? code[(b3 & 0x3F) + 1] : code[0];
+			written += 4;
+			if(written % 72 == 0) {
+				buffer[pos++] = '\n';
+				if(pos == buffer.length) {
+					out.write(buffer, 0, pos);
+					pos = 0;
+				}
+			}
+		}
+		out.write(buffer, 0, pos);
+	}
+
 	/**
 	 * Encode a String and return the encoded byte array. Bytes that has been
 	 * appended to pad the string to a multiple of four are set to -1 in the array.
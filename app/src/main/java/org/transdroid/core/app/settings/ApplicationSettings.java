@@ -19,6 +19,7 @@ package org.transdroid.core.app.settings;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.preference.PreferenceManager;
 import android.text.TextUtils;
 
@@ -38,6 +39,8 @@ import org.transdroid.core.seedbox.SeedboxProvider;
 import org.transdroid.core.widget.ListWidgetConfig;
 import org.transdroid.daemon.Daemon;
 import org.transdroid.daemon.OS;
+import org.transdroid.daemon.ServerHealth;
+import org.transdroid.daemon.TorrentStore;
 import org.transdroid.daemon.TorrentsSortBy;
 
 import java.security.InvalidParameterException;
@@ -59,24 +62,72 @@ public class ApplicationSettings {
 	@RootContext
 	protected Context context;
 	private SharedPreferences prefs;
+	// Seen RSS items are kept apart, as they are written often and can be large
+	private SharedPreferences seenItemsPrefs;
 	@Bean
 	protected SearchHelper searchHelper;
 
+	// Parsed server, web search and RSS feed settings, which are dropped as soon as the underlying preferences change
+	private List<ServerSetting> allServerSettings = null;
+	private List<ServerSetting> normalServerSettings = null;
+	private List<WebsearchSetting> websearchSettings = null;
+	private List<RssfeedSetting> rssfeedSettings = null;
+	// Kept as field, as the shared preferences only hold a weak reference to its listeners
+	private final OnSharedPreferenceChangeListener settingsChangeListener = new OnSharedPreferenceChangeListener() {
+		@Override
+		public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+			invalidateSettings(key);
+		}
+	};
+
 	protected ApplicationSettings(Context context) {
 		prefs = PreferenceManager.getDefaultSharedPreferences(context);
+		prefs.registerOnSharedPreferenceChangeListener(settingsChangeListener);
+		seenItemsPrefs = context.getSharedPreferences("rssfeed_seenitems", Context.MODE_PRIVATE);
+	}
+
+	/**
+	 * Drops the parsed settings that the changed preference key is part of, so they are loaded again on next access.
+	 * This is called directly after changes made here, as listeners may be notified only later when the change was
+	 * made from a background thread.
+	 * @param key The preference key (or key prefix) that was changed
+	 */
+	private synchronized void invalidateSettings(String key) {
+		if (key == null) {
+			// Preferences were cleared
+			allServerSettings = null;
+			normalServerSettings = null;
+			websearchSettings = null;
+			rssfeedSettings = null;
+			TorrentStore.clear();
+			ServerHealth.clear();
+		} else if (key.startsWith("server_") || key.startsWith("seedbox_")) {
+			allServerSettings = null;
+			normalServerSettings = null;
+			// Server ids may now refer to other servers, or their addresses were corrected
+			TorrentStore.clear();
+			ServerHealth.clear();
+		} else if (key.startsWith("websearch_")) {
+			websearchSettings = null;
+		} else if (key.startsWith("rssfeed_")) {
+			rssfeedSettings = null;
+		}
 	}
 
 	/**
 	 * Returns all available user-configured normal and seed servers
 	 * @return A list of all stored server settings objects
 	 */
-	public List<ServerSetting> getAllServerSettings() {
-		List<ServerSetting> all = new ArrayList<>();
-		all.addAll(getNormalServerSettings());
-		for (SeedboxProvider provider : SeedboxProvider.values()) {
-			all.addAll(provider.getSettings().getAllServerSettings(prefs, all.size()));
+	public synchronized List<ServerSetting> getAllServerSettings() {
+		if (allServerSettings == null) {
+			List<ServerSetting> all = new ArrayList<>();
+			all.addAll(getNormalServerSettings());
+			for (SeedboxProvider provider : SeedboxProvider.values()) {
+				all.addAll(provider.getSettings().getAllServerSettings(prefs, all.size()));
+			}
+			allServerSettings = Collections.unmodifiableList(all);
 		}
-		return all;
+		return allServerSettings;
 	}
 
 	/**
@@ -99,6 +150,10 @@ public class ApplicationSettings {
 	 * @return The server settings object, loaded from shared preferences
 	 */
 	public ServerSetting getServerSetting(int order) {
+		List<ServerSetting> all = getAllServerSettings();
+		if (order >= 0 && order < all.size()) {
+			return all.get(order);
+		}
 		int max = getMaxNormalServer() + 1;
 		if (order < max) {
 			return getNormalServerSetting(order);
@@ -117,12 +172,15 @@ public class ApplicationSettings {
 	 * Returns all available normal, user-configured servers (so no seedbox settings)
 	 * @return A list of all stored server settings objects
 	 */
-	public List<ServerSetting> getNormalServerSettings() {
-		List<ServerSetting> servers = new ArrayList<>();
-		for (int i = 0; i <= getMaxNormalServer(); i++) {
-			servers.add(getNormalServerSetting(i));
+	public synchronized List<ServerSetting> getNormalServerSettings() {
+		if (normalServerSettings == null) {
+			List<ServerSetting> servers = new ArrayList<>();
+			for (int i = 0; i <= getMaxNormalServer(); i++) {
+				servers.add(getNormalServerSetting(i));
+			}
+			normalServerSettings = Collections.unmodifiableList(servers);
 		}
-		return Collections.unmodifiableList(servers);
+		return normalServerSettings;
 	}
 
 	/**
@@ -266,6 +324,7 @@ public class ApplicationSettings {
 		}
 
 		edit.apply();
+		invalidateSettings("server_");
 
 	}
 
@@ -384,12 +443,15 @@ public class ApplicationSettings {
 	 * Returns all available user-configured web-based (as opped to in-app) search sites
 	 * @return A list of all stored web search site settings objects
 	 */
-	public List<WebsearchSetting> getWebsearchSettings() {
-		List<WebsearchSetting> websearches = new ArrayList<>();
-		for (int i = 0; i <= getMaxWebsearch(); i++) {
-			websearches.add(getWebsearchSetting(i));
+	public synchronized List<WebsearchSetting> getWebsearchSettings() {
+		if (websearchSettings == null) {
+			List<WebsearchSetting> websearches = new ArrayList<>();
+			for (int i = 0; i <= getMaxWebsearch(); i++) {
+				websearches.add(getWebsearchSetting(i));
+			}
+			websearchSettings = Collections.unmodifiableList(websearches);
 		}
-		return Collections.unmodifiableList(websearches);
+		return websearchSettings;
 	}
 
 	/**
@@ -440,6 +502,7 @@ public class ApplicationSettings {
 		edit.remove("websearch_baseurl_" + max);
 		edit.remove("websearch_cookies_" + max);
 		edit.apply();
+		invalidateSettings("websearch_");
 
 	}
 
@@ -447,12 +510,15 @@ public class ApplicationSettings {
 	 * Returns all available user-configured RSS feeds
 	 * @return A list of all stored RSS feed settings objects
 	 */
-	public List<RssfeedSetting> getRssfeedSettings() {
-		List<RssfeedSetting> rssfeeds = new ArrayList<>();
-		for (int i = 0; i <= getMaxRssfeed(); i++) {
-			rssfeeds.add(getRssfeedSetting(i));
+	public synchronized List<RssfeedSetting> getRssfeedSettings() {
+		if (rssfeedSettings == null) {
+			List<RssfeedSetting> rssfeeds = new ArrayList<>();
+			for (int i = 0; i <= getMaxRssfeed(); i++) {
+				rssfeeds.add(getRssfeedSetting(i));
+			}
+			rssfeedSettings = Collections.unmodifiableList(rssfeeds);
 		}
-		return Collections.unmodifiableList(rssfeeds);
+		return rssfeedSettings;
 	}
 
 	/**
@@ -482,7 +548,8 @@ public class ApplicationSettings {
 				prefs.getString("rssfeed_exclude_" + order, null),
 				prefs.getString("rssfeed_include_" + order, null),
 				lastViewed == -1L ? null : new Date(lastViewed),
-				prefs.getString("rssfeed_lastvieweditemurl_" + order, null));
+				prefs.getString("rssfeed_lastvieweditemurl_" + order, null),
+				RssfeedSeenItems.fromString(seenItemsPrefs.getString("seenitems_" + order, null)));
 		// @formatter:on
 	}
 
@@ -497,6 +564,7 @@ public class ApplicationSettings {
 
 		// Copy all settings higher than the supplied order number to the previous spot
 		Editor edit = prefs.edit();
+		Editor seenItemsEdit = seenItemsPrefs.edit();
 		int max = getMaxRssfeed();
 		for (int i = order; i < max; i++) {
 			edit.putString("rssfeed_name_" + i, prefs.getString("rssfeed_name_" + (i + 1), null));
@@ -507,6 +575,7 @@ public class ApplicationSettings {
 			edit.putString("rssfeed_include_" + i, prefs.getString("rssfeed_include_" + (i + 1), null));
 			edit.putLong("rssfeed_lastviewed_" + i, prefs.getLong("rssfeed_lastviewed_" + (i + 1), -1));
 			edit.putString("rssfeed_lastvieweditemurl_" + i, prefs.getString("rssfeed_lastvieweditemurl_" + (i + 1), null));
+			seenItemsEdit.putString("seenitems_" + i, seenItemsPrefs.getString("seenitems_" + (i + 1), null));
 		}
 
 		// Remove the last settings, of which we are now sure are no longer required
@@ -518,7 +587,10 @@ public class ApplicationSettings {
 		edit.remove("rssfeed_include_" + max);
 		edit.remove("rssfeed_lastviewed_" + max);
 		edit.remove("rssfeed_lastvieweditemurl_" + max);
+		seenItemsEdit.remove("seenitems_" + max);
 		edit.apply();
+		seenItemsEdit.apply();
+		invalidateSettings("rssfeed_");
 
 	}
 
@@ -538,6 +610,20 @@ public class ApplicationSettings {
 		edit.putLong("rssfeed_lastviewed_" + order, lastViewed.getTime());
 		edit.putString("rssfeed_lastvieweditemurl_" + order, lastViewedItemUrl);
 		edit.apply();
+		invalidateSettings("rssfeed_");
+	}
+
+	/**
+	 * Stores for some RSS feed (as identified by its order number/key) the set of items that the user has seen. This
+	 * is used to exactly determine which items in an RSS feed are 'new', even if the feed has no (reliable) dates. The
+	 * sets are stored in their own preferences file, so this does not rewrite (or drop the cached) other settings.
+	 * @param order The identifying order number/key of the settings of the RSS feed that was viewed
+	 * @param seenItems The bounded set of items that the user has seen in this feed
+	 */
+	public void setRssfeedSeenItems(int order, RssfeedSeenItems seenItems) {
+		if (prefs.getString("rssfeed_url_" + order, null) == null)
+			return; // The settings that were requested to be removed do not exist
+		seenItemsPrefs.edit().putString("seenitems_" + order, seenItems.toString()).apply();
 	}
 
 	/**
@@ -698,6 +784,49 @@ public class ApplicationSettings {
 		prefs.edit().putString(server.getUniqueIdentifier(), lastStats.toString()).apply();
 	}
 
+	/**
+	 * Returns the number of consecutive times that the background server checker service failed to reach this server.
+	 * @param server The server for which to retrieve the failure count
+	 * @return The number of failed checks since the last successful one, or 0 if the last check succeeded
+	 */
+	public int getServerFailures(ServerSetting server) {
+		return prefs.getInt(server.getUniqueIdentifier() + "_failures", 0);
+	}
+
+	/**
+	 * Returns the moment before which the background server checker service should not try to reach this server
+	 * again, because it failed to respond recently.
+	 * @param server The server for which to retrieve the backoff moment
+	 * @return The wall clock time in milliseconds until which to skip this server, or 0 if it may be checked directly
+	 */
+	public long getServerRetryAfter(ServerSetting server) {
+		return prefs.getLong(server.getUniqueIdentifier() + "_retryafter", 0);
+	}
+
+	/**
+	 * Stores that the background server checker service failed to reach this server and when it may try again.
+	 * @param server The server that could not be reached
+	 * @param failures The number of consecutive failed checks, including this one
+	 * @param retryAfter The wall clock time in milliseconds until which to skip this server
+	 */
+	public void setServerFailures(ServerSetting server, int failures, long retryAfter) {
+		Editor edit = prefs.edit();
+		edit.putInt(server.getUniqueIdentifier() + "_failures", failures);
+		edit.putLong(server.getUniqueIdentifier() + "_retryafter", retryAfter);
+		edit.apply();
+	}
+
+	/**
+	 * Forgets any earlier failures of the background server checker service to reach this server.
+	 * @param server The server that was successfully reached
+	 */
+	public void clearServerFailures(ServerSetting server) {
+		Editor edit = prefs.edit();
+		edit.remove(server.getUniqueIdentifier() + "_failures");
+		edit.remove(server.getUniqueIdentifier() + "_retryafter");
+		edit.apply();
+	}
+
 	/**
 	 * Returns the user configuration for some specific app widget, if the widget is known at all.
 	 * @param appWidgetId The unique ID of the app widget to retrieve settings for, as supplied by the AppWidgetManager
@@ -0,0 +1,197 @@
+/* 
+ * Copyright 2010-2018 Eric Kok et al.
+ * 
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.app.settings;
+
+import android.text.TextUtils;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Matches titles against a user's include and exclude filters, which are |-separated lists of words. The words are
+ * compiled once into an Aho-Corasick automaton (with case folding), so that checking a title costs a single scan over
+ * its characters, no matter how many filter words there are.
+ * @author Eric Kok
+ */
+public class FilterMatcher {
+
+	private final Automaton excludes;
+	private final Automaton includes;
+	private final boolean includeAll;
+
+	/**
+	 * Compiles the filters of some RSS feed or server; use the cached instance that the settings objects provide where
+	 * possible.
+	 * @param excludeFilter A |-separated list of words that may not be included in the title or it is excluded
+	 * @param includeFilter A |-separated list of words of which one needs to be included in the title or it is excluded
+	 */
+	public FilterMatcher(String excludeFilter, String includeFilter) {
+		List<String> excludeWords = splitWords(excludeFilter);
+		List<String> includeWords = splitWords(includeFilter);
+		this.excludes = excludeWords == null ? null : new Automaton(excludeWords);
+		// An empty word in the include filter includes everything
+		this.includeAll = includeWords == null || includeWords.contains("");
+		this.includes = includeAll ? null : new Automaton(includeWords);
+	}
+
+	/**
+	 * Whether some title passes the filters, that is, it contains one of the include words (if any are set) and none
+	 * of the exclude words.
+	 * @param title The (torrent or item) title to match
+	 * @return True if the title matches the filters, false if it should be excluded
+	 */
+	public boolean matches(String title) {
+		if (title == null) {
+			return includeAll;
+		}
+		if (!includeAll && !includes.isFoundIn(title)) {
+			return false;
+		}
+		return excludes == null || !excludes.isFoundIn(title);
+	}
+
+	/**
+	 * Whether any include or exclude words were set, so that some titles may not match.
+	 * @return True if this filters titles, false if every title matches
+	 */
+	public boolean isFiltering() {
+		return !includeAll || excludes != null;
+	}
+
+	private static List<String> splitWords(String filter) {
+		if (TextUtils.isEmpty(filter)) {
+			return null;
+		}
+		return Arrays.asList(filter.split("\\|"));
+	}
+
+	private static char fold(char c) {
+		return Character.toUpperCase(c);
+	}
+
+	/**
+	 * A compact Aho-Corasick automaton that only tells whether any of its words occurs in some text. Empty words are
+	 * ignored.
+	 */
+	private static class Automaton {
+
+		// Per node the sorted transition characters and their target nodes, the failure link and whether a word ends
+		private char[][] keys;
+		private int[][] targets;
+		private int[] failure;
+		private boolean[] terminal;
+		private int size;
+
+		Automaton(List<String> words) {
+			int capacity = 1;
+			for (String word : words) {
+				capacity += word.length();
+			}
+			keys = new char[capacity][];
+			targets = new int[capacity][];
+			failure = new int[capacity];
+			terminal = new boolean[capacity];
+			size = 1;
+			keys[0] = new char[0];
+			targets[0] = new int[0];
+
+			// Build the trie of all (case folded) words
+			for (String word : words) {
+				if (word.length() == 0) {
+					continue;
+				}
+				int node = 0;
+				for (int i = 0; i < word.length(); i++) {
+					char c = fold(word.charAt(i));
+					int next = child(node, c);
+					if (next < 0) {
+						next = addChild(node, c);
+					}
+					node = next;
+				}
+				terminal[node] = true;
+			}
+
+			// Breadth-first compute the failure links, propagating the word ends along them
+			Queue<Integer> queue = new ArrayDeque<>();
+			for (int target : targets[0]) {
+				failure[target] = 0;
+				queue.add(target);
+			}
+			while (!queue.isEmpty()) {
+				int node = queue.remove();
+				for (int i = 0; i < keys[node].length; i++) {
+					char c = keys[node][i];
+					int target = targets[node][i];
+					int fallback = failure[node];
+					while (fallback > 0 && child(fallback, c) < 0) {
+						fallback = failure[fallback];
+					}
+					int link = child(fallback, c);
+					failure[target] = link < 0 || link == target ? 0 : link;
+					terminal[target] |= terminal[failure[target]];
+					queue.add(target);
+				}
+			}
+		}
+
+		boolean isFoundIn(String text) {
+			int node = 0;
+			for (int i = 0; i < text.length(); i++) {
+				char c = fold(text.charAt(i));
+				int next = child(node, c);
+				while (next < 0 && node > 0) {
+					node = failure[node];
+					next = child(node, c);
+				}
+				node = next < 0 ? 0 : next;
+				if (terminal[node]) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private int child(int node, char c) {
+			int index = Arrays.binarySearch(keys[node], c);
+			return index < 0 ? -1 : targets[node][index];
+		}
+
+		private int addChild(int node, char c) {
+			int created = size++;
+			keys[created] = new char[0];
+			targets[created] = new int[0];
+			// Insert the new transition while keeping the characters sorted
+			int insert = -(Arrays.binarySearch(keys[node], c) + 1);
+			char[] newKeys = new char[keys[node].length + 1];
+			int[] newTargets = new int[newKeys.length];
+			System.arraycopy(keys[node], 0, newKeys, 0, insert);
+			System.arraycopy(targets[node], 0, newTargets, 0, insert);
+			newKeys[insert] = c;
+			newTargets[insert] = created;
+			System.arraycopy(keys[node], insert, newKeys, insert + 1, keys[node].length - insert);
+			System.arraycopy(targets[node], insert, newTargets, insert + 1, targets[node].length - insert);
+			keys[node] = newKeys;
+			targets[node] = newTargets;
+			return created;
+		}
+
+	}
+
+}
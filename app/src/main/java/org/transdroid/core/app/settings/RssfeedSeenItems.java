@@ -0,0 +1,159 @@
+/* 
+ * Copyright 2010-2018 Eric Kok et al.
+ * 
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.app.settings;
+
+import org.transdroid.core.rssparser.Item;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A bounded set of RSS items that the user has seen, identified by a 64-bit hash of their guid (or link). The least
+ * recently seen items are dropped when the set grows beyond a few times the number of items that the feed returns, as
+ * older items can no longer appear as new anyway, so that it stays small to persist. Instances are shared by the
+ * (cached) feed settings, so all access is synchronized.
+ * @author Eric Kok
+ */
+public class RssfeedSeenItems {
+
+	public static final int MIN_SEEN_ITEMS = 100;
+	public static final int MAX_SEEN_ITEMS = 1000;
+	private static final int SEEN_ITEMS_PER_FEED_ITEM = 3;
+
+	private final LinkedHashMap<Long, Boolean> seen = new LinkedHashMap<>(16, 0.75f, true);
+	private int capacity = MIN_SEEN_ITEMS;
+
+	/**
+	 * Restores a seen items set as it was persisted using {@link #toString()}.
+	 * @param persisted The comma-separated list of hashes, or null if nothing was stored yet
+	 * @return A seen items set, which is empty if nothing was persisted yet or the persisted value was invalid
+	 */
+	public static RssfeedSeenItems fromString(String persisted) {
+		RssfeedSeenItems items = new RssfeedSeenItems();
+		if (persisted == null || persisted.length() == 0) {
+			return items;
+		}
+		int start = 0;
+		while (start < persisted.length()) {
+			int end = persisted.indexOf(',', start);
+			if (end < 0) {
+				end = persisted.length();
+			}
+			try {
+				items.seen.put(Long.parseLong(persisted.substring(start, end), Character.MAX_RADIX), Boolean.TRUE);
+			} catch (NumberFormatException e) {
+				// Skip corrupt entries
+			}
+			start = end + 1;
+		}
+		items.capacity = Math.max(MIN_SEEN_ITEMS, Math.min(MAX_SEEN_ITEMS, items.seen.size()));
+		items.trim();
+		return items;
+	}
+
+	public synchronized boolean isEmpty() {
+		return seen.isEmpty();
+	}
+
+	/**
+	 * Returns whether the item was seen before by the user.
+	 * @param item The RSS item to look up
+	 * @return True if the item identity is part of this set, false otherwise or if the item cannot be identified
+	 */
+	public synchronized boolean contains(Item item) {
+		String identity = item.getIdentity();
+		return identity != null && seen.containsKey(hash(identity));
+	}
+
+	/**
+	 * Registers all items as being seen, where the first item in the list is seen as most recent one. The capacity is
+	 * (re)sized to the number of items that the feed returned.
+	 * @param items The items that the user has now seen, being all the items the feed currently returns
+	 */
+	public synchronized void addAll(List<Item> items) {
+		capacity = Math.max(MIN_SEEN_ITEMS, Math.min(MAX_SEEN_ITEMS, items.size() * SEEN_ITEMS_PER_FEED_ITEM));
+		for (int i = items.size() - 1; i >= 0; i--) {
+			String identity = items.get(i).getIdentity();
+			if (identity != null) {
+				seen.put(hash(identity), Boolean.TRUE);
+			}
+		}
+		trim();
+	}
+
+	/**
+	 * Drops the least recently seen items until the set fits its capacity again.
+	 */
+	private void trim() {
+		Iterator<Long> eldest = seen.keySet().iterator();
+		for (int drop = seen.size() - capacity; drop > 0; drop--) {
+			eldest.next();
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * Counts the items that were not seen before, and marks every item as being new or not, in one pass.
+	 * @param items The items (as just retrieved from the feed) to check
+	 * @return The number of items that were not yet seen
+	 */
+	public synchronized int markUnseen(List<Item> items) {
+		int unseen = 0;
+		for (Item item : items) {
+			boolean isNew = !contains(item);
+			item.setIsNew(isNew);
+			if (isNew) {
+				unseen++;
+			}
+		}
+		return unseen;
+	}
+
+	/**
+	 * Returns the seen items in a compact form, ordered from least to most recently seen, that can be restored using
+	 * {@link #fromString(String)}.
+	 * @return A comma-separated list of the item hashes
+	 */
+	@Override
+	public synchronized String toString() {
+		StringBuilder persisted = new StringBuilder(seen.size() * 13);
+		Iterator<Long> hashes = seen.keySet().iterator();
+		while (hashes.hasNext()) {
+			persisted.append(Long.toString(hashes.next(), Character.MAX_RADIX));
+			if (hashes.hasNext()) {
+				persisted.append(',');
+			}
+		}
+		return persisted.toString();
+	}
+
+	/**
+	 * Calculates a 64-bit FNV-1a hash of an item identity, which is collision-safe enough for the number of items kept
+	 * @param identity The identity string of an RSS item
+	 * @return The hash value
+	 */
+	private static long hash(String identity) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < identity.length(); i++) {
+			hash ^= identity.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+}
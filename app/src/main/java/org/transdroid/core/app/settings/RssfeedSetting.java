@@ -40,9 +40,11 @@ public class RssfeedSetting implements SimpleListItem {
 	private final String includeFilter;
 	private Date lastViewed;
 	private final String lastViewedItemUrl;
+	private final RssfeedSeenItems seenItems;
+	private FilterMatcher filterMatcher;
 
 	public RssfeedSetting(int order, String name, String baseUrl, boolean needsAuth, boolean alarm, String excludeFilter, String includeFilter, Date lastViewed,
-			String lastViewedItemUrl) {
+			String lastViewedItemUrl, RssfeedSeenItems seenItems) {
 		this.order = order;
 		this.name = name;
 		this.url = baseUrl;
@@ -52,6 +54,7 @@ public class RssfeedSetting implements SimpleListItem {
 		this.includeFilter = includeFilter;
 		this.lastViewed = lastViewed;
 		this.lastViewedItemUrl = lastViewedItemUrl;
+		this.seenItems = seenItems;
 	}
 
 	public int getOrder() {
@@ -89,6 +92,18 @@ public class RssfeedSetting implements SimpleListItem {
 		return includeFilter;
 	}
 
+	/**
+	 * Returns the include and exclude filters of this feed compiled into a matcher, which is built only once for this
+	 * settings object.
+	 * @return A matcher to test item titles against the filters
+	 */
+	public FilterMatcher getFilterMatcher() {
+		if (filterMatcher == null) {
+			filterMatcher = new FilterMatcher(excludeFilter, includeFilter);
+		}
+		return filterMatcher;
+	}
+
 	/**
 	 * Returns the date on which we last checked this feed. Note that this is NOT updated automatically after the
 	 * settings were loaded from {@link ApplicationSettings}; instead the settings have to be manually loaded again
@@ -109,6 +124,16 @@ public class RssfeedSetting implements SimpleListItem {
 		return this.lastViewedItemUrl;
 	}
 
+	/**
+	 * Returns the set of items that the user has seen in this feed. Items should be added to this same instance, which
+	 * is shared with the cached settings, and then persisted using
+	 * {@link ApplicationSettings#setRssfeedSeenItems(int, RssfeedSeenItems)}.
+	 * @return The seen items set, which is empty if the feed was not viewed since seen items are tracked
+	 */
+	public RssfeedSeenItems getSeenItems() {
+		return this.seenItems;
+	}
+
 	/**
 	 * Returns a nicely formatted identifier containing (a portion of) the feed URL
 	 * @return A string to identify this feed's URL
@@ -22,6 +22,8 @@ import android.text.TextUtils;
 
 import org.transdroid.core.gui.lists.SimpleListItem;
 import org.transdroid.core.gui.log.Log_;
+import org.transdroid.core.service.ConnectivityHelper_;
+import org.transdroid.core.service.EndpointSelector_;
 import org.transdroid.daemon.Daemon;
 import org.transdroid.daemon.DaemonSettings;
 import org.transdroid.daemon.IDaemonAdapter;
@@ -34,6 +36,7 @@ import org.transdroid.daemon.OS;
 public class ServerSetting implements SimpleListItem {
 
 	private static final String DEFAULT_NAME = "Default";
+	private static final String UNKNOWN_NETWORK_NAME = "<unknown ssid>";
 
 	private final int key;
 	private final String name;
@@ -62,6 +65,7 @@ public class ServerSetting implements SimpleListItem {
 	private final String excludeFilter;
 	private final String includeFilter;
 	private final boolean isAutoGenerated;
+	private FilterMatcher filterMatcher;
 
 	/**
 	 * Creates a daemon settings instance, providing full connection details
@@ -225,6 +229,18 @@ public class ServerSetting implements SimpleListItem {
 		return includeFilter;
 	}
 
+	/**
+	 * Returns the include and exclude filters for notifications of this server compiled into a matcher, which is built
+	 * only once for this settings object.
+	 * @return A matcher to test torrent names against the filters
+	 */
+	public FilterMatcher getFilterMatcher() {
+		if (filterMatcher == null) {
+			filterMatcher = new FilterMatcher(excludeFilter, includeFilter);
+		}
+		return filterMatcher;
+	}
+
 	public boolean isAutoGenerated() {
 		return isAutoGenerated;
 	}
@@ -233,6 +249,15 @@ public class ServerSetting implements SimpleListItem {
 		return this.key;
 	}
 
+	/**
+	 * Returns the identifier that the server adapters created from these settings use, for example to look up the
+	 * server's last retrieved torrents or its health.
+	 * @return The local integer key converted to a string
+	 */
+	public String getIdString() {
+		return Integer.toString(key);
+	}
+
 	/**
 	 * Returns a string that the user can use to identify the server by internal settings (rather than the name).
 	 * @return A human-readable identifier in the form [https://]username@address:port/folder
@@ -290,42 +315,72 @@ public class ServerSetting implements SimpleListItem {
 	 * @return An IDaemonAdapter instance of the specific torrent client daemon type
 	 */
 	public IDaemonAdapter createServerAdapter(String connectedToNetwork, Context context) {
-		return type.createAdapter(convertToDaemonSettings(connectedToNetwork, context));
+		if (!TextUtils.isEmpty(localNetwork)) {
+			Log_.getInstance_(context)
+					.d("ServerSetting", "Creating adapter for " + name + " of type " + type.name() + ": connected to " +
+							connectedToNetwork + " and configured local network is " + localNetwork);
+		}
+		if (TextUtils.isEmpty(localAddress) || TextUtils.isEmpty(localNetwork)) {
+			// Without a configured local network there is no network on which the local address is known to be safe to
+			// connect to (and send our credentials to)
+			return type.createAdapter(convertToDaemonSettings(false));
+		}
+		if (isLocalNetwork(connectedToNetwork)) {
+			return type.createAdapter(convertToDaemonSettings(true));
+		}
+		if (isKnownNetworkName(connectedToNetwork)) {
+			// We are on some other wifi network; its local addresses may well point to another machine
+			return type.createAdapter(convertToDaemonSettings(false));
+		}
+		if (!ConnectivityHelper_.getInstance_(context).isConnectedViaEthernetOrVpn()) {
+			// On mobile data, or on a wifi network of which we can not read the name, the local address is not expected
+			// to be reachable (and could point to another machine)
+			return type.createAdapter(convertToDaemonSettings(false));
+		}
+		// We are on ethernet or VPN, where we can not tell from a network name if the local address is reachable: let
+		// the endpoints race
+		return EndpointSelector_.getInstance_(context)
+				.createAdapter(this, convertToDaemonSettings(true), convertToDaemonSettings(false));
 	}
 
 	/**
-	 * Converts local server settings into an old-style {@link DaemonSettings} object.
+	 * Returns whether the given network is (one of) the server's configured local network(s).
 	 * @param connectedToNetwork The name of the (wifi) network we are currently connected to, or null if this could not
 	 * be determined
-	 * @param caller A context to access the logger
-	 * @return A {@link DaemonSettings} object to execute server commands against
+	 * @return True if the local address should be used on this network
 	 */
-	private DaemonSettings convertToDaemonSettings(String connectedToNetwork, Context caller) {
-		// The local integer key is converted to the idString string.
-		// The host name address used is dependent on the network that we are currently connected to (to allow a
-		// distinct connection IP or host name when connected to a local network).
-		if (!TextUtils.isEmpty(localNetwork)) {
-			Log_.getInstance_(caller)
-					.d("ServerSetting", "Creating adapter for " + name + " of type " + type.name() + ": connected to " +
-							connectedToNetwork + " and configured local network is " + localNetwork);
+	private boolean isLocalNetwork(String connectedToNetwork) {
+		if (TextUtils.isEmpty(localNetwork) || TextUtils.isEmpty(connectedToNetwork)) {
+			return false;
 		}
-		String addressToUse = address;
-		int portToUse = port;
-		boolean sslEnable = ssl;
-		if (!TextUtils.isEmpty(localNetwork) && !TextUtils.isEmpty(localAddress) &&
-				!TextUtils.isEmpty(connectedToNetwork)) {
-			String[] localNetworks = localNetwork.split("\\|");
-			for (String network : localNetworks) {
-				if (connectedToNetwork.equals(network)) {
-					addressToUse = localAddress;
-					portToUse = localPort;
-					sslEnable = localSsl;
-					break;
-				}
+		String[] localNetworks = localNetwork.split("\\|");
+		for (String network : localNetworks) {
+			if (connectedToNetwork.equals(network)) {
+				return true;
 			}
 		}
+		return false;
+	}
+
+	private boolean isKnownNetworkName(String connectedToNetwork) {
+		// Without location permission Android reports the wifi name as <unknown ssid>
+		return !TextUtils.isEmpty(connectedToNetwork) && !connectedToNetwork.equals(UNKNOWN_NETWORK_NAME);
+	}
+
+	/**
+	 * Converts local server settings into an old-style {@link DaemonSettings} object.
+	 * @param useLocalAddress Whether to connect to the local address (and port) rather than the normal one
+	 * @return A {@link DaemonSettings} object to execute server commands against
+	 */
+	private DaemonSettings convertToDaemonSettings(boolean useLocalAddress) {
+		// The local integer key is converted to the idString string.
+		// The host name address used is chosen by the caller, dependent on the network that we are currently connected
+		// to (to allow a distinct connection IP or host name when connected to a local network).
+		String addressToUse = useLocalAddress ? localAddress : address;
+		int portToUse = useLocalAddress ? localPort : port;
+		boolean sslEnable = useLocalAddress ? localSsl : ssl;
 		return new DaemonSettings(name, type, addressToUse, portToUse, sslEnable, sslTrustAll, sslTrustKey, folder,
 				useAuthentication, username, password, extraPass, os, downloadDir, ftpUrl, ftpPassword, timeout,
-				alarmOnFinishedDownload, alarmOnNewTorrent, Integer.toString(key), isAutoGenerated);
+				alarmOnFinishedDownload, alarmOnNewTorrent, getIdString(), isAutoGenerated);
 	}
 }
@@ -143,6 +143,10 @@ public class DetailsActivity extends AppCompatActivity implements TorrentTasksEx
 		// Show details and load fine stats and torrent files
 		fragmentDetails.updateTorrent(torrent);
 		fragmentDetails.updateLabels(currentLabels);
+		if (torrent.isPlaceholder()) {
+			// The torrent could only be passed on by its identity; get its actual state from the server
+			refreshTorrent();
+		}
 
 	}
 
@@ -32,6 +32,7 @@ import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.ActionMenuView;
 import android.support.v7.widget.SearchView;
 import android.support.v7.widget.Toolbar;
+import android.text.format.DateFormat;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
@@ -82,6 +83,7 @@ import org.transdroid.core.gui.navigation.NavigationFilter;
 import org.transdroid.core.gui.navigation.NavigationHelper;
 import org.transdroid.core.gui.navigation.RefreshableActivity;
 import org.transdroid.core.gui.navigation.StatusType;
+import org.transdroid.core.gui.navigation.TorrentsSummary;
 import org.transdroid.core.gui.remoterss.RemoteRssActivity_;
 import org.transdroid.core.gui.rss.RssfeedsActivity_;
 import org.transdroid.core.gui.search.FilePickerHelper;
@@ -93,9 +95,11 @@ import org.transdroid.daemon.Daemon;
 import org.transdroid.daemon.DaemonException;
 import org.transdroid.daemon.IDaemonAdapter;
 import org.transdroid.daemon.Priority;
+import org.transdroid.daemon.ServerHealth;
 import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.TorrentDetails;
 import org.transdroid.daemon.TorrentFile;
+import org.transdroid.daemon.TorrentStore;
 import org.transdroid.daemon.TorrentsSortBy;
 import org.transdroid.daemon.task.AddByFileTask;
 import org.transdroid.daemon.task.AddByMagnetUrlTask;
@@ -135,6 +139,7 @@ import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -212,6 +217,8 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
 	boolean firstStart = true;
 	private MenuItem searchMenu = null;
 	private IDaemonAdapter currentConnection = null;
+	// The server for which the last known torrents are shown since it stopped responding, once this was reported
+	private volatile String reportedUnreachable = null;
 
 	// Auto refresh task
 	private AsyncTask<Void, Void, Void> autoRefreshTask;
@@ -368,7 +375,13 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
 		// (the details fragment is the source, so no need to update that)
 		if (result != null && result.hasExtra("affected_torrent")) {
 			Torrent affected = result.getParcelableExtra("affected_torrent");
-			fragmentTorrents.quickUpdateTorrent(affected, result.getBooleanExtra("torrent_removed", false));
+			boolean removed = result.getBooleanExtra("torrent_removed", false);
+			if (affected.isPlaceholder() && !removed) {
+				// Only the torrent's identity was passed back, so get its updated state from the server instead
+				refreshTorrents();
+			} else {
+				fragmentTorrents.quickUpdateTorrent(affected, removed);
+			}
 		}
 	}
 
@@ -568,6 +581,7 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
 
 			// Clear the currently shown list of torrents and perhaps the details
 			fragmentTorrents.clear(true, true);
+			navigationListAdapter.updateSummary(null);
 			if (fragmentDetails != null && fragmentDetails.isResumed() && fragmentDetails.getActivity() != null) {
 				fragmentDetails.updateIsLoading(false, null);
 				fragmentDetails.clear();
@@ -795,6 +809,10 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
 	public void refreshScreen() {
 		if (fragmentTorrents.isAdded())
 			fragmentTorrents.updateIsLoading(true);
+		// The user explicitly asks to refresh, so try the server again even if it did not respond recently (and tell
+		// again if it still does not)
+		ServerHealth.retryNow(currentConnection.getSettings().getIdString());
+		reportedUnreachable = null;
 		refreshTorrents();
 		if (Daemon.supportsStats(currentConnection.getType())) {
 			getAdditionalStats();
@@ -923,9 +941,26 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
 			return;
 		}
 		if (result instanceof RetrieveTaskSuccessResult) {
+			reportedUnreachable = null;
 			onTorrentsRetrieved(((RetrieveTaskSuccessResult) result).getTorrents(), ((RetrieveTaskSuccessResult) result).getLabels());
+			return;
+		}
+		DaemonTaskFailureResult failure = (DaemonTaskFailureResult) result;
+		TorrentStore.Snapshot lastKnown = null;
+		if (failure.getException().getType() == DaemonException.ExceptionType.ConnectionError) {
+			lastKnown = TorrentStore.getSnapshot(startConnectionId);
+		}
+		if (lastKnown != null) {
+			// The server does not respond: keep showing its torrents as we last saw them rather than just the error
+			onTorrentsRetrieved(lastKnown.getTorrents(), lastKnown.getLabels());
+			// Tell so once per outage, instead of on every automatic refresh
+			if (!startConnectionId.equals(reportedUnreachable)) {
+				reportedUnreachable = startConnectionId;
+				onServerUnreachable(failure, lastKnown.getRetrievedAt());
+			}
 		} else {
-			onCommunicationError((DaemonTaskFailureResult) result, true);
+			reportedUnreachable = null;
+			onCommunicationError(failure, true);
 		}
 	}
 
@@ -1313,6 +1348,15 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
 		SnackbarManager.show(Snackbar.with(this).text(successMessage));
 	}
 
+	@UiThread
+	protected void onServerUnreachable(DaemonTaskFailureResult result, long lastRetrievedAt) {
+		//noinspection ThrowableResultOfMethodCallIgnored
+		log.i(this, result.getException().toString());
+		String error = getString(R.string.error_showinglastknown,
+				DateFormat.getTimeFormat(this).format(new Date(lastRetrievedAt)));
+		SnackbarManager.show(Snackbar.with(this).text(error).colorResource(R.color.red).type(SnackbarType.MULTI_LINE));
+	}
+
 	@UiThread
 	protected void onCommunicationError(DaemonTaskFailureResult result, boolean isCritical) {
 		//noinspection ThrowableResultOfMethodCallIgnored
@@ -1332,10 +1376,12 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
 	protected void onTorrentsRetrieved(List<Torrent> torrents, List<org.transdroid.daemon.Label> labels) {
 
 		lastNavigationLabels = Label.convertToNavigationLabels(labels, getResources().getString(R.string.labels_unlabeled));
+		// Aggregate the statistics that the fragment, the navigation and the action bar show in a single pass
+		TorrentsSummary summary = new TorrentsSummary(torrents, systemSettings.treatDormantAsInactive());
 
 		// Report the newly retrieved list of torrents to the torrents fragment
 		fragmentTorrents.updateIsLoading(false);
-		fragmentTorrents.updateTorrents(new ArrayList<>(torrents), lastNavigationLabels);
+		fragmentTorrents.updateTorrents(new ArrayList<>(torrents), lastNavigationLabels, summary);
 
 		// Update the details fragment if the currently shown torrent is in the newly retrieved list
 		if (fragmentDetails != null && fragmentDetails.isResumed()) {
@@ -1344,6 +1390,7 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
 
 		// Update local list of labels in the navigation
 		navigationListAdapter.updateLabels(lastNavigationLabels);
+		navigationListAdapter.updateSummary(summary);
 		if (fragmentDetails != null && fragmentDetails.isResumed()) {
 			fragmentDetails.updateLabels(lastNavigationLabels);
 		}
@@ -1365,8 +1412,7 @@ public class TorrentsActivity extends AppCompatActivity implements TorrentTasksE
 		}
 
 		// Update the server status (counts and speeds) in the action bar
-		serverStatusView
-				.updateStatus(torrents, systemSettings.treatDormantAsInactive(), Daemon.supportsSetTransferRates(currentConnection.getType()));
+		serverStatusView.updateStatus(summary, Daemon.supportsSetTransferRates(currentConnection.getType()));
 
 	}
 
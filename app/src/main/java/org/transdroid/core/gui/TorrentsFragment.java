@@ -51,13 +51,17 @@ import org.transdroid.core.gui.navigation.RefreshableActivity;
 import org.transdroid.core.gui.navigation.SelectionManagerMode;
 import org.transdroid.core.gui.navigation.SetLabelDialog;
 import org.transdroid.core.gui.navigation.SetLabelDialog.OnLabelPickedListener;
+import org.transdroid.core.gui.navigation.StatusType;
+import org.transdroid.core.gui.navigation.StatusType.StatusTypeFilter;
+import org.transdroid.core.gui.navigation.TorrentsSummary;
 import org.transdroid.daemon.Daemon;
 import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.TorrentList;
 import org.transdroid.daemon.TorrentsComparator;
 import org.transdroid.daemon.TorrentsSortBy;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.Locale;
 
@@ -76,6 +80,9 @@ public class TorrentsFragment extends Fragment implements OnLabelPickedListener
 	protected SystemSettings systemSettings;
 	// HACK Working around #391 while hopefully we rework the UI in the future to persist the list in db or something
 	protected static ArrayList<Torrent> torrents = null;
+	// Sortable form and statistics of the torrents, which are (re)built by this fragment instance only when needed
+	private TorrentList torrentList = null;
+	private TorrentsSummary torrentsSummary = null;
 	@InstanceState
 	protected ArrayList<Torrent> lastMultiSelectedTorrents;
 	@InstanceState
@@ -123,7 +130,7 @@ public class TorrentsFragment extends Fragment implements OnLabelPickedListener
 		torrentsList.setMultiChoiceModeListener(onTorrentsSelected);
 		torrentsList.setFastScrollEnabled(true);
 		if (torrents != null) {
-			updateTorrents(torrents, currentLabels);
+			updateTorrents(torrents, currentLabels, null);
 		}
 		// Allow pulls on the list view to refresh the torrents
 		if (getActivity() != null && getActivity() instanceof RefreshableActivity) {
@@ -142,10 +149,13 @@ public class TorrentsFragment extends Fragment implements OnLabelPickedListener
 	/**
 	 * Updates the list adapter to show a new list of torrent objects, replacing the old torrents completely
 	 * @param newTorrents The new, updated list of torrents
+	 * @param summary The statistics of the new list of torrents, or null if not available
 	 */
-	public void updateTorrents(ArrayList<Torrent> newTorrents, ArrayList<Label> currentLabels) {
+	public void updateTorrents(ArrayList<Torrent> newTorrents, ArrayList<Label> currentLabels, TorrentsSummary summary) {
 		if (!isResumed()) return;
 		torrents = newTorrents;
+		torrentList = null;
+		torrentsSummary = summary;
 		this.currentLabels = currentLabels;
 		applyAllFilters();
 	}
@@ -170,6 +180,8 @@ public class TorrentsFragment extends Fragment implements OnLabelPickedListener
 		if (!wasRemoved) {
 			torrents.add(affected);
 		}
+		torrentList = null;
+		torrentsSummary = null;
 		// Now refresh the screen
 		applyAllFilters();
 	}
@@ -181,6 +193,8 @@ public class TorrentsFragment extends Fragment implements OnLabelPickedListener
 	 */
 	public void clear(boolean clearError, boolean clearFilter) {
 		torrents = null;
+		torrentList = null;
+		torrentsSummary = null;
 		if (clearError) {
 			this.connectionErrorMessage = null;
 		}
@@ -231,27 +245,42 @@ public class TorrentsFragment extends Fragment implements OnLabelPickedListener
 			return;
 		}
 
+		if (torrentList == null) {
+			torrentList = new TorrentList(torrents);
+		}
+
 		// Filter the list of torrents to show according to navigation and text filters
-		ArrayList<Torrent> filteredTorrents = new ArrayList<>(torrents);
-		if (currentNavigationFilter != null) {
-			// Remove torrents that do not match the selected navigation filter
-			for (Iterator<Torrent> torrentIter = filteredTorrents.iterator(); torrentIter.hasNext(); ) {
-				if (!currentNavigationFilter.matches(torrentIter.next(), systemSettings.treatDormantAsInactive())) {
-					torrentIter.remove();
-				}
+		BitSet include = null;
+		if (currentNavigationFilter != null || currentTextFilter != null) {
+			boolean treatDormantAsInactive = systemSettings.treatDormantAsInactive();
+			// Status type filters can use the torrent activity as determined when the torrents were summarized
+			StatusType statusType = null;
+			if (currentNavigationFilter instanceof StatusTypeFilter && torrentsSummary != null &&
+					torrentsSummary.size() == torrentList.size()) {
+				statusType = ((StatusTypeFilter) currentNavigationFilter).getStatusType();
 			}
-		}
-		if (currentTextFilter != null) {
-			// Remove torrents that do not contain the text filter string
-			for (Iterator<Torrent> torrentIter = filteredTorrents.iterator(); torrentIter.hasNext(); ) {
-				if (!torrentIter.next().getName().toLowerCase(Locale.getDefault()).contains(currentTextFilter.toLowerCase(Locale.getDefault()))) {
-					torrentIter.remove();
+			String textFilter = currentTextFilter == null ? null : currentTextFilter.toLowerCase(Locale.getDefault());
+			include = new BitSet(torrentList.size());
+			for (int i = 0; i < torrentList.size(); i++) {
+				Torrent torrent = torrentList.get(i);
+				// Skip torrents that do not match the selected navigation filter or do not contain the text filter string
+				if (statusType != null) {
+					if (!torrentsSummary.matches(statusType, i)) {
+						continue;
+					}
+				} else if (currentNavigationFilter != null && !currentNavigationFilter.matches(torrent, treatDormantAsInactive)) {
+					continue;
+				}
+				if (textFilter != null && !torrent.getName().toLowerCase(Locale.getDefault()).contains(textFilter)) {
+					continue;
 				}
+				include.set(i);
 			}
 		}
 
 		// Sort the list of filtered torrents
-		Collections.sort(filteredTorrents, new TorrentsComparator(daemonType, this.currentSortOrder, this.currentSortDescending));
+		ArrayList<Torrent> filteredTorrents = torrentList.sorted(include,
+				new TorrentsComparator(daemonType, this.currentSortOrder, this.currentSortDescending));
 
 		if (torrentsList.getAdapter() != null) {
 			((TorrentsAdapter) torrentsList.getAdapter()).update(filteredTorrents);
@@ -22,6 +22,7 @@ import java.util.List;
 import org.transdroid.R;
 import org.transdroid.core.gui.navigation.*;
 import org.transdroid.core.gui.lists.PiecesMapView;
+import org.transdroid.daemon.PieceStates;
 import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.TorrentFile;
 
@@ -153,7 +154,7 @@ public class DetailsAdapter extends MergeAdapter {
 		}
 	}
 
-	public void updatePieces(List<Integer> pieces) {
+	public void updatePieces(PieceStates pieces) {
 		if (pieces == null || pieces.isEmpty()) {
                         piecesSeparatorAdapter.setViewEnabled(false);
                         piecesSeparatorAdapter.setViewVisibility(View.GONE);
@@ -1,14 +1,14 @@
 package org.transdroid.core.gui.lists;
 
 import org.transdroid.R;
+import org.transdroid.daemon.PieceStates;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.view.View;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.lang.Math;
 
 class PiecesMapView extends View {
@@ -17,7 +17,11 @@ class PiecesMapView extends View {
     private final int MINIMUM_HEIGHT = (int) (25 * scale);
     private final int MINIMUM_PIECE_WIDTH = (int) (2 * scale);
 
-    private ArrayList<Integer> pieces = null;
+    private PieceStates pieces = null;
+
+    // The map is drawn only when the pieces or the view size changed, and otherwise copied from this bitmap
+    private Bitmap map = null;
+    private boolean mapOutdated = true;
 
     private final Paint downloadingPaint = new Paint();
     private final Paint donePaint = new Paint();
@@ -34,8 +38,9 @@ class PiecesMapView extends View {
         partialDonePaint.setColor(getResources().getColor(R.color.file_low));
     }
 
-    public void setPieces(List<Integer> pieces) {
-        this.pieces = new ArrayList<Integer>(pieces);
+    public void setPieces(PieceStates pieces) {
+        this.pieces = pieces;
+        mapOutdated = true;
         invalidate();
     }
 
@@ -46,105 +51,68 @@ class PiecesMapView extends View {
             setMeasuredDimension(ws, hs);
     }
 
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mapOutdated = true;
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        if (this.pieces == null) {
+        if (this.pieces == null || this.pieces.isEmpty()) {
             return;
         }
 
         int height = getHeight();
         int width = getWidth();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
 
-        // downscale
-        ArrayList<Integer> piecesScaled;
-        int pieceWidth;
-
-        pieceWidth = MINIMUM_PIECE_WIDTH;
-        piecesScaled = new ArrayList<Integer>();
-
-        int bucketCount = (int) Math.ceil((double) width / (double) pieceWidth);
-        int bucketSize = (int) Math.floor((double)this.pieces.size() / (double) bucketCount);
-
-        // loop buckets
-        for (int i = 0; i < bucketCount; i++) {
-
-            // Get segment of pieces that fall into bucket
-            int start = i * bucketSize;
-
-            // If this is the last bucket, throw the remainder of the pieces array into it
-            int end = (i == bucketCount-1) ? this.pieces.size() : (i+1) * bucketSize;
-
-            ArrayList<Integer> bucket = new ArrayList<Integer>(this.pieces.subList(start, end));
-
-            int doneCount = 0;
-            int downloadingCount = 0;
-
-            // loop pieces in bucket
-            for(int j = 0; j < bucket.size(); j++) {
-                // Count downloading pieces
-                if (bucket.get(j) == 1) {
-                    downloadingCount++;
+        if (mapOutdated || map == null) {
+            if (map == null || map.getWidth() != width || map.getHeight() != height) {
+                if (map != null) {
+                    map.recycle();
                 }
-                // Count finished pieces
-                else if (bucket.get(j) == 2) {
-                    doneCount++;
-                }
-            }
-
-            int state;
-            // If a piece is downloading show bucket as downloading
-            if (downloadingCount > 0) {
-                state = 1;
-            }
-            // If all pieces are done, show bucket as done
-            else if (doneCount == bucket.size()) {
-                state = 2;
+                map = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            } else {
+                map.eraseColor(0);
             }
-            // Some done pieces, show bucket as partially done
-            else if (doneCount > 0) {
-                state = 3;
-            }
-            // bucket is not downloaded
-            else {
-                state = 0;
-            }
-
-            piecesScaled.add(state);
-        }
-
-        String scaledPiecesString = "";
-        for (int s : piecesScaled)
-        {
-            scaledPiecesString += s;
+            drawMap(new Canvas(map), width, height);
+            mapOutdated = false;
         }
+        canvas.drawBitmap(map, 0, 0, null);
+    }
 
-        // Draw downscaled peices
-        for (int i = 0; i < piecesScaled.size(); i++) {
-            int piece = piecesScaled.get(i);
+    private void drawMap(Canvas canvas, int width, int height) {
 
-            if (piece == 0) {
-                continue;
-            }
+        // Downscale into buckets of at least one piece each
+        int bucketCount = (int) Math.ceil((double) width / (double) MINIMUM_PIECE_WIDTH);
+        bucketCount = Math.min(bucketCount, pieces.size());
+        byte[] buckets = pieces.summarize(bucketCount);
+        float bucketWidth = (float) width / bucketCount;
 
-            Paint paint = new Paint();
-            switch (piece) {
-                case 1:
+        // Draw downscaled pieces
+        for (int i = 0; i < buckets.length; i++) {
+            Paint paint;
+            switch (buckets[i]) {
+                case PieceStates.STATE_DOWNLOADING:
                     paint = downloadingPaint;
                     break;
-                case 2:
+                case PieceStates.STATE_DONE:
                     paint = donePaint;
                     break;
-                case 3:
+                case PieceStates.STATE_PARTIAL:
                     paint = partialDonePaint;
                     break;
+                default:
+                    continue;
             }
-            int x = i * pieceWidth;
-
-            canvas.drawRect(x, 0, x + pieceWidth, height, paint);
+            float x = i * bucketWidth;
+            canvas.drawRect(x, 0, x + bucketWidth, height, paint);
         }
     }
 
 }
-
@@ -110,4 +110,18 @@ public class FilterListAdapter extends MergeAdapter {
 		notifyDataSetChanged();
 	}
 
+	/**
+	 * Update the number of torrents shown next to every status type and label
+	 * @param summary The statistics of the most recently retrieved torrents, or null to not show any counts
+	 */
+	public void updateSummary(TorrentsSummary summary) {
+		if (this.statusTypeItems != null) {
+			this.statusTypeItems.updateSummary(summary);
+		}
+		if (this.labelItems != null) {
+			this.labelItems.updateSummary(summary);
+		}
+		notifyDataSetChanged();
+	}
+
 }
@@ -30,6 +30,7 @@ public class FilterListItemAdapter extends BaseAdapter {
 
 	private final Context context;
 	private List<? extends SimpleListItem> items;
+	private TorrentsSummary summary = null;
 
 	public FilterListItemAdapter(Context context, List<? extends SimpleListItem> items) {
 		this.context = context;
@@ -45,6 +46,15 @@ public class FilterListItemAdapter extends BaseAdapter {
 		notifyDataSetChanged();
 	}
 
+	/**
+	 * Allows updating of the torrent counts shown next to the filter items
+	 * @param summary The statistics of the most recently retrieved torrents, or null to not show any counts
+	 */
+	public void updateSummary(TorrentsSummary summary) {
+		this.summary = summary;
+		notifyDataSetChanged();
+	}
+
 	@Override
 	public int getCount() {
 		return items.size();
@@ -68,7 +78,12 @@ public class FilterListItemAdapter extends BaseAdapter {
 		} else {
 			filterItemView = (FilterListItemView) convertView;
 		}
-		filterItemView.bind(getItem(position));
+		SimpleListItem item = getItem(position);
+		int count = -1;
+		if (summary != null && item instanceof NavigationFilter) {
+			count = summary.getCount((NavigationFilter) item);
+		}
+		filterItemView.bind(item, count);
 		return filterItemView;
 	}
 
@@ -17,6 +17,7 @@
 package org.transdroid.core.gui.navigation;
 
 import android.content.Context;
+import android.view.View;
 import android.widget.FrameLayout;
 import android.widget.TextView;
 
@@ -33,14 +34,21 @@ import org.transdroid.core.gui.lists.SimpleListItem;
 public class FilterListItemView extends FrameLayout {
 
 	@ViewById
-	protected TextView itemText;
+	protected TextView itemText, countText;
 
 	public FilterListItemView(Context context) {
 		super(context);
 	}
 
-	public void bind(SimpleListItem filterItem) {
+	/**
+	 * Shows a filter item
+	 * @param filterItem The navigation filter (or other item) to show
+	 * @param count The number of torrents that match this filter, or -1 to not show a count
+	 */
+	public void bind(SimpleListItem filterItem, int count) {
 		itemText.setText(filterItem.getName());
+		countText.setText(count < 0 ? null : Integer.toString(count));
+		countText.setVisibility(count < 0 ? View.GONE : View.VISIBLE);
 	}
 
 }
@@ -0,0 +1,162 @@
+/* 
+ * Copyright 2010-2018 Eric Kok et al.
+ * 
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.gui.navigation;
+
+import android.text.TextUtils;
+
+import org.transdroid.daemon.Torrent;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of a retrieved list of torrents, which are aggregated in a single pass over the list: the number of
+ * torrents per status type, the number of torrents per label and the total transfer rates. It also remembers the
+ * activity of every torrent, so status type filters can be applied without evaluating the torrents again.
+ */
+public class TorrentsSummary {
+
+	private static final byte DOWNLOADING = 1;
+	private static final byte SEEDING = 2;
+
+	private final byte[] activity;
+	private final int[] statusTypeCounts = new int[StatusType.values().length];
+	private final Map<String, LabelTotals> labelTotals = new HashMap<>();
+	private final LabelTotals unlabeledTotals = new LabelTotals();
+	private long downloadRate = 0;
+	private long uploadRate = 0;
+
+	/**
+	 * Aggregates the statistics of a list of torrents.
+	 * @param torrents The list of torrents as retrieved from the server
+	 * @param dormantAsInactive Whether to treat dormant (0KB/s) torrent as inactive state torrents
+	 */
+	public TorrentsSummary(List<Torrent> torrents, boolean dormantAsInactive) {
+		activity = new byte[torrents.size()];
+		for (int i = 0; i < activity.length; i++) {
+			Torrent torrent = torrents.get(i);
+
+			if (torrent.isDownloading(dormantAsInactive)) {
+				activity[i] = DOWNLOADING;
+				statusTypeCounts[StatusType.OnlyDownloading.ordinal()]++;
+				statusTypeCounts[StatusType.OnlyActive.ordinal()]++;
+			} else if (torrent.isSeeding(dormantAsInactive)) {
+				activity[i] = SEEDING;
+				statusTypeCounts[StatusType.OnlyUploading.ordinal()]++;
+				statusTypeCounts[StatusType.OnlyActive.ordinal()]++;
+			} else {
+				statusTypeCounts[StatusType.OnlyInactive.ordinal()]++;
+			}
+			downloadRate += torrent.getRateDownload();
+			uploadRate += torrent.getRateUpload();
+
+			LabelTotals totals = unlabeledTotals;
+			if (!TextUtils.isEmpty(torrent.getLabelName())) {
+				totals = labelTotals.get(torrent.getLabelName());
+				if (totals == null) {
+					totals = new LabelTotals();
+					labelTotals.put(torrent.getLabelName(), totals);
+				}
+			}
+			totals.count++;
+
+		}
+		statusTypeCounts[StatusType.ShowAll.ordinal()] = activity.length;
+	}
+
+	/**
+	 * Returns the number of torrents in the summarized list
+	 */
+	public int size() {
+		return activity.length;
+	}
+
+	/**
+	 * Returns whether the torrent at some position in the summarized list matches some status type, which gives the
+	 * same result as {@link StatusType.StatusTypeFilter#matches(Torrent, boolean)} did when the summary was created
+	 * @param statusType The status type to match against
+	 * @param position The position of the torrent in the list that was summarized
+	 */
+	public boolean matches(StatusType statusType, int position) {
+		switch (statusType) {
+			case OnlyDownloading:
+				return activity[position] == DOWNLOADING;
+			case OnlyUploading:
+				return activity[position] == SEEDING;
+			case OnlyActive:
+				return activity[position] != 0;
+			case OnlyInactive:
+				return activity[position] == 0;
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Returns the number of torrents that match some navigation filter.
+	 * @param filter A status type or label navigation filter
+	 * @return The number of matching torrents, or -1 if this is not known for this type of filter
+	 */
+	public int getCount(NavigationFilter filter) {
+		if (filter instanceof StatusType.StatusTypeFilter) {
+			return statusTypeCounts[((StatusType.StatusTypeFilter) filter).getStatusType().ordinal()];
+		}
+		if (filter instanceof Label) {
+			LabelTotals totals = getLabelTotals((Label) filter);
+			return totals == null ? 0 : totals.count;
+		}
+		return -1;
+	}
+
+	private LabelTotals getLabelTotals(Label label) {
+		return label.isEmptyLabel() ? unlabeledTotals : labelTotals.get(label.getName());
+	}
+
+	/**
+	 * Returns the number of torrents that are downloading
+	 */
+	public int getDownloadingCount() {
+		return statusTypeCounts[StatusType.OnlyDownloading.ordinal()];
+	}
+
+	/**
+	 * Returns the number of torrents that are uploading, which are the seeding as well as the downloading torrents
+	 */
+	public int getUploadingCount() {
+		return statusTypeCounts[StatusType.OnlyActive.ordinal()];
+	}
+
+	/**
+	 * Returns the combined download rate of all torrents, in bytes per second
+	 */
+	public long getDownloadRate() {
+		return downloadRate;
+	}
+
+	/**
+	 * Returns the combined upload rate of all torrents, in bytes per second
+	 */
+	public long getUploadRate() {
+		return uploadRate;
+	}
+
+	private static class LabelTotals {
+		int count = 0;
+	}
+
+}
@@ -56,16 +56,24 @@ public class RssfeedLoader {
 			usePublishDate = pubDate != null && pubDate.getTime() > 0;
 		}
 		if (usePublishDate) {
-			// Count the number of new items, based on the date that this RSS feed was last viewed by the user
-			newCount = 0;
-			List<Item> items = channel.getItems();
 			// Reverse-order sort the items on their published date
-			Collections.sort(items, new Comparator<Item>() {
+			Collections.sort(channel.getItems(), new Comparator<Item>() {
 				@Override
 				public int compare(Item lhs, Item rhs) {
 					return 0 - lhs.getPubdate().compareTo(rhs.getPubdate());
 				}
 			});
+		}
+		// Prefer the set of items the user has seen, which exactly tells the new items in a single pass, but fall back
+		// to the last viewed date or item when the feed was not viewed since seen items are tracked
+		if (!setting.getSeenItems().isEmpty()) {
+			newCount = setting.getSeenItems().markUnseen(channel.getItems());
+			return;
+		}
+		if (usePublishDate) {
+			// Count the number of new items, based on the date that this RSS feed was last viewed by the user
+			newCount = 0;
+			List<Item> items = channel.getItems();
 			for (Item item : items) {
 				if (item.getPubdate() == null || setting.getLastViewed() == null || item.getPubdate().after(setting.getLastViewed())) {
 					newCount++;
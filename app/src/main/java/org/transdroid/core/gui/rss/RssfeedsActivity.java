@@ -38,6 +38,7 @@ import org.androidannotations.annotations.UiThread;
 import org.androidannotations.annotations.ViewById;
 import org.transdroid.R;
 import org.transdroid.core.app.settings.ApplicationSettings;
+import org.transdroid.core.app.settings.RssfeedSeenItems;
 import org.transdroid.core.app.settings.RssfeedSetting;
 import org.transdroid.core.app.settings.SystemSettings_;
 import org.transdroid.core.gui.TorrentsActivity_;
@@ -120,7 +121,7 @@ public class RssfeedsActivity extends AppCompatActivity {
 		try {
 			// Load and parse the feed
 			RssParser parser =
-					new RssParser(loader.getSetting().getUrl(), loader.getSetting().getExcludeFilter(), loader.getSetting().getIncludeFilter());
+					new RssParser(loader.getSetting().getUrl(), loader.getSetting().getFilterMatcher());
 			parser.parse();
 			handleRssfeedResult(loader, parser.getChannel(), false);
 		} catch (Exception e) {
@@ -157,11 +158,7 @@ public class RssfeedsActivity extends AppCompatActivity {
 			// If desired, update the lastViewedDate and lastViewedItemUrl of this feed in the user setting; this won't
 			// be loaded until the RSS feeds screen in opened again.
 			if (!loader.hasError() && loader.getChannel() != null && markAsViewedNow) {
-				String lastViewedItemUrl = null;
-				if (loader.getChannel().getItems() != null && loader.getChannel().getItems().size() > 0) {
-					lastViewedItemUrl = loader.getChannel().getItems().get(0).getTheLink();
-				}
-				applicationSettings.setRssfeedLastViewer(loader.getSetting().getOrder(), new Date(), lastViewedItemUrl);
+				markAsViewed(loader);
 			}
 			fragmentItems.update(loader.getChannel(), loader.hasError(), loader.getSetting().requiresExternalAuthentication());
 
@@ -180,11 +177,7 @@ public class RssfeedsActivity extends AppCompatActivity {
 			// If desired, update the lastViewedDate and lastViewedItemUrl of this feed in the user setting; this won't
 			// be loaded until the RSS feeds screen in opened again
 			if (markAsViewedNow) {
-				String lastViewedItemUrl = null;
-				if (loader.getChannel().getItems() != null && loader.getChannel().getItems().size() > 0) {
-					lastViewedItemUrl = loader.getChannel().getItems().get(0).getTheLink();
-				}
-				applicationSettings.setRssfeedLastViewer(loader.getSetting().getOrder(), new Date(), lastViewedItemUrl);
+				markAsViewed(loader);
 			}
 
 			String name = loader.getChannel().getTitle();
@@ -201,4 +194,20 @@ public class RssfeedsActivity extends AppCompatActivity {
 
 	}
 
+	/**
+	 * Registers in the user settings that all the currently loaded items of some feed are now viewed, as well as the
+	 * date and newest item, so that in the future the new items can be properly marked.
+	 * @param loader The RSS feed loader with the settings and loaded content channel that the user viewed
+	 */
+	private void markAsViewed(RssfeedLoader loader) {
+		String lastViewedItemUrl = null;
+		if (loader.getChannel().getItems() != null && loader.getChannel().getItems().size() > 0) {
+			lastViewedItemUrl = loader.getChannel().getItems().get(0).getTheLink();
+			RssfeedSeenItems seenItems = loader.getSetting().getSeenItems();
+			seenItems.addAll(loader.getChannel().getItems());
+			applicationSettings.setRssfeedSeenItems(loader.getSetting().getOrder(), seenItems);
+		}
+		applicationSettings.setRssfeedLastViewer(loader.getSetting().getOrder(), new Date(), lastViewedItemUrl);
+	}
+
 }
@@ -0,0 +1,139 @@
+/* 
+ * Copyright 2010-2018 Eric Kok et al.
+ * 
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.gui.settings;
+
+import android.annotation.TargetApi;
+import android.content.ActivityNotFoundException;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.preference.Preference;
+import android.preference.Preference.OnPreferenceClickListener;
+import android.preference.PreferenceCategory;
+import android.preference.PreferenceScreen;
+
+import org.androidannotations.annotations.Bean;
+import org.androidannotations.annotations.EActivity;
+import org.androidannotations.annotations.OptionsItem;
+import org.transdroid.R;
+import org.transdroid.core.gui.log.Log;
+import org.transdroid.daemon.util.FileSizeConverter;
+import org.transdroid.daemon.util.RequestMetrics;
+
+import java.util.List;
+
+/**
+ * Shows the response times of the most recent requests to the servers, as recorded by {@link RequestMetrics}, per
+ * server and per method, and allows exporting them.
+ */
+@EActivity
+public class DiagnosticsSettingsActivity extends PreferenceCompatActivity {
+
+	@Bean
+	protected Log log;
+
+	private OnPreferenceClickListener onExportClick = new OnPreferenceClickListener() {
+		@Override
+		public boolean onPreferenceClick(Preference preference) {
+			Intent target = new Intent(Intent.ACTION_SEND);
+			target.setType("text/plain");
+			target.putExtra(Intent.EXTRA_SUBJECT, "Transdroid diagnostics");
+			target.putExtra(Intent.EXTRA_TEXT, RequestMetrics.export());
+			try {
+				startActivity(Intent.createChooser(target, getString(R.string.pref_diagnostics_export)));
+			} catch (ActivityNotFoundException e) {
+				log.i(DiagnosticsSettingsActivity.this, "Tried to export diagnostics, but there is no app to share it with.");
+			}
+			return true;
+		}
+	};
+	private OnPreferenceClickListener onClearClick = new OnPreferenceClickListener() {
+		@Override
+		public boolean onPreferenceClick(Preference preference) {
+			RequestMetrics.clear();
+			loadDiagnostics();
+			return true;
+		}
+	};
+
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+	}
+
+	@Override
+	protected void onResume() {
+		super.onResume();
+		loadDiagnostics();
+	}
+
+	@SuppressWarnings("deprecation")
+	private void loadDiagnostics() {
+
+		PreferenceScreen screen = getPreferenceManager().createPreferenceScreen(this);
+		setPreferenceScreen(screen);
+
+		List<RequestMetrics.Summary> summaries = RequestMetrics.summarize();
+		Preference export = new Preference(this);
+		export.setTitle(R.string.pref_diagnostics_export);
+		export.setSummary(getString(R.string.pref_diagnostics_export_info, RequestMetrics.getSamples().size()));
+		export.setOnPreferenceClickListener(onExportClick);
+		export.setEnabled(!summaries.isEmpty());
+		screen.addPreference(export);
+		Preference clear = new Preference(this);
+		clear.setTitle(R.string.pref_diagnostics_clear);
+		clear.setOnPreferenceClickListener(onClearClick);
+		clear.setEnabled(!summaries.isEmpty());
+		screen.addPreference(clear);
+
+		if (summaries.isEmpty()) {
+			Preference empty = new Preference(this);
+			empty.setTitle(R.string.pref_diagnostics_empty);
+			empty.setSelectable(false);
+			screen.addPreference(empty);
+			return;
+		}
+
+		// One category per server, which lists the methods in the order that they were first used
+		PreferenceCategory category = null;
+		for (RequestMetrics.Summary summary : summaries) {
+			if (category == null || !category.getTitle().equals(summary.getServer())) {
+				category = new PreferenceCategory(this);
+				category.setTitle(summary.getServer());
+				screen.addPreference(category);
+			}
+			Preference method = new Preference(this);
+			method.setTitle(getString(R.string.pref_diagnostics_method, summary.getMethod().name(), summary.getCount(),
+					summary.getFailures()));
+			method.setSummary(getString(R.string.pref_diagnostics_summary, summary.getTotalP50(), summary.getTotalP95(),
+					summary.getConnectP50(), summary.getTlsP50(), summary.getWaitP50(), summary.getDownloadP50(),
+					summary.getParseP50(), FileSizeConverter.getSize(summary.getBytesSent()),
+					FileSizeConverter.getSize(summary.getBytesReceived())));
+			method.setSelectable(false);
+			category.addPreference(method);
+		}
+
+	}
+
+	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+	@OptionsItem(android.R.id.home)
+	protected void navigateUp() {
+		SystemSettingsActivity_.intent(this).flags(Intent.FLAG_ACTIVITY_CLEAR_TOP).start();
+	}
+
+}
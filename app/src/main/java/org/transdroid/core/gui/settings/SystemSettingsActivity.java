@@ -96,6 +96,13 @@ public class SystemSettingsActivity extends PreferenceCompatActivity {
 			return true;
 		}
 	};
+	private OnPreferenceClickListener onDiagnosticsClick = new OnPreferenceClickListener() {
+		@Override
+		public boolean onPreferenceClick(Preference preference) {
+			DiagnosticsSettingsActivity_.intent(SystemSettingsActivity.this).start();
+			return true;
+		}
+	};
 	private OnClickListener importSettingsFromFile = new OnClickListener() {
 		@Override
 		public void onClick(DialogInterface dialog, int which) {
@@ -153,6 +160,7 @@ public class SystemSettingsActivity extends PreferenceCompatActivity {
 		findPreference("system_clearsearch").setOnPreferenceClickListener(onClearSearchClick);
 		findPreference("system_importsettings").setOnPreferenceClickListener(onImportSettingsClick);
 		findPreference("system_exportsettings").setOnPreferenceClickListener(onExportSettingsClick);
+		findPreference("system_diagnostics").setOnPreferenceClickListener(onDiagnosticsClick);
 	}
 
 	@TargetApi(Build.VERSION_CODES.HONEYCOMB)
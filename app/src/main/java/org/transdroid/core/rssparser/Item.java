@@ -15,6 +15,7 @@ public class Item implements Parcelable {
 	private int id;
 	private String title;
 	private String link;
+	private String guid;
 	private String description;
 	private Date pubDate;
 	private String enclosureUrl;
@@ -58,6 +59,14 @@ public class Item implements Parcelable {
 		return this.link;
 	}
 
+	public void setGuid(String guid) {
+		this.guid = guid;
+	}
+
+	public String getGuid() {
+		return this.guid;
+	}
+
 	public void setPubdate(Date pubdate) {
 		this.pubDate = pubdate;
 	}
@@ -120,6 +129,22 @@ public class Item implements Parcelable {
 		return Uri.parse(getTheLink());
 	}
 
+	/**
+	 * Returns a string that identifies this item within its feed, which is the guid if the feed supplies one, but
+	 * otherwise 'the' link or, as last resort, the title.
+	 * @return A string identifying this item, or null if the item has no guid, link or title
+	 */
+	public String getIdentity() {
+		if (this.guid != null && this.guid.length() > 0) {
+			return this.guid;
+		}
+		String theLink = getTheLink();
+		if (theLink != null) {
+			return theLink;
+		}
+		return this.title;
+	}
+
 	@Override
 	public int describeContents() {
 		return 0;
@@ -130,6 +155,7 @@ public class Item implements Parcelable {
 		out.writeInt(id);
 		out.writeString(title);
 		out.writeString(link);
+		out.writeString(guid);
 		out.writeString(description);
 		out.writeLong(pubDate == null ? -1 : pubDate.getTime());
 		out.writeString(enclosureUrl);
@@ -155,6 +181,7 @@ public class Item implements Parcelable {
 		id = in.readInt();
 		title = in.readString();
 		link = in.readString();
+		guid = in.readString();
 		description = in.readString();
 		long pubDateIn = in.readLong();
 		pubDate = pubDateIn == -1 ? null : new Date(pubDateIn);
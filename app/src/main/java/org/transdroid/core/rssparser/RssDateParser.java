@@ -0,0 +1,272 @@
+/* 
+ * Copyright 2010-2018 Eric Kok et al.
+ * 
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.rssparser;
+
+import java.util.Date;
+
+/**
+ * Parses the dates as found in RSS (RFC-822) and Atom (ISO-8601) feeds without going through Calendar or
+ * SimpleDateFormat instances. As items in a feed often share the same dates, the last parsed date is cached. Not
+ * thread-safe; use one instance per parser.
+ * @author Eric Kok
+ */
+public class RssDateParser {
+
+	private static final String[] MONTHS = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV",
+			"DEC"};
+	private static final long MINUTE = 60 * 1000L;
+	private static final long DAY = 24 * 60 * MINUTE;
+
+	private String lastInput;
+	private Date lastDate;
+
+	// Cursor into the string that is currently being parsed
+	private String input;
+	private int pos;
+
+	/**
+	 * Parses an RFC-822 date, such as 'Sat, 07 Sep 2002 00:00:01 GMT', or an ISO-8601 date, such as
+	 * '2002-09-07T00:00:01Z'.
+	 * @param date The date string as found in the feed
+	 * @return The parsed date, or null if the date was empty or could not be parsed
+	 */
+	@SuppressWarnings("deprecation")
+	public Date parse(String date) {
+		if (date == null || date.length() == 0) {
+			return null;
+		}
+		if (date.equals(lastInput)) {
+			return lastDate == null ? null : new Date(lastDate.getTime());
+		}
+		Long time;
+		try {
+			this.input = date;
+			this.pos = 0;
+			time = Character.isDigit(date.charAt(0)) && date.length() > 4 && date.charAt(4) == '-' ? parseIso8601() :
+					parseRfc822();
+		} catch (IndexOutOfBoundsException | NumberFormatException e) {
+			time = null;
+		}
+		if (time == null) {
+			// Some feeds use non-standard dates; the old lenient parser may still understand them
+			try {
+				time = Date.parse(date);
+			} catch (IllegalArgumentException e) {
+				time = null;
+			}
+		}
+		lastInput = date;
+		lastDate = time == null ? null : new Date(time);
+		return lastDate == null ? null : new Date(lastDate.getTime());
+	}
+
+	private Long parseRfc822() {
+		skipWhitespace();
+		// Optional day of week
+		if (Character.isLetter(input.charAt(pos))) {
+			while (pos < input.length() && input.charAt(pos) != ',' && input.charAt(pos) != ' ') {
+				pos++;
+			}
+			if (pos < input.length() && input.charAt(pos) == ',') {
+				pos++;
+			}
+			skipWhitespace();
+		}
+		int day = readNumber(2);
+		skipWhitespace();
+		int month = readMonth();
+		if (month < 0) {
+			return null;
+		}
+		skipWhitespace();
+		int yearStart = pos;
+		int year = readNumber(4);
+		if (pos - yearStart == 2) {
+			year += year < 50 ? 2000 : 1900;
+		}
+		skipWhitespace();
+		int hour = 0, minute = 0, second = 0;
+		if (pos < input.length() && Character.isDigit(input.charAt(pos))) {
+			hour = readNumber(2);
+			expect(':');
+			minute = readNumber(2);
+			if (pos < input.length() && input.charAt(pos) == ':') {
+				pos++;
+				second = readNumber(2);
+			}
+		}
+		skipWhitespace();
+		Long offset = readZone();
+		if (offset == null) {
+			return null;
+		}
+		return toEpoch(year, month, day, hour, minute, second, 0) - offset;
+	}
+
+	private Long parseIso8601() {
+		int year = readNumber(4);
+		expect('-');
+		int month = readNumber(2) - 1;
+		expect('-');
+		int day = readNumber(2);
+		int hour = 0, minute = 0, second = 0, millis = 0;
+		long offset = 0;
+		if (pos < input.length() && (input.charAt(pos) == 'T' || input.charAt(pos) == 't' || input.charAt(pos) == ' ')) {
+			pos++;
+			hour = readNumber(2);
+			expect(':');
+			minute = readNumber(2);
+			if (pos < input.length() && input.charAt(pos) == ':') {
+				pos++;
+				second = readNumber(2);
+			}
+			if (pos < input.length() && (input.charAt(pos) == '.' || input.charAt(pos) == ',')) {
+				pos++;
+				int start = pos;
+				int fraction = readNumber(9);
+				int digits = pos - start;
+				while (digits > 3) {
+					fraction /= 10;
+					digits--;
+				}
+				while (digits < 3) {
+					fraction *= 10;
+					digits++;
+				}
+				millis = fraction;
+			}
+			Long zone = readZone();
+			if (zone == null) {
+				return null;
+			}
+			offset = zone;
+		}
+		if (month < 0 || month > 11) {
+			return null;
+		}
+		return toEpoch(year, month, day, hour, minute, second, millis) - offset;
+	}
+
+	/**
+	 * Reads a time zone designator, being a numeric offset such as +0100 or +01:00 or a (military) zone name.
+	 * @return The offset from UTC in milliseconds, or null if the zone was not understood
+	 */
+	private Long readZone() {
+		skipWhitespace();
+		if (pos >= input.length()) {
+			// No zone; assume UTC
+			return 0L;
+		}
+		char sign = input.charAt(pos);
+		if (sign == '+' || sign == '-') {
+			pos++;
+			int hours = readNumber(2);
+			if (pos < input.length() && input.charAt(pos) == ':') {
+				pos++;
+			}
+			int minutes = pos < input.length() && Character.isDigit(input.charAt(pos)) ? readNumber(2) : 0;
+			long offset = (hours * 60 + minutes) * MINUTE;
+			return sign == '-' ? -offset : offset;
+		}
+		int start = pos;
+		while (pos < input.length() && Character.isLetter(input.charAt(pos))) {
+			pos++;
+		}
+		String zone = input.substring(start, pos).toUpperCase();
+		switch (zone) {
+			case "Z":
+			case "UT":
+			case "UTC":
+			case "GMT":
+				return 0L;
+			case "EDT":
+				return -4 * 60 * MINUTE;
+			case "EST":
+			case "CDT":
+				return -5 * 60 * MINUTE;
+			case "CST":
+			case "MDT":
+				return -6 * 60 * MINUTE;
+			case "MST":
+			case "PDT":
+				return -7 * 60 * MINUTE;
+			case "PST":
+				return -8 * 60 * MINUTE;
+			default:
+				return null;
+		}
+	}
+
+	private int readMonth() {
+		if (pos + 3 > input.length()) {
+			return -1;
+		}
+		String name = input.substring(pos, pos + 3).toUpperCase();
+		for (int i = 0; i < MONTHS.length; i++) {
+			if (MONTHS[i].equals(name)) {
+				pos += 3;
+				// Skip the rest of full month names
+				while (pos < input.length() && Character.isLetter(input.charAt(pos))) {
+					pos++;
+				}
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int readNumber(int maxDigits) {
+		int start = pos;
+		int value = 0;
+		while (pos < input.length() && pos - start < maxDigits && Character.isDigit(input.charAt(pos))) {
+			value = value * 10 + (input.charAt(pos) - '0');
+			pos++;
+		}
+		if (pos == start) {
+			throw new NumberFormatException("Expected a number at position " + start + " of " + input);
+		}
+		return value;
+	}
+
+	private void expect(char c) {
+		if (input.charAt(pos) != c) {
+			throw new NumberFormatException("Expected '" + c + "' at position " + pos + " of " + input);
+		}
+		pos++;
+	}
+
+	private void skipWhitespace() {
+		while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+			pos++;
+		}
+	}
+
+	/**
+	 * Calculates the UTC epoch time, using the days-from-civil algorithm for the proleptic Gregorian calendar.
+	 */
+	private static long toEpoch(int year, int month, int day, int hour, int minute, int second, int millis) {
+		int y = month < 2 ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yearOfEra = y - era * 400;
+		int m = month + 1;
+		int dayOfYear = (153 * (m > 2 ? m - 3 : m + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		long days = era * 146097L + dayOfEra - 719468;
+		return days * DAY + ((hour * 60L + minute) * 60L + second) * 1000L + millis;
+	}
+
+}
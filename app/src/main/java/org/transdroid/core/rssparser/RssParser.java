@@ -4,45 +4,44 @@
  */
 package org.transdroid.core.rssparser;
 
-import android.text.TextUtils;
-
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
-import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.params.HttpProtocolParams;
+import org.transdroid.core.app.settings.FilterMatcher;
 import org.transdroid.daemon.util.HttpHelper;
 import org.transdroid.daemon.util.TlsSniSocketFactory;
-import org.xml.sax.Attributes;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Date;
-import java.util.Iterator;
-import java.util.Locale;
-
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
+/**
+ * Streaming parser for RSS and Atom feeds. Items are filtered while they are parsed, so that items that are excluded
+ * are never kept in memory, and parsing can stop as soon as an item older than some date is encountered.
+ */
 @SuppressWarnings("deprecation")
-public class RssParser extends DefaultHandler {
+public class RssParser {
 
 	private final String urlString;
-	private final String[] excludeFilters;
-	private final String[] includeFilters;
+	private final FilterMatcher filterMatcher;
+	private final RssDateParser dateParser;
+	private Date stopBefore;
 	private Channel channel;
 	private StringBuilder text;
 	private Item item;
 	private boolean imageStatus;
+	private boolean stoppedEarly;
 
 	/**
 	 * The constructor for the RSS parser; call {@link #parse()} to synchronously create an HTTP connection and parse
@@ -52,26 +51,32 @@ public class RssParser extends DefaultHandler {
 	 * @param includeFilter A |-separated list of words that need to be included in the item title or they are excluded
 	 */
 	public RssParser(String url, String excludeFilter, String includeFilter) {
+		this(url, new FilterMatcher(excludeFilter, includeFilter));
+	}
+
+	/**
+	 * The constructor for the RSS parser; call {@link #parse()} to synchronously create an HTTP connection and parse
+	 * the RSS feed contents. The results can be retrieved with {@link #getChannel()}.
+	 * @param url The url of the feed to retrieve
+	 * @param filterMatcher The compiled include and exclude filters that item titles need to match
+	 */
+	public RssParser(String url, FilterMatcher filterMatcher) {
 		this.urlString = url;
-		if (!TextUtils.isEmpty(excludeFilter)) {
-			this.excludeFilters = excludeFilter.split("\\|");
-			for (int i = 0; i < excludeFilters.length; i++) {
-				excludeFilters[i] = excludeFilters[i].toUpperCase(Locale.getDefault());
-			}
-		} else {
-			this.excludeFilters = null;
-		}
-		if (!TextUtils.isEmpty(includeFilter)) {
-			this.includeFilters = includeFilter.split("\\|");
-			for (int i = 0; i < includeFilters.length; i++) {
-				includeFilters[i] = includeFilters[i].toUpperCase(Locale.getDefault());
-			}
-		} else {
-			this.includeFilters = null;
-		}
+		this.filterMatcher = filterMatcher;
+		this.dateParser = new RssDateParser();
 		this.text = new StringBuilder();
 	}
 
+	/**
+	 * Makes the parser stop reading the feed once it encounters an item that was published before the given date. This
+	 * item and all items after it will not be part of the channel. Use this when only the new items are of interest and
+	 * the feed is known to list its newest items first.
+	 * @param stopBefore The date before which items are no longer of interest, or null to always read the full feed
+	 */
+	public void setStopBefore(Date stopBefore) {
+		this.stopBefore = stopBefore;
+	}
+
 	/**
 	 * Returns the loaded RSS feed as channel which contains the individual {@link Item}s
 	 * @return A channel object that contains the feed details and individual items
@@ -81,52 +86,58 @@ public class RssParser extends DefaultHandler {
 	}
 
 	/**
-	 * Initialises an HTTP connection, retrieves the content and parses the RSS feed as standard XML.
-	 * @throws ParserConfigurationException Thrown if the SX parser is not working corectly
-	 * @throws SAXException Thrown if the SAX parser can encounters non-standard XML content
+	 * Returns whether the parsing was stopped at an item older than the date set with {@link #setStopBefore(Date)}.
+	 * @return True if not all the feed items were read, false otherwise
+	 */
+	public boolean isStoppedEarly() {
+		return stoppedEarly;
+	}
+
+	/**
+	 * Initialises an HTTP connection, retrieves the content and parses the RSS or Atom feed while it is streamed in.
+	 * @throws XmlPullParserException Thrown if the parser encounters non-standard XML content
 	 * @throws IOException Thrown if the RSS feed content can not be retrieved, such as when no connection is available
 	 */
-	public void parse() throws ParserConfigurationException, SAXException, IOException {
+	public void parse() throws XmlPullParserException, IOException {
 
 		DefaultHttpClient httpclient = initialise();
-		HttpResponse result = httpclient.execute(new HttpGet(urlString));
-		SAXParserFactory spf = SAXParserFactory.newInstance();
-		if (spf != null) {
-			SAXParser sp = spf.newSAXParser();
-			sp.parse(result.getEntity().getContent(), this);
-		}
-
-		// Apply filters
-		if (channel != null && (includeFilters != null || excludeFilters != null)) {
-			Iterator<Item> i = channel.getItems().iterator();
-			while (i.hasNext()) {
-				if (!matchesFilters(i.next()))
-					i.remove();
+		HttpGet request = new HttpGet(urlString);
+		try {
+			HttpResponse result = httpclient.execute(request);
+			InputStream content = result.getEntity().getContent();
+			XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+			factory.setNamespaceAware(true);
+			XmlPullParser parser = factory.newPullParser();
+			// Let the parser detect the encoding from the XML declaration
+			parser.setInput(content, null);
+			parse(parser);
+			if (stoppedEarly) {
+				// Do not bother downloading the remainder of the feed
+				request.abort();
+			} else {
+				content.close();
 			}
+		} finally {
+			httpclient.getConnectionManager().shutdown();
 		}
 
 	}
 
-	private boolean matchesFilters(Item next) {
-		String title = next.getTitle().toUpperCase();
-		if (includeFilters != null) {
-			boolean include = false;
-			for (String includeWord : includeFilters) {
-				if (includeWord.equals("") || title.contains(includeWord)) {
-					include = true;
-					break;
+	private void parse(XmlPullParser parser) throws XmlPullParserException, IOException {
+		int eventType = parser.getEventType();
+		while (eventType != XmlPullParser.END_DOCUMENT) {
+			if (eventType == XmlPullParser.START_TAG) {
+				startElement(parser);
+			} else if (eventType == XmlPullParser.TEXT) {
+				this.text.append(parser.getText());
+			} else if (eventType == XmlPullParser.END_TAG) {
+				endElement(parser.getName());
+				if (stoppedEarly) {
+					return;
 				}
 			}
-			if (!include)
-				return false;
+			eventType = parser.next();
 		}
-		if (excludeFilters != null) {
-			for (String excludeWord : excludeFilters) {
-				if (!excludeWord.equals("") && title.contains(excludeWord))
-					return false;
-			}
-		}
-		return true;
 	}
 
 	private DefaultHttpClient initialise() {
@@ -158,18 +169,19 @@ public class RssParser extends DefaultHandler {
 		return new Item();
 	}
 
-	@Override
-	public final void startElement(String uri, String localName, String qName, Attributes attributes) {
+	private void startElement(XmlPullParser parser) {
+
+		String localName = parser.getName();
+		this.text.setLength(0);
 
-		/** First lets check for the channel */
-		if (localName.equalsIgnoreCase("channel")) {
+		/** First lets check for the channel (or Atom feed) */
+		if (localName.equalsIgnoreCase("channel") || localName.equalsIgnoreCase("feed")) {
 			this.channel = new Channel();
 		}
 
-		/** Now lets check for an item */
-		if (localName.equalsIgnoreCase("item") && (this.channel != null)) {
+		/** Now lets check for an item (or Atom entry) */
+		if ((localName.equalsIgnoreCase("item") || localName.equalsIgnoreCase("entry")) && (this.channel != null)) {
 			this.item = createNewItem();
-			this.channel.addItem(this.item);
 		}
 
 		/** Now lets check for an image */
@@ -178,35 +190,58 @@ public class RssParser extends DefaultHandler {
 		}
 
 		/** Checking for a enclosure */
-		if (localName.equalsIgnoreCase("enclosure")) {
-			/** Lets check we are in an item */
-			if (this.item != null && attributes != null && attributes.getLength() > 0) {
-				if (attributes.getValue("url") != null) {
-					this.item.setEnclosureUrl(attributes.getValue("url").trim());
-				}
-				if (attributes.getValue("type") != null) {
-					this.item.setEnclosureType(attributes.getValue("type"));
-				}
-				if (attributes.getValue("length") != null) {
-					this.item.setEnclosureLength(Long.parseLong(attributes.getValue("length")));
-				}
+		if (localName.equalsIgnoreCase("enclosure") && this.item != null) {
+			readEnclosure(parser.getAttributeValue(null, "url"), parser.getAttributeValue(null, "type"),
+					parser.getAttributeValue(null, "length"));
+		}
+
+		/** Checking for an Atom link, which has its url as attribute */
+		if (localName.equalsIgnoreCase("link") && parser.getAttributeValue(null, "href") != null) {
+			String href = parser.getAttributeValue(null, "href").trim();
+			String rel = parser.getAttributeValue(null, "rel");
+			if (this.item != null && "enclosure".equals(rel)) {
+				readEnclosure(href, parser.getAttributeValue(null, "type"), parser.getAttributeValue(null, "length"));
+			} else if (this.item != null && (rel == null || rel.equals("alternate"))) {
+				this.item.setLink(href);
+			} else if (this.item == null && this.channel != null && (rel == null || rel.equals("alternate"))) {
+				this.channel.setLink(href);
 			}
 		}
 
 	}
 
+	private void readEnclosure(String url, String type, String length) {
+		if (url != null) {
+			this.item.setEnclosureUrl(url.trim());
+		}
+		if (type != null) {
+			this.item.setEnclosureType(type);
+		}
+		if (length != null) {
+			try {
+				this.item.setEnclosureLength(Long.parseLong(length.trim()));
+			} catch (NumberFormatException e) {
+				// Length is malformed; ignore it
+			}
+		}
+	}
+
 	/**
 	 * This is where we actually parse for the elements contents
 	 */
-	@SuppressWarnings("deprecation")
-	public final void endElement(String uri, String localName, String qName) {
+	private void endElement(String localName) {
 		/** Check we have an RSS Feed */
 		if (this.channel == null) {
 			return;
 		}
 
+		String content = this.text.toString().trim();
+
 		/** Check are at the end of an item */
-		if (localName.equalsIgnoreCase("item")) {
+		if (localName.equalsIgnoreCase("item") || localName.equalsIgnoreCase("entry")) {
+			if (this.item != null) {
+				finishItem(this.item);
+			}
 			this.item = null;
 		}
 
@@ -218,60 +253,62 @@ public class RssParser extends DefaultHandler {
 		if (localName.equalsIgnoreCase("title")) {
 			/** We are an item, so we set the item title */
 			if (this.item != null) {
-				this.item.setTitle(this.text.toString().trim());
+				this.item.setTitle(content);
 				/** We are in an image */
 			} else {
-				this.channel.setTitle(this.text.toString().trim());
+				this.channel.setTitle(content);
 			}
 		}
 
-		/** Now we are checking for a link */
-		if (localName.equalsIgnoreCase("link")) {
+		/** Now we are checking for a link (which is empty for Atom links) */
+		if (localName.equalsIgnoreCase("link") && content.length() > 0) {
 			/** Check we are in an item **/
 			if (this.item != null) {
-				this.item.setLink(this.text.toString().trim());
+				this.item.setLink(content);
 				/** Check we are in an image */
 			} else if (this.imageStatus) {
-				this.channel.setImage(this.text.toString().trim());
+				this.channel.setImage(content);
 				/** Check we are in a channel */
 			} else {
-				this.channel.setLink(this.text.toString().trim());
+				this.channel.setLink(content);
 			}
 		}
 
-		/** Checking for a description */
-		if (localName.equalsIgnoreCase("description")) {
+		/** Checking for a unique item identifier */
+		if ((localName.equalsIgnoreCase("guid") || localName.equalsIgnoreCase("id")) && (this.item != null)) {
+			this.item.setGuid(content);
+		}
+
+		/** Checking for a description (or Atom summary or content) */
+		if (localName.equalsIgnoreCase("description") || localName.equalsIgnoreCase("summary")
+				|| localName.equalsIgnoreCase("subtitle")
+				|| (localName.equalsIgnoreCase("content") && this.item != null && this.item.getDescription() == null)) {
 			/** Lets check we are in an item */
 			if (this.item != null) {
-				this.item.setDescription(this.text.toString().trim());
+				this.item.setDescription(content);
 				/** Lets check we are in the channel */
 			} else {
-				this.channel.setDescription(this.text.toString().trim());
+				this.channel.setDescription(content);
 			}
 		}
 
-		/** Checking for a pubdate */
-		if (localName.equalsIgnoreCase("pubDate")) {
+		/** Checking for a pubdate (or Atom publish or update date) */
+		if (localName.equalsIgnoreCase("pubDate") || localName.equalsIgnoreCase("published")
+				|| localName.equalsIgnoreCase("updated")) {
 			/** Lets check we are in an item */
 			if (this.item != null) {
-				try {
-					this.item.setPubdate(new Date(Date.parse(this.text.toString().trim())));
-				} catch (Exception e) {
-					// Date is malformed (not parsable by Date.parse)
+				if (this.item.getPubdate() == null || !localName.equalsIgnoreCase("updated")) {
+					this.item.setPubdate(dateParser.parse(content));
 				}
 				/** Lets check we are in the channel */
-			} else {
-				try {
-					this.channel.setPubDate(new Date(Date.parse(this.text.toString().trim())));
-				} catch (Exception e) {
-					// Date is malformed (not parsable by Date.parse)
-				}
+			} else if (this.channel.getPubDate() == null || !localName.equalsIgnoreCase("updated")) {
+				this.channel.setPubDate(dateParser.parse(content));
 			}
 		}
 
 		/** Check for the category */
 		if (localName.equalsIgnoreCase("category") && (this.item != null)) {
-			this.channel.addCategory(this.text.toString().trim());
+			this.channel.addCategory(content);
 		}
 
 		addAdditionalData(localName, this.item, this.text.toString());
@@ -279,6 +316,21 @@ public class RssParser extends DefaultHandler {
 		this.text.setLength(0);
 	}
 
+	/**
+	 * Adds a completely parsed item to the channel, if it matches the filters, or stops the parsing if the item is older
+	 * than the date we are interested in.
+	 * @param item The item that was just parsed
+	 */
+	private void finishItem(Item item) {
+		if (stopBefore != null && item.getPubdate() != null && item.getPubdate().before(stopBefore)) {
+			stoppedEarly = true;
+			return;
+		}
+		if (filterMatcher.matches(item.getTitle())) {
+			this.channel.addItem(item);
+		}
+	}
+
 	/**
 	 * May be overridden to add additional data from tags that are not standard in RSS. Not used by this default RSS
 	 * style parser. Usually used in conjunction with {@link #createNewItem()}.
@@ -289,9 +341,4 @@ public class RssParser extends DefaultHandler {
 	protected void addAdditionalData(String localName, Item item, String text) {
 	}
 
-	@Override
-	public final void characters(char[] ch, int start, int length) {
-		this.text.append(ch, start, length);
-	}
-
 }
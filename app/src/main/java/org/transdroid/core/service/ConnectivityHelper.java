@@ -22,6 +22,7 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.pm.PackageManager;
 import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
 import android.net.wifi.WifiManager;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
@@ -54,6 +55,35 @@ public class ConnectivityHelper {
 		return null;
 	}
 
+	/**
+	 * Returns a key that identifies the network we are currently connected to, also when this is not a wifi network or
+	 * when the wifi network name can not be read, such that choices can be remembered per network.
+	 * @return A key for the current network, or null if not connected
+	 */
+	public String getConnectedNetworkKey() {
+		NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
+		if (activeNetwork == null || !activeNetwork.isConnected()) {
+			return null;
+		}
+		String networkName = getConnectedNetworkName();
+		if (activeNetwork.getType() == ConnectivityManager.TYPE_WIFI && networkName != null) {
+			return activeNetwork.getTypeName() + ":" + networkName;
+		}
+		return activeNetwork.getTypeName() + ":" + activeNetwork.getExtraInfo();
+	}
+
+	/**
+	 * Returns whether we are connected via ethernet or VPN, on which a server's local address may well be reachable
+	 * even though there is no wifi network name to recognise the local network by.
+	 * @return True if the active network is an ethernet or VPN connection, false otherwise or if not connected
+	 */
+	public boolean isConnectedViaEthernetOrVpn() {
+		NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
+		return activeNetwork != null && activeNetwork.isConnected() &&
+				(activeNetwork.getType() == ConnectivityManager.TYPE_ETHERNET ||
+						activeNetwork.getType() == ConnectivityManager.TYPE_VPN);
+	}
+
 	public boolean hasNetworkNamePermission(final Context activityContext) {
 		return ContextCompat.checkSelfPermission(activityContext, Manifest.permission.ACCESS_FINE_LOCATION) ==
 				PackageManager.PERMISSION_GRANTED;
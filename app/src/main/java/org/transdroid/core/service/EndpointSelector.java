@@ -0,0 +1,271 @@
+/* 
+ * Copyright 2010-2018 Eric Kok et al.
+ * 
+ * Transdroid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Transdroid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.transdroid.core.service;
+
+import android.os.SystemClock;
+
+import org.androidannotations.annotations.Bean;
+import org.androidannotations.annotations.EBean;
+import org.androidannotations.annotations.EBean.Scope;
+import org.transdroid.core.app.settings.ServerSetting;
+import org.transdroid.core.gui.log.Log;
+import org.transdroid.daemon.Daemon;
+import org.transdroid.daemon.DaemonException.ExceptionType;
+import org.transdroid.daemon.DaemonMethod;
+import org.transdroid.daemon.DaemonSettings;
+import org.transdroid.daemon.IDaemonAdapter;
+import org.transdroid.daemon.task.DaemonTask;
+import org.transdroid.daemon.task.DaemonTaskFailureResult;
+import org.transdroid.daemon.task.DaemonTaskResult;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses between the local and the remote address of a server when the network we are on does not tell us which to
+ * use, which is when we are connected via VPN or ethernet. Both endpoints are probed at the same time, with a small
+ * head start for the local one, and the first that accepts a connection is remembered for the current network for a
+ * while. When requests over the chosen route fail to connect, the choice is forgotten and the endpoints are probed
+ * again. When neither endpoint responded, that is remembered as well, so that the remote endpoint is used directly
+ * rather than every task waiting for the probes first.
+ */
+@EBean(scope = Scope.Singleton)
+public class EndpointSelector {
+
+	private static final long ROUTE_TTL = 10 * 60 * 1000; // 10 minutes
+	private static final int PROBE_TIMEOUT = 3000;
+	private static final int LOCAL_HEAD_START = 200;
+	// Tasks that can safely be retried over the other route after failing to connect
+	private static final EnumSet<DaemonMethod> RETRYABLE_METHODS = EnumSet.of(DaemonMethod.Retrieve,
+			DaemonMethod.GetFileList, DaemonMethod.GetTorrentDetails, DaemonMethod.GetStats);
+
+	private static final int PROBE_LOCAL = 0;
+	private static final int PROBE_REMOTE = 1;
+	private static final int PROBE_FAILED = 2;
+
+	@Bean
+	protected ConnectivityHelper connectivityHelper;
+	@Bean
+	protected Log log;
+
+	private final Map<String, Route> routes = new HashMap<>();
+	private final ExecutorService probes = Executors.newCachedThreadPool();
+
+	/**
+	 * Returns an adapter that executes tasks over the local or the remote endpoint of a server, whichever is reachable
+	 * (and fastest to respond) from the network we are currently on.
+	 * @param server The server to connect to
+	 * @param local The settings to connect via the server's local address
+	 * @param remote The settings to connect via the server's normal (remote) address
+	 * @return An adapter that picks its route when it executes its first task
+	 */
+	public IDaemonAdapter createAdapter(ServerSetting server, DaemonSettings local, DaemonSettings remote) {
+		return new RoutingAdapter(server.getUniqueIdentifier(), local, remote);
+	}
+
+	/**
+	 * Returns the route to use, probing both endpoints if there is no recent choice for the current network. This
+	 * blocks while probing, so it should not be called from the UI thread.
+	 */
+	private Route chooseRoute(String serverId, DaemonSettings local, DaemonSettings remote) {
+		String routeKey = serverId + "@" + connectivityHelper.getConnectedNetworkKey();
+		synchronized (routes) {
+			Route route = routes.get(routeKey);
+			if (route != null && route.expires > SystemClock.elapsedRealtime()) {
+				return route;
+			}
+		}
+		int winner = race(local, remote);
+		if (winner == PROBE_FAILED) {
+			// Neither responded; use the remote endpoint as before, and do not probe again on every task
+			log.d(this, "Neither endpoint of " + serverId + " responded; using the remote address");
+			return rememberRoute(serverId, false, true);
+		}
+		boolean useLocal = winner == PROBE_LOCAL;
+		log.d(this, "Using the " + (useLocal ? "local" : "remote") + " address for " + routeKey);
+		return rememberRoute(serverId, useLocal, false);
+	}
+
+	/**
+	 * Remembers which endpoint of a server to use on the current network, for the next ROUTE_TTL milliseconds.
+	 */
+	private Route rememberRoute(String serverId, boolean useLocal, boolean probeFailed) {
+		Route route = new Route(useLocal, probeFailed, SystemClock.elapsedRealtime() + ROUTE_TTL);
+		synchronized (routes) {
+			routes.put(serverId + "@" + connectivityHelper.getConnectedNetworkKey(), route);
+		}
+		return route;
+	}
+
+	/**
+	 * Forgets the route to a server on the current network, so that it will be probed again on the next task.
+	 */
+	private void forgetRoute(String serverId) {
+		synchronized (routes) {
+			routes.remove(serverId + "@" + connectivityHelper.getConnectedNetworkKey());
+		}
+	}
+
+	/**
+	 * Tries to connect to both endpoints at the same time, giving the local one a small head start.
+	 * @return PROBE_LOCAL or PROBE_REMOTE for the first endpoint that accepted a connection, or PROBE_FAILED if
+	 * neither did in time
+	 */
+	private int race(final DaemonSettings local, final DaemonSettings remote) {
+		final BlockingQueue<Integer> results = new ArrayBlockingQueue<>(2);
+		probes.execute(new Runnable() {
+			@Override
+			public void run() {
+				results.offer(probe(local.getAddress(), local.getPort()) ? PROBE_LOCAL : PROBE_FAILED);
+			}
+		});
+		probes.execute(new Runnable() {
+			@Override
+			public void run() {
+				SystemClock.sleep(LOCAL_HEAD_START);
+				results.offer(probe(remote.getAddress(), remote.getPort()) ? PROBE_REMOTE : PROBE_FAILED);
+			}
+		});
+		long deadline = SystemClock.elapsedRealtime() + LOCAL_HEAD_START + PROBE_TIMEOUT;
+		try {
+			for (int i = 0; i < 2; i++) {
+				Integer result = results.poll(deadline - SystemClock.elapsedRealtime(), TimeUnit.MILLISECONDS);
+				if (result == null) {
+					break;
+				}
+				if (result != PROBE_FAILED) {
+					return result;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return PROBE_FAILED;
+	}
+
+	private boolean probe(String address, int port) {
+		Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(address, port), PROBE_TIMEOUT);
+			return true;
+		} catch (IOException | IllegalArgumentException e) {
+			return false;
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+
+	private static class Route {
+
+		final boolean local;
+		// Whether neither endpoint responded when probed, in which case there is no point in failing over
+		final boolean probeFailed;
+		final long expires;
+
+		Route(boolean local, boolean probeFailed, long expires) {
+			this.local = local;
+			this.probeFailed = probeFailed;
+			this.expires = expires;
+		}
+
+	}
+
+	/**
+	 * Adapter that executes tasks against the local or remote endpoint, as chosen for the current network. An adapter
+	 * is kept per endpoint, so that any state they hold (such as sessions) survives switching routes.
+	 */
+	private class RoutingAdapter implements IDaemonAdapter {
+
+		private final String serverId;
+		private final DaemonSettings local;
+		private final DaemonSettings remote;
+		private IDaemonAdapter localAdapter;
+		private IDaemonAdapter remoteAdapter;
+		private volatile boolean lastUsedLocal = false;
+
+		RoutingAdapter(String serverId, DaemonSettings local, DaemonSettings remote) {
+			this.serverId = serverId;
+			this.local = local;
+			this.remote = remote;
+		}
+
+		@Override
+		public DaemonTaskResult executeTask(Log log, DaemonTask task) {
+			Route route = chooseRoute(serverId, local, remote);
+			boolean useLocal = route.local;
+			DaemonTaskResult result = getAdapter(useLocal).executeTask(log, task);
+			if (route.probeFailed && result.wasSuccessful()) {
+				// The remote endpoint turned out to respond after all
+				rememberRoute(serverId, false, false);
+			}
+			if (result instanceof DaemonTaskFailureResult && !route.probeFailed
+					&& ((DaemonTaskFailureResult) result).getException().getType() == ExceptionType.ConnectionError) {
+				// The route may no longer work (such as after leaving the local network): probe again next time and
+				// directly fail over to the other endpoint if we can do so safely
+				forgetRoute(serverId);
+				if (RETRYABLE_METHODS.contains(task.getMethod())) {
+					log.d(this, "Connection to " + serverId + " failed; retrying over the other endpoint");
+					DaemonTaskResult retried = getAdapter(!useLocal).executeTask(log, task);
+					if (retried.wasSuccessful()) {
+						rememberRoute(serverId, !useLocal, false);
+						return retried;
+					}
+				}
+			}
+			return result;
+		}
+
+		private synchronized IDaemonAdapter getAdapter(boolean useLocal) {
+			lastUsedLocal = useLocal;
+			if (useLocal) {
+				if (localAdapter == null) {
+					localAdapter = local.getType().createAdapter(local);
+				}
+				return localAdapter;
+			}
+			if (remoteAdapter == null) {
+				remoteAdapter = remote.getType().createAdapter(remote);
+			}
+			return remoteAdapter;
+		}
+
+		@Override
+		public Daemon getType() {
+			return remote.getType();
+		}
+
+		@Override
+		public DaemonSettings getSettings() {
+			return lastUsedLocal ? local : remote;
+		}
+
+	}
+
+}
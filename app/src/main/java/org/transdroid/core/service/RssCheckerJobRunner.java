@@ -20,6 +20,8 @@ import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
+import android.net.Uri;
+import android.os.SystemClock;
 import android.support.v4.app.NotificationCompat;
 
 import com.evernote.android.job.Job;
@@ -38,13 +40,26 @@ import org.transdroid.core.rssparser.Item;
 import org.transdroid.core.rssparser.RssParser;
 import org.transdroid.daemon.util.Collections2;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 @EBean
 public class RssCheckerJobRunner {
 
+	private static final int MAX_PARALLEL_FEEDS = 4;
+	private static final int MAX_PARALLEL_PER_HOST = 2;
+	private static final long JOB_DEADLINE = 60 * 1000;
+
 	@RootContext
 	protected Context context;
 	@Bean
@@ -66,52 +81,88 @@ public class RssCheckerJobRunner {
 			return Job.Result.RESCHEDULE;
 		}
 
-		// Check every RSS feed for new items
+		// Check every RSS feed for new items; feeds are fetched in parallel and the unread counts are merged as soon as
+		// each feed is parsed. The feeds of a host are split over at most MAX_PARALLEL_PER_HOST lanes that each fetch
+		// their feeds one after the other, so no pool thread ever sits waiting for a busy host.
 		int unread = 0;
 		Set<String> hasUnread = new LinkedHashSet<>();
+		Map<String, List<List<RssfeedSetting>>> hostLanes = new LinkedHashMap<>();
+		int submitted = 0;
 		for (RssfeedSetting feed : applicationSettings.getRssfeedSettings()) {
-			try {
+			if (!feed.shouldAlarmOnNewItems()) {
+				log.d(this, "Skip checker for " + feed.getName() + " as alarms are disabled");
+				continue;
+			}
+			String host = feed.getUrl() == null ? null : Uri.parse(feed.getUrl()).getHost();
+			if (host == null) {
+				host = "";
+			}
+			List<List<RssfeedSetting>> lanes = hostLanes.get(host);
+			if (lanes == null) {
+				lanes = new ArrayList<>(MAX_PARALLEL_PER_HOST);
+				hostLanes.put(host, lanes);
+			}
+			int feedsOfHost = 0;
+			for (List<RssfeedSetting> lane : lanes) {
+				feedsOfHost += lane.size();
+			}
+			if (lanes.size() < MAX_PARALLEL_PER_HOST) {
+				lanes.add(new ArrayList<RssfeedSetting>());
+			}
+			lanes.get(feedsOfHost % lanes.size()).add(feed);
+			submitted++;
+		}
 
-				if (!feed.shouldAlarmOnNewItems()) {
-					log.d(this, "Skip checker for " + feed.getName() + " as alarms are disabled");
+		// Queue the first lane of every host before the second ones, such that all hosts are served early on
+		ExecutorService executor = Executors.newFixedThreadPool(MAX_PARALLEL_FEEDS);
+		final BlockingQueue<FeedResult> results = new LinkedBlockingQueue<>();
+		for (int l = 0; l < MAX_PARALLEL_PER_HOST; l++) {
+			for (List<List<RssfeedSetting>> lanes : hostLanes.values()) {
+				if (l >= lanes.size()) {
 					continue;
 				}
+				final List<RssfeedSetting> lane = lanes.get(l);
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						for (RssfeedSetting feed : lane) {
+							if (Thread.currentThread().isInterrupted()) {
+								return;
+							}
+							try {
+								results.offer(new FeedResult(feed, countUnread(feed)));
+							} catch (Exception e) {
+								// Ignore RSS feeds that could not be retrieved or parsed, but do count them as done
+								results.offer(new FeedResult(feed, -1));
+							}
+						}
+					}
+				});
+			}
+		}
 
-				log.d(this, "Try to parse " + feed.getName() + " (" + feed.getUrl() + ")");
-				RssParser parser = new RssParser(feed.getUrl(), feed.getExcludeFilter(), feed.getIncludeFilter());
-				parser.parse();
-				if (parser.getChannel() == null) {
-					continue;
+		long deadline = SystemClock.elapsedRealtime() + JOB_DEADLINE;
+		try {
+			for (int i = 0; i < submitted; i++) {
+				long remaining = deadline - SystemClock.elapsedRealtime();
+				FeedResult result = remaining > 0 ? results.poll(remaining, TimeUnit.MILLISECONDS) : null;
+				if (result == null) {
+					log.d(this, "RSS checker deadline passed; skipping " + (submitted - i) + " feeds that are still loading");
+					break;
 				}
-
-				// Find the last item that is newer than the last viewed date
-				boolean usePublishDate = false;
-				if (parser.getChannel().getItems().size() > 0) {
-					Date pubDate = parser.getChannel().getItems().get(0).getPubdate();
-					usePublishDate = pubDate != null && pubDate.getTime() > 0;
+				if (result.unread < 0) {
+					continue;
 				}
-				for (Item item : parser.getChannel().getItems()) {
-					if (usePublishDate
-							&& item.getPubdate() != null
-							&& item.getPubdate().before(feed.getLastViewed())) {
-						break;
-					} else if (!usePublishDate
-							&& item.getTheLink() != null
-							&& feed.getLastViewedItemUrl() != null
-							&& item.getTheLink().equals(feed.getLastViewedItemUrl())) {
-						break;
-					} else {
-						unread++;
-						hasUnread.add(feed.getName());
-					}
+				if (result.unread > 0) {
+					unread += result.unread;
+					hasUnread.add(result.feed.getName());
 				}
-
-				log.d(this,
-						feed.getName() + " has " + (hasUnread.contains(feed.getName()) ? "" : "no ") + "unread items");
-
-			} catch (Exception e) {
-				// Ignore RSS feeds that could not be retrieved or parsed
+				log.d(this, result.feed.getName() + " has " + (result.unread > 0 ? "" : "no ") + "unread items");
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
 		}
 
 		if (unread == 0) {
@@ -141,4 +192,66 @@ public class RssCheckerJobRunner {
 		return Job.Result.SUCCESS;
 	}
 
+	/**
+	 * Synchronously retrieves and parses a single RSS feed and counts the number of items that are newer than the last
+	 * time the user viewed this feed.
+	 * @param feed The RSS feed settings to check
+	 * @return The number of new items in the feed, or 0 if the feed could not be read
+	 * @throws Exception Thrown when the feed could not be retrieved or parsed
+	 */
+	private int countUnread(RssfeedSetting feed) throws Exception {
+
+		log.d(this, "Try to parse " + feed.getName() + " (" + feed.getUrl() + ")");
+		RssParser parser = new RssParser(feed.getUrl(), feed.getFilterMatcher());
+		// Without seen items, items older than the last time the user viewed the feed are never counted as new, so they
+		// need not be read at all; otherwise, older items may still be unseen and need to be counted exactly
+		if (feed.getSeenItems().isEmpty()) {
+			parser.setStopBefore(feed.getLastViewed());
+		}
+		parser.parse();
+		if (parser.getChannel() == null) {
+			return 0;
+		}
+
+		// Count the items that the user has not seen yet, or, if no seen items were tracked yet, find the last item
+		// that is newer than the last viewed date
+		if (!feed.getSeenItems().isEmpty()) {
+			return feed.getSeenItems().markUnseen(parser.getChannel().getItems());
+		}
+		boolean usePublishDate = false;
+		if (parser.getChannel().getItems().size() > 0) {
+			Date pubDate = parser.getChannel().getItems().get(0).getPubdate();
+			usePublishDate = pubDate != null && pubDate.getTime() > 0;
+		}
+		int unread = 0;
+		for (Item item : parser.getChannel().getItems()) {
+			if (usePublishDate
+					&& item.getPubdate() != null
+					&& item.getPubdate().before(feed.getLastViewed())) {
+				break;
+			} else if (!usePublishDate
+					&& item.getTheLink() != null
+					&& feed.getLastViewedItemUrl() != null
+					&& item.getTheLink().equals(feed.getLastViewedItemUrl())) {
+				break;
+			} else {
+				unread++;
+			}
+		}
+		return unread;
+
+	}
+
+	private static class FeedResult {
+
+		final RssfeedSetting feed;
+		final int unread;
+
+		FeedResult(RssfeedSetting feed, int unread) {
+			this.feed = feed;
+			this.unread = unread;
+		}
+
+	}
+
 }
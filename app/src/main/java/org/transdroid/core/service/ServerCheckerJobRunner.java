@@ -20,8 +20,8 @@ import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
+import android.os.SystemClock;
 import android.support.v4.app.NotificationCompat;
-import android.text.TextUtils;
 import com.evernote.android.job.Job;
 import org.androidannotations.annotations.Bean;
 import org.androidannotations.annotations.EBean;
@@ -37,17 +37,38 @@ import org.transdroid.core.app.settings.ServerSetting;
 import org.transdroid.core.gui.TorrentsActivity_;
 import org.transdroid.core.gui.log.Log;
 import org.transdroid.daemon.IDaemonAdapter;
+import org.transdroid.daemon.ServerHealth;
 import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.task.DaemonTaskResult;
 import org.transdroid.daemon.task.RetrieveTask;
 import org.transdroid.daemon.task.RetrieveTaskSuccessResult;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 @EBean
 public class ServerCheckerJobRunner {
 
+	private static final int NOTIFY_BASE = 10000;
+	private static final int MAX_PARALLEL_SERVERS = 4;
+	private static final long JOB_DEADLINE = 90 * 1000;
+	private static final int SERVER_BUDGET_FACTOR = 3;
+	private static final long POLL_INTERVAL = 1000;
+	private static final long BACKOFF_BASE = 5 * 60 * 1000;
+	private static final long BACKOFF_MAX = 6 * 60 * 60 * 1000;
+
 	@RootContext
 	protected Context context;
 	@Bean
@@ -69,8 +90,13 @@ public class ServerCheckerJobRunner {
 			return Job.Result.RESCHEDULE;
 		}
 
-		int notifyBase = 10000;
-		for (ServerSetting server : applicationSettings.getAllServerSettings()) {
+		// Retrieve the torrents of all servers in parallel, each within its own time budget; servers that failed
+		// recently are skipped until their backoff period is over
+		ExecutorService executor = Executors.newFixedThreadPool(MAX_PARALLEL_SERVERS);
+		CompletionService<ServerResult> completion = new ExecutorCompletionService<>(executor);
+		final Map<Integer, Long> started = new ConcurrentHashMap<>();
+		Map<Future<ServerResult>, ServerSetting> pending = new HashMap<>();
+		for (final ServerSetting server : applicationSettings.getAllServerSettings()) {
 
 			// No need to check if the server is not properly configured or none of the two types of notifications are
 			// enabled by the user for this specific server
@@ -78,135 +104,219 @@ public class ServerCheckerJobRunner {
 					|| !(server.shouldAlarmOnFinishedDownload() || server.shouldAlarmOnNewTorrent()))
 				continue;
 
-			// Get the statistics for the last time we checked this server
-			JSONArray lastStats = applicationSettings.getServerLastStats(server);
-
-			// Synchronously retrieve torrents listing
-			IDaemonAdapter adapter = server.createServerAdapter(connectivityHelper.getConnectedNetworkName(), context);
-			DaemonTaskResult result = RetrieveTask.create(adapter).execute(log);
-			if (!(result instanceof RetrieveTaskSuccessResult)) {
-				// Cannot retrieve torrents at this time
+			if (applicationSettings.getServerRetryAfter(server) > System.currentTimeMillis()) {
+				log.d(this, server.getName() + ": Skip as the server was unreachable recently");
 				continue;
 			}
-			List<Torrent> retrieved = ((RetrieveTaskSuccessResult) result).getTorrents();
-			log.d(this, server.getName() + ": Retrieved torrent listing");
-
-			// Preload filters to match torrent names
-			String[] excludeFilters = null;
-			String[] includeFilters = null;
-			if (!TextUtils.isEmpty(server.getExcludeFilter())) {
-				excludeFilters = server.getExcludeFilter().split("\\|");
-				for (int i = 0; i < excludeFilters.length; i++) {
-					excludeFilters[i] = excludeFilters[i].toUpperCase();
-				}
+			if (ServerHealth.isUnavailable(server.getIdString())) {
+				// The app or a widget found the server unreachable just now; this does not count as a failed check
+				log.d(this, server.getName() + ": Skip as the server did not respond to the app recently");
+				continue;
 			}
-			if (!TextUtils.isEmpty(server.getIncludeFilter())) {
-				includeFilters = server.getIncludeFilter().split("\\|");
-				for (int i = 0; i < includeFilters.length; i++) {
-					includeFilters[i] = includeFilters[i].toUpperCase();
+
+			pending.put(completion.submit(new Callable<ServerResult>() {
+				@Override
+				public ServerResult call() {
+					started.put(server.getOrder(), SystemClock.elapsedRealtime());
+					return checkServer(server);
 				}
-			}
+			}), server);
 
-			// Check for differences between the last and the current stats
-			JSONArray currentStats = new JSONArray();
-			List<Torrent> newTorrents = new ArrayList<>();
-			List<Torrent> doneTorrents = new ArrayList<>();
-			for (Torrent torrent : retrieved) {
+		}
 
-				// Remember this torrent for the next time
-				try {
-					currentStats.put(new JSONObject().put("id", torrent.getUniqueID()).put("done",
-							torrent.getPartDone() == 1F));
-				} catch (JSONException e) {
-					// Can't build the JSON object; this should not happen and we can safely ignore it
+		long deadline = SystemClock.elapsedRealtime() + JOB_DEADLINE;
+		try {
+			while (!pending.isEmpty()) {
+
+				long now = SystemClock.elapsedRealtime();
+				if (now >= deadline) {
+					log.d(this, "Server checker deadline passed; skipping " + pending.size() + " servers");
+					for (Map.Entry<Future<ServerResult>, ServerSetting> timedOut : pending.entrySet()) {
+						timedOut.getKey().cancel(true);
+						registerFailure(timedOut.getValue());
+					}
+					break;
 				}
 
-				// See if this torrent was done the last time we checked
-				if (lastStats != null) {
-					Boolean wasDone = findLastDoneStat(lastStats, torrent);
-					boolean shouldNotify = matchFilters(torrent.getName(), excludeFilters, includeFilters);
-					if (server.shouldAlarmOnNewTorrent() && shouldNotify && wasDone == null) {
-						// This torrent wasn't present earlier
-						newTorrents.add(torrent);
-						continue;
+				// Give up on servers that are taking longer than their own time budget
+				Iterator<Map.Entry<Future<ServerResult>, ServerSetting>> running = pending.entrySet().iterator();
+				while (running.hasNext()) {
+					Map.Entry<Future<ServerResult>, ServerSetting> entry = running.next();
+					Long startedAt = started.get(entry.getValue().getOrder());
+					if (startedAt != null && now - startedAt > entry.getValue().getTimeoutInMilliseconds() * SERVER_BUDGET_FACTOR) {
+						log.d(this, entry.getValue().getName() + ": Did not respond within its time budget");
+						entry.getKey().cancel(true);
+						registerFailure(entry.getValue());
+						running.remove();
 					}
-					if (server.shouldAlarmOnFinishedDownload() && shouldNotify && torrent.getPartDone() == 1F && wasDone != null && !wasDone)
-						// This torrent is now done, but wasn't before
-						doneTorrents.add(torrent);
 				}
 
-			}
+				Future<ServerResult> done = completion.poll(Math.min(POLL_INTERVAL, deadline - now), TimeUnit.MILLISECONDS);
+				ServerSetting server = done == null ? null : pending.remove(done);
+				if (server == null) {
+					// Nothing finished yet, or this was a server that we already gave up on
+					continue;
+				}
+				ServerResult result = null;
+				try {
+					result = done.get();
+				} catch (ExecutionException e) {
+					log.e(this, server.getName() + ": Error while checking server: " + e.toString());
+				}
+				if (result == null) {
+					// Cannot retrieve torrents at this time
+					registerFailure(server);
+					continue;
+				}
+				applicationSettings.clearServerFailures(server);
+
+				// Store the now-current statistics on torrents for the next time we check this server
+				applicationSettings.setServerLastStats(server, result.currentStats);
+				notifyServerChanges(server, result.newTorrents, result.doneTorrents);
 
-			// Store the now-current statistics on torrents for the next time we check this server
-			applicationSettings.setServerLastStats(server, currentStats);
-
-			// Notify on new and now-done torrents for this server
-			log.d(this, server.getName() + ": " + newTorrents.size() + " new torrents, " + doneTorrents.size()
-					+ " newly finished torrents.");
-			Intent i = new Intent(context, TorrentsActivity_.class);
-			i.putExtra("org.transdroid.START_SERVER", server.getOrder());
-			// Should start the main activity directly into this server
-			PendingIntent pi = PendingIntent.getActivity(context, notifyBase + server.getOrder(), i,
-					PendingIntent.FLAG_CANCEL_CURRENT);
-			ArrayList<Torrent> affectedTorrents = new ArrayList<>(newTorrents.size() + doneTorrents.size());
-			affectedTorrents.addAll(newTorrents);
-			affectedTorrents.addAll(doneTorrents);
-
-			String title;
-			if (newTorrents.size() > 0 && doneTorrents.size() > 0) {
-				// Note: use the 'one' plural iif 1 new torrent was added and 1 was newly finished
-				title = context.getResources().getQuantityString(R.plurals.status_service_finished,
-						newTorrents.size() + doneTorrents.size() == 2 ? 1 : 2, Integer.toString(newTorrents.size()),
-						Integer.toString(doneTorrents.size()));
-			} else if (newTorrents.size() > 0) {
-				title = context.getResources().getQuantityString(R.plurals.status_service_added, newTorrents.size(),
-						Integer.toString(newTorrents.size()));
-			} else if (doneTorrents.size() > 0) {
-				title = context.getResources().getQuantityString(R.plurals.status_service_finished, doneTorrents.size(),
-						Integer.toString(doneTorrents.size()));
-			} else {
-				// No notification to show
-				continue;
 			}
-			String forString = "";
-			for (Torrent affected : affectedTorrents) {
-				forString += affected.getName() + ", ";
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return Job.Result.SUCCESS;
+	}
+
+	/**
+	 * Synchronously retrieves the torrents of a server and compares them to the statistics of the last check.
+	 * @param server The server to check
+	 * @return The new and newly finished torrents, along with the current statistics to store, or null if the torrents
+	 * could not be retrieved
+	 */
+	private ServerResult checkServer(ServerSetting server) {
+
+		// Get the statistics for the last time we checked this server
+		JSONArray lastStats = applicationSettings.getServerLastStats(server);
+
+		// Synchronously retrieve torrents listing
+		IDaemonAdapter adapter = server.createServerAdapter(connectivityHelper.getConnectedNetworkName(), context);
+		DaemonTaskResult result =
+				RetrieveTask.create(adapter, RetrieveTask.Profile.NotificationCheck, RetrieveTask.Scope.All).execute(log);
+		if (!(result instanceof RetrieveTaskSuccessResult)) {
+			return null;
+		}
+		List<Torrent> retrieved = ((RetrieveTaskSuccessResult) result).getTorrents();
+		log.d(this, server.getName() + ": Retrieved torrent listing");
+
+		// Check for differences between the last and the current stats
+		JSONArray currentStats = new JSONArray();
+		List<Torrent> newTorrents = new ArrayList<>();
+		List<Torrent> doneTorrents = new ArrayList<>();
+		for (Torrent torrent : retrieved) {
+
+			// Remember this torrent for the next time
+			try {
+				currentStats.put(new JSONObject().put("id", torrent.getUniqueID()).put("done",
+						torrent.getPartDone() == 1F));
+			} catch (JSONException e) {
+				// Can't build the JSON object; this should not happen and we can safely ignore it
 			}
-			forString = forString.substring(0, forString.length() - 2);
-
-			// Build the basic notification
-			final NotificationCompat.Builder builder = new NotificationCompat.Builder(context, NotificationChannels.CHANNEL_SERVER_CHECKER)
-					.setSmallIcon(R.drawable.ic_stat_notification)
-					.setTicker(title)
-					.setContentTitle(title).setContentText(forString)
-					.setNumber(affectedTorrents.size())
-					.setLights(notificationSettings.getDesiredLedColour(), 600, 1000)
-					.setSound(notificationSettings.getSound())
-					.setAutoCancel(true)
-					.setContentIntent(pi);
-			if (notificationSettings.shouldVibrate())
-				builder.setVibrate(notificationSettings.getDefaultVibratePattern());
-
-			// Add at most 5 lines with the affected torrents
-			if (android.os.Build.VERSION.SDK_INT >= 16) {
-				final NotificationCompat.InboxStyle inbox = new NotificationCompat.InboxStyle(builder);
-				if (affectedTorrents.size() < 6) {
-					for (Torrent affectedTorrent : affectedTorrents) {
-						inbox.addLine(affectedTorrent.getName());
-					}
-				} else {
-					for (int j = 0; j < 4; j++) {
-						inbox.addLine(affectedTorrents.get(j).getName());
-					}
-					inbox.addLine(context.getString(R.string.status_service_andothers, affectedTorrents.get(5).getName()));
+
+			// See if this torrent was done the last time we checked
+			if (lastStats != null) {
+				Boolean wasDone = findLastDoneStat(lastStats, torrent);
+				boolean shouldNotify = server.getFilterMatcher().matches(torrent.getName());
+				if (server.shouldAlarmOnNewTorrent() && shouldNotify && wasDone == null) {
+					// This torrent wasn't present earlier
+					newTorrents.add(torrent);
+					continue;
 				}
-				builder.setStyle(inbox);
+				if (server.shouldAlarmOnFinishedDownload() && shouldNotify && torrent.getPartDone() == 1F && wasDone != null && !wasDone)
+					// This torrent is now done, but wasn't before
+					doneTorrents.add(torrent);
 			}
-			notificationManager.notify(notifyBase + server.getOrder(), builder.build());
 
 		}
 
-		return Job.Result.SUCCESS;
+		return new ServerResult(currentStats, newTorrents, doneTorrents);
+
+	}
+
+	/**
+	 * Records that a server could not be reached, postponing the next check of this server with an exponentially
+	 * increasing backoff period.
+	 * @param server The server that failed to respond
+	 */
+	private void registerFailure(ServerSetting server) {
+		int failures = applicationSettings.getServerFailures(server) + 1;
+		long backoff = Math.min(BACKOFF_BASE << Math.min(failures - 1, 10), BACKOFF_MAX);
+		log.d(this, server.getName() + ": Failed " + failures + " times in a row; skip for " + (backoff / 1000) + " seconds");
+		applicationSettings.setServerFailures(server, failures, System.currentTimeMillis() + backoff);
+	}
+
+	private void notifyServerChanges(ServerSetting server, List<Torrent> newTorrents, List<Torrent> doneTorrents) {
+
+		// Notify on new and now-done torrents for this server
+		log.d(this, server.getName() + ": " + newTorrents.size() + " new torrents, " + doneTorrents.size()
+				+ " newly finished torrents.");
+		Intent i = new Intent(context, TorrentsActivity_.class);
+		i.putExtra("org.transdroid.START_SERVER", server.getOrder());
+		// Should start the main activity directly into this server
+		PendingIntent pi = PendingIntent.getActivity(context, NOTIFY_BASE + server.getOrder(), i,
+				PendingIntent.FLAG_CANCEL_CURRENT);
+		ArrayList<Torrent> affectedTorrents = new ArrayList<>(newTorrents.size() + doneTorrents.size());
+		affectedTorrents.addAll(newTorrents);
+		affectedTorrents.addAll(doneTorrents);
+
+		String title;
+		if (newTorrents.size() > 0 && doneTorrents.size() > 0) {
+			// Note: use the 'one' plural iif 1 new torrent was added and 1 was newly finished
+			title = context.getResources().getQuantityString(R.plurals.status_service_finished,
+					newTorrents.size() + doneTorrents.size() == 2 ? 1 : 2, Integer.toString(newTorrents.size()),
+					Integer.toString(doneTorrents.size()));
+		} else if (newTorrents.size() > 0) {
+			title = context.getResources().getQuantityString(R.plurals.status_service_added, newTorrents.size(),
+					Integer.toString(newTorrents.size()));
+		} else if (doneTorrents.size() > 0) {
+			title = context.getResources().getQuantityString(R.plurals.status_service_finished, doneTorrents.size(),
+					Integer.toString(doneTorrents.size()));
+		} else {
+			// No notification to show
+			return;
+		}
+		String forString = "";
+		for (Torrent affected : affectedTorrents) {
+			forString += affected.getName() + ", ";
+		}
+		forString = forString.substring(0, forString.length() - 2);
+
+		// Build the basic notification
+		final NotificationCompat.Builder builder = new NotificationCompat.Builder(context, NotificationChannels.CHANNEL_SERVER_CHECKER)
+				.setSmallIcon(R.drawable.ic_stat_notification)
+				.setTicker(title)
+				.setContentTitle(title).setContentText(forString)
+				.setNumber(affectedTorrents.size())
+				.setLights(notificationSettings.getDesiredLedColour(), 600, 1000)
+				.setSound(notificationSettings.getSound())
+				.setAutoCancel(true)
+				.setContentIntent(pi);
+		if (notificationSettings.shouldVibrate())
+			builder.setVibrate(notificationSettings.getDefaultVibratePattern());
+
+		// Add at most 5 lines with the affected torrents
+		if (android.os.Build.VERSION.SDK_INT >= 16) {
+			final NotificationCompat.InboxStyle inbox = new NotificationCompat.InboxStyle(builder);
+			if (affectedTorrents.size() < 6) {
+				for (Torrent affectedTorrent : affectedTorrents) {
+					inbox.addLine(affectedTorrent.getName());
+				}
+			} else {
+				for (int j = 0; j < 4; j++) {
+					inbox.addLine(affectedTorrents.get(j).getName());
+				}
+				inbox.addLine(context.getString(R.string.status_service_andothers, affectedTorrents.get(5).getName()));
+			}
+			builder.setStyle(inbox);
+		}
+		notificationManager.notify(NOTIFY_BASE + server.getOrder(), builder.build());
+
 	}
 
 	private Boolean findLastDoneStat(JSONArray lastStats, Torrent torrent) {
@@ -221,26 +331,18 @@ public class ServerCheckerJobRunner {
 		return null;
 	}
 
-	private boolean matchFilters(String name, String[] excludeFilters, String[] includeFilters) {
-		String upperName = name.toUpperCase();
-		if (includeFilters != null) {
-			boolean include = false;
-			for (String includeWord : includeFilters) {
-				if (includeWord.equals("") || upperName.contains(includeWord)) {
-					include = true;
-					break;
-				}
-			}
-			if (!include)
-				return false;
-		}
-		if (excludeFilters != null) {
-			for (String excludeWord : excludeFilters) {
-				if (!excludeWord.equals("") && upperName.contains(excludeWord))
-					return false;
-			}
+	private static class ServerResult {
+
+		final JSONArray currentStats;
+		final List<Torrent> newTorrents;
+		final List<Torrent> doneTorrents;
+
+		ServerResult(JSONArray currentStats, List<Torrent> newTorrents, List<Torrent> doneTorrents) {
+			this.currentStats = currentStats;
+			this.newTorrents = newTorrents;
+			this.doneTorrents = doneTorrents;
 		}
-		return true;
+
 	}
 
 }
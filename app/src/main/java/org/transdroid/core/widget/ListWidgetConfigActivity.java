@@ -49,6 +49,7 @@ import org.transdroid.core.gui.lists.SortByListItem;
 import org.transdroid.core.gui.log.Log;
 import org.transdroid.core.gui.navigation.StatusType;
 import org.transdroid.core.gui.navigation.StatusType.StatusTypeFilter;
+import org.transdroid.core.gui.navigation.TorrentsSummary;
 import org.transdroid.core.service.ConnectivityHelper;
 import org.transdroid.daemon.Daemon;
 import org.transdroid.daemon.IDaemonAdapter;
@@ -105,6 +106,7 @@ public class ListWidgetConfigActivity extends AppCompatActivity {
 		}
 	};
 	private List<Torrent> previewTorrents = null;
+	private TorrentsSummary previewSummary = null;
 	private int appWidgetId;
 	private OnClickListener doneClicked = new OnClickListener() {
 		@Override
@@ -214,7 +216,9 @@ public class ListWidgetConfigActivity extends AppCompatActivity {
 		// Create a connection object and retrieve the live torrents
 		IDaemonAdapter connection =
 				((ServerSetting) serverSpinner.getSelectedItem()).createServerAdapter(connectivityHelper.getConnectedNetworkName(), this);
-		DaemonTaskResult result = RetrieveTask.create(connection).execute(log);
+		// All torrents are retrieved, as the status type to preview may still change
+		DaemonTaskResult result =
+				RetrieveTask.create(connection, RetrieveTask.Profile.Widget, RetrieveTask.Scope.All).execute(log);
 		if (result instanceof RetrieveTaskSuccessResult) {
 			// Success; show the active torrents in the widget preview
 			onTorrentsRetrieved(((RetrieveTaskSuccessResult) result).getTorrents(), ((RetrieveTaskSuccessResult) result).getLabels());
@@ -228,6 +232,7 @@ public class ListWidgetConfigActivity extends AppCompatActivity {
 	@UiThread
 	protected void onTorrentsRetrieved(List<Torrent> torrents, List<Label> labels) {
 		previewTorrents = torrents;
+		previewSummary = new TorrentsSummary(torrents, systemSettings.treatDormantAsInactive());
 		filterTorrents();
 	}
 
@@ -250,10 +255,9 @@ public class ListWidgetConfigActivity extends AppCompatActivity {
 		// Get the already loaded torrents and filter and sort them
 		ArrayList<Torrent> filteredTorrents = new ArrayList<>(previewTorrents.size());
 		StatusTypeFilter statusTypeFilter = (StatusTypeFilter) filterSpinner.getSelectedItem();
-		boolean dormantAsInactive = systemSettings.treatDormantAsInactive();
-		for (Torrent torrent : previewTorrents) {
-			if (statusTypeFilter.matches(torrent, dormantAsInactive)) {
-				filteredTorrents.add(torrent);
+		for (int i = 0; i < previewTorrents.size(); i++) {
+			if (previewSummary.matches(statusTypeFilter.getStatusType(), i)) {
+				filteredTorrents.add(previewTorrents.get(i));
 			}
 		}
 		if (filteredTorrents.size() == 0) {
@@ -265,21 +269,10 @@ public class ListWidgetConfigActivity extends AppCompatActivity {
 		Collections.sort(filteredTorrents, new TorrentsComparator(serverType, sortBy, reverseorderCheckBox.isChecked()));
 
 		// Update the server status count and speeds
-		int downcount = 0, upcount = 0, downspeed = 0, upspeed = 0;
-		for (Torrent torrent : previewTorrents) {
-			if (torrent.isDownloading(dormantAsInactive)) {
-				downcount++;
-				upcount++;
-			} else if (torrent.isSeeding(dormantAsInactive)) {
-				upcount++;
-			}
-			downspeed += torrent.getRateDownload();
-			upspeed += torrent.getRateUpload();
-		}
-		downcountText.setText(Integer.toString(downcount));
-		upcountText.setText(Integer.toString(upcount));
-		downspeedText.setText(FileSizeConverter.getSize(downspeed) + "/s");
-		upspeedText.setText(FileSizeConverter.getSize(upspeed) + "/s");
+		downcountText.setText(Integer.toString(previewSummary.getDownloadingCount()));
+		upcountText.setText(Integer.toString(previewSummary.getUploadingCount()));
+		downspeedText.setText(FileSizeConverter.getSize(previewSummary.getDownloadRate()) + "/s");
+		upspeedText.setText(FileSizeConverter.getSize(previewSummary.getUploadRate()) + "/s");
 
 		// Finally update the widget preview with the live, filtered and sorted torrents list
 		torrentsList.setAdapter(new ListWidgetPreviewAdapter(this, 0, filteredTorrents));
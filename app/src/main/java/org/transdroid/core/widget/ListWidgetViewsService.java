@@ -29,11 +29,13 @@ import org.androidannotations.annotations.EService;
 import org.transdroid.R;
 import org.transdroid.core.app.settings.*;
 import org.transdroid.core.gui.lists.LocalTorrent;
+import org.transdroid.core.gui.navigation.TorrentsSummary;
 import org.transdroid.core.gui.log.*;
 import org.transdroid.core.service.*;
 import org.transdroid.daemon.Daemon;
 import org.transdroid.daemon.IDaemonAdapter;
 import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.TorrentStore;
 import org.transdroid.daemon.TorrentsComparator;
 import org.transdroid.daemon.task.DaemonTaskResult;
 import org.transdroid.daemon.task.RetrieveTask;
@@ -105,24 +107,33 @@ class WidgetViewsFactory implements RemoteViewsService.RemoteViewsFactory {
 		IDaemonAdapter connection =
 				server.createServerAdapter(ConnectivityHelper_.getInstance_(context).getConnectedNetworkName(),
 						context);
-		DaemonTaskResult result = RetrieveTask.create(connection).execute(log);
-		if (!(result instanceof RetrieveTaskSuccessResult)) {
-			// TODO: Show error text somehow in the remote view, perhaps via the EmptyView's text?
-			log.e(context, "The torrents could not be retrieved at this time; probably a connection issue");
-			if (torrents != null) {
-				torrents.clear();
+		DaemonTaskResult result =
+				RetrieveTask.create(connection, RetrieveTask.Profile.Widget, getRetrieveScope(config)).execute(log);
+		List<Torrent> allTorrents;
+		if (result instanceof RetrieveTaskSuccessResult) {
+			allTorrents = ((RetrieveTaskSuccessResult) result).getTorrents();
+		} else {
+			// Show the torrents as last retrieved (by the app or any widget) if the server does not respond now
+			TorrentStore.Snapshot lastKnown = TorrentStore.getSnapshot(connection.getSettings().getIdString());
+			if (lastKnown == null) {
+				// TODO: Show error text somehow in the remote view, perhaps via the EmptyView's text?
+				log.e(context, "The torrents could not be retrieved at this time; probably a connection issue");
+				if (torrents != null) {
+					torrents.clear();
+				}
+				return;
 			}
-			return;
+			log.d(context, "The torrents could not be retrieved at this time; showing the last known torrents");
+			allTorrents = lastKnown.getTorrents();
 		}
 
 		// We have data; filter, sort and store it to use later when getViewAt gets called
 		SystemSettings systemSettings = SystemSettings_.getInstance_(context);
 		ArrayList<Torrent> filteredTorrents = new ArrayList<>();
-		List<Torrent> allTorrents = ((RetrieveTaskSuccessResult) result).getTorrents();
-		for (Torrent torrent : allTorrents) {
-			if (config.getStatusType().getFilterItem(context)
-					.matches(torrent, systemSettings.treatDormantAsInactive())) {
-				filteredTorrents.add(torrent);
+		TorrentsSummary summary = new TorrentsSummary(allTorrents, systemSettings.treatDormantAsInactive());
+		for (int i = 0; i < allTorrents.size(); i++) {
+			if (summary.matches(config.getStatusType(), i)) {
+				filteredTorrents.add(allTorrents.get(i));
 			}
 		}
 		if (filteredTorrents.size() > 0) {
@@ -138,23 +149,12 @@ class WidgetViewsFactory implements RemoteViewsService.RemoteViewsFactory {
 		if (config.shouldShowStatusView()) {
 
 			// Update the server status count and speeds in the 'action bar'
-			int downcount = 0, upcount = 0, downspeed = 0, upspeed = 0;
-			for (Torrent torrent : torrents) {
-				if (torrent.isDownloading(systemSettings.treatDormantAsInactive())) {
-					downcount++;
-					upcount++;
-				} else if (torrent.isSeeding(systemSettings.treatDormantAsInactive())) {
-					upcount++;
-				}
-				downspeed += torrent.getRateDownload();
-				upspeed += torrent.getRateUpload();
-			}
 			rv.setViewVisibility(R.id.navigation_view, View.GONE);
 			rv.setViewVisibility(R.id.serverstatus_view, View.VISIBLE);
-			rv.setTextViewText(R.id.downcount_text, Integer.toString(downcount));
-			rv.setTextViewText(R.id.upcount_text, Integer.toString(upcount));
-			rv.setTextViewText(R.id.downspeed_text, FileSizeConverter.getSize(downspeed) + "/s");
-			rv.setTextViewText(R.id.upspeed_text, FileSizeConverter.getSize(upspeed) + "/s");
+			rv.setTextViewText(R.id.downcount_text, Integer.toString(summary.getDownloadingCount()));
+			rv.setTextViewText(R.id.upcount_text, Integer.toString(summary.getUploadingCount()));
+			rv.setTextViewText(R.id.downspeed_text, FileSizeConverter.getSize(summary.getDownloadRate()) + "/s");
+			rv.setTextViewText(R.id.upspeed_text, FileSizeConverter.getSize(summary.getUploadRate()) + "/s");
 
 			AppWidgetManager.getInstance(context.getApplicationContext()).updateAppWidget(appWidgetId, rv);
 
@@ -162,6 +162,27 @@ class WidgetViewsFactory implements RemoteViewsService.RemoteViewsFactory {
 
 	}
 
+	/**
+	 * Returns the retrieval scope that holds all torrents that the widget would show for the given status type; the
+	 * retrieved torrents are still filtered afterwards.
+	 */
+	private RetrieveTask.Scope getRetrieveScope(ListWidgetConfig config) {
+		if (config.shouldShowStatusView()) {
+			// The server status counts and rates are those of all torrents, as in the widget configuration preview
+			return RetrieveTask.Scope.All;
+		}
+		switch (config.getStatusType()) {
+			case OnlyDownloading:
+				return RetrieveTask.Scope.Downloading;
+			case OnlyUploading:
+				return RetrieveTask.Scope.Seeding;
+			case OnlyActive:
+				return RetrieveTask.Scope.Active;
+			default:
+				return RetrieveTask.Scope.All;
+		}
+	}
+
 	@Override
 	public RemoteViews getViewAt(int position) {
 
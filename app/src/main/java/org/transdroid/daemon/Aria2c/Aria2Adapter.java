@@ -18,6 +18,7 @@
 package org.transdroid.daemon.Aria2c;
 
 import android.net.Uri;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import org.apache.http.HttpEntity;
@@ -29,6 +30,7 @@ import org.base64.android.Base64;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.transdroid.core.gui.log.Log;
 import org.transdroid.daemon.Daemon;
 import org.transdroid.daemon.DaemonException;
@@ -67,7 +69,12 @@ import java.io.InputStream;
 import java.io.StringWriter;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * The daemon adapter from the Aria2 torrent client. Documentation available at http://aria2.sourceforge.net/manual/en/html/aria2c.html
@@ -76,9 +83,31 @@ import java.util.List;
 public class Aria2Adapter implements IDaemonAdapter {
 
 	private static final String LOG_NAME = "Aria2 daemon";
+	private static final long REPEAT_INTERVAL = 2 * 60 * 1000;
+	private static final long WEBSOCKET_RETRY_BASE = 30 * 1000;
+	private static final long WEBSOCKET_RETRY_MAX = 30 * 60 * 1000;
+	private static final JSONArray LIST_FIELDS =
+			new JSONArray().put("gid").put("status").put("totalLength").put("completedLength").put("uploadLength")
+					.put("downloadSpeed").put("uploadSpeed").put("numSeeders").put("dir").put("connections")
+					.put("errorCode");
+	private static final JSONArray NAME_FIELDS = new JSONArray().put("gid").put("bittorrent").put("files");
+	private static final JSONArray GID_FIELDS = new JSONArray().put("gid");
 
 	private DaemonSettings settings;
 	private DefaultHttpClient httpclient;
+	// Names never change for a gid, but deriving them requires the (heavy) bittorrent info and files fields
+	private final Map<String, String> names = new HashMap<>();
+	// Stopped download results never change, so they are kept (in aria2's order) until aria2's counts show otherwise
+	private final Map<String, JSONObject> stopped = new LinkedHashMap<>();
+	private String stoppedTotal = null;
+	private Aria2WebSocketClient webSocket;
+	private int webSocketFailures = 0;
+	private long webSocketRetryAt = 0;
+	private long lastRetrieve = -1;
+	// While connected over a WebSocket: the last known state of every download and the gids aria2 notified about since
+	private final Map<String, JSONObject> downloads = new LinkedHashMap<>();
+	private final Set<String> notified = new HashSet<>();
+	private boolean live = false;
 
 	public Aria2Adapter(DaemonSettings settings) {
 		this.settings = settings;
@@ -93,25 +122,8 @@ public class Aria2Adapter implements IDaemonAdapter {
 			switch (task.getMethod()) {
 				case Retrieve:
 
-					// Request all torrents from server
-					// NOTE Since there is no aria2.tellAll (or something) we have to use batch requests
-					JSONArray fields =
-							new JSONArray().put("gid").put("status").put("totalLength").put("completedLength")
-									.put("uploadLength").put("downloadSpeed").put("uploadSpeed").put("numSeeders")
-									.put("dir").put("connections").put("errorCode").put("bittorrent").put("files");
-					JSONObject active = buildRequest("aria2.tellActive", new JSONArray().put(fields));
-					JSONObject waiting =
-							buildRequest("aria2.tellWaiting", new JSONArray().put(0).put(9999).put(fields));
-					JSONObject stopped =
-							buildRequest("aria2.tellStopped", new JSONArray().put(0).put(9999).put(fields));
-					params.put(active).put(waiting).put(stopped);
-
-					List<Torrent> torrents = new ArrayList<>();
-					JSONArray lists = makeRequestForArray(log, params.toString());
-					for (int i = 0; i < lists.length(); i++) {
-						torrents.addAll(parseJsonRetrieveTorrents(lists.getJSONObject(i).getJSONArray("result")));
-					}
-					return new RetrieveTaskSuccessResult((RetrieveTask) task, torrents, null);
+					// Request all torrents from server, with only the lightweight fields
+					return new RetrieveTaskSuccessResult((RetrieveTask) task, retrieveTorrents(log), null);
 
 				case GetTorrentDetails:
 
@@ -279,6 +291,20 @@ public class Aria2Adapter implements IDaemonAdapter {
 
 	private synchronized String makeRawRequest(Log log, String data) throws DaemonException {
 
+		// Use the WebSocket connection when it is open, which avoids the HTTP request overhead
+		if (webSocket != null && webSocket.isOpen()) {
+			try {
+				String result = webSocket.call(new JSONTokener(data).nextValue());
+				log.d(LOG_NAME, "Success (WebSocket): " +
+						(result.length() > 300 ? result.substring(0, 300) + "... (" + result.length() + " chars)" :
+								result));
+				return result;
+			} catch (JSONException | DaemonException e) {
+				log.d(LOG_NAME, "WebSocket error, falling back to HTTP: " + e.toString());
+				webSocket.close();
+			}
+		}
+
 		try {
 
 			// Initialise the HTTP client
@@ -322,73 +348,323 @@ public class Aria2Adapter implements IDaemonAdapter {
 
 	}
 
-	private ArrayList<Torrent> parseJsonRetrieveTorrents(JSONArray response) throws JSONException {
+	/**
+	 * Retrieves all downloads. Once downloads are retrieved repeatedly, a WebSocket connection is opened over which aria2
+	 * notifies about started, paused, stopped, completed and failed downloads. The downloads are then kept by gid and only
+	 * the active downloads and those that aria2 notified about are requested again, as long as aria2's global counts
+	 * confirm that no change went unnoticed.
+	 */
+	private synchronized List<Torrent> retrieveTorrents(Log log) throws DaemonException, JSONException {
+
+		long now = SystemClock.elapsedRealtime();
+		if (lastRetrieve >= 0 && now - lastRetrieve < REPEAT_INTERVAL) {
+			ensureWebSocket(log);
+		}
+		lastRetrieve = now;
+		boolean connected = webSocket != null && webSocket.isOpen();
 
-		// Parse response
-		ArrayList<Torrent> torrents = new ArrayList<>();
-		for (int j = 0; j < response.length(); j++) {
+		List<JSONObject> entries = connected && live ? retrieveChangedEntries(log) : null;
+		if (entries == null) {
+			synchronized (notified) {
+				notified.clear();
+			}
+			entries = retrieveAllEntries(log);
+			downloads.clear();
+			if (connected) {
+				for (JSONObject entry : entries) {
+					downloads.put(entry.getString("gid"), entry);
+				}
+			}
+			live = connected;
+		}
+		return buildTorrents(log, entries);
 
-			// Add the parsed torrent to the list
-			JSONObject tor = response.getJSONObject(j);
-			int downloadSpeed = tor.getInt("downloadSpeed");
-			long totalLength = tor.getLong("totalLength");
-			long completedLength = tor.getLong("completedLength");
-			int numSeeders = tor.has("numSeeders") ? tor.getInt("numSeeders") : 0;
-			TorrentStatus status = convertAriaState(tor.getString("status"), completedLength == totalLength);
-			int errorCode = tor.optInt("errorCode", 0);
-			String error = errorCode > 0 ? convertAriaError(errorCode) : null;
-			String name = null;
-			JSONObject bittorrent;
-			if (tor.has("bittorrent")) {
-				// Get name form the bittorrent info object
-				bittorrent = tor.getJSONObject("bittorrent");
-				if (bittorrent.has("info")) {
-					name = bittorrent.getJSONObject("info").getString("name");
+	}
+
+	private void ensureWebSocket(Log log) {
+		if ((webSocket != null && webSocket.isOpen()) || SystemClock.elapsedRealtime() < webSocketRetryAt) {
+			return;
+		}
+		// Notifications may have been missed while disconnected
+		live = false;
+		webSocket = new Aria2WebSocketClient(settings, new Aria2WebSocketClient.NotificationListener() {
+			@Override
+			public void onNotification(String method, String gid) {
+				synchronized (notified) {
+					notified.add(gid);
 				}
-			} else if (tor.has("files")) {
-				// Get name from the first included file we can find
-				JSONArray files = tor.getJSONArray("files");
-				if (files.length() > 0) {
-					name = Uri.parse(files.getJSONObject(0).getString("path")).getLastPathSegment();
-					if (name == null) {
-						name = files.getJSONObject(0).getString("path");
+			}
+		});
+		try {
+			webSocket.connect();
+			webSocketFailures = 0;
+		} catch (DaemonException e) {
+			// An older aria2, a proxy that does not pass WebSockets or just a network glitch; keep polling over HTTP and
+			// try again later, waiting longer after every failed attempt
+			long retryIn = Math.min(WEBSOCKET_RETRY_BASE << Math.min(webSocketFailures, 10), WEBSOCKET_RETRY_MAX);
+			log.d(LOG_NAME, "WebSocket not available: " + e.toString() + "; retrying in " + (retryIn / 1000) + "s");
+			webSocket = null;
+			webSocketFailures++;
+			webSocketRetryAt = SystemClock.elapsedRealtime() + retryIn;
+		}
+	}
+
+	/**
+	 * Updates the known downloads with the active ones and the ones that aria2 notified about.
+	 * @return All known downloads, or null if the global counts show that a full retrieval is required
+	 */
+	private List<JSONObject> retrieveChangedEntries(Log log) throws DaemonException, JSONException {
+
+		String[] changed;
+		synchronized (notified) {
+			changed = notified.toArray(new String[notified.size()]);
+			notified.clear();
+		}
+		JSONArray batch = new JSONArray();
+		batch.put(buildRequest("aria2.getGlobalStat", null));
+		batch.put(buildRequest("aria2.tellActive", new JSONArray().put(LIST_FIELDS)));
+		for (String gid : changed) {
+			batch.put(buildRequest("aria2.tellStatus", new JSONArray().put(gid).put(LIST_FIELDS)));
+		}
+		JSONArray results = makeRequestForArray(log, batch.toString());
+		JSONObject stats = results.getJSONObject(0).getJSONObject("result");
+		JSONArray active = results.getJSONObject(1).getJSONArray("result");
+		for (int i = 0; i < active.length(); i++) {
+			downloads.put(active.getJSONObject(i).getString("gid"), active.getJSONObject(i));
+		}
+		for (int i = 0; i < changed.length; i++) {
+			// A download that was removed in the meantime has an error instead of a result
+			JSONObject status = results.getJSONObject(2 + i).optJSONObject("result");
+			if (status == null) {
+				downloads.remove(changed[i]);
+			} else {
+				downloads.put(changed[i], status);
+			}
+		}
+
+		// Downloads may be added as waiting or their results removed without notification, so check the counts
+		int numActive = 0, numWaiting = 0, numStopped = 0;
+		for (JSONObject download : downloads.values()) {
+			String status = download.getString("status");
+			if (status.equals("active")) {
+				numActive++;
+			} else if (status.equals("waiting") || status.equals("paused")) {
+				numWaiting++;
+			} else {
+				numStopped++;
+			}
+		}
+		if (numActive != active.length() || numWaiting != Integer.parseInt(stats.getString("numWaiting")) ||
+				numStopped != Integer.parseInt(stats.getString("numStopped"))) {
+			log.d(LOG_NAME, "Known downloads are out of sync with the global counts; retrieving all");
+			return null;
+		}
+		return new ArrayList<>(downloads.values());
+
+	}
+
+	/**
+	 * Retrieves all downloads in (at most) three batched round trips. The first asks for the global counts and the
+	 * active downloads, the second for exactly the number of waiting downloads that exist and, if the stopped counts
+	 * changed, for the gids of the stopped downloads. The third asks only for the stopped downloads that are new. Only
+	 * lightweight fields are requested.
+	 */
+	private List<JSONObject> retrieveAllEntries(Log log) throws DaemonException, JSONException {
+
+		// NOTE Since there is no aria2.tellAll (or something) we have to use batch requests
+		JSONArray first = new JSONArray();
+		first.put(buildRequest("aria2.getGlobalStat", null));
+		first.put(buildRequest("aria2.tellActive", new JSONArray().put(LIST_FIELDS)));
+		JSONArray firstResults = makeRequestForArray(log, first.toString());
+		JSONObject stats = firstResults.getJSONObject(0).getJSONObject("result");
+		List<JSONObject> entries = new ArrayList<>();
+		addResults(entries, firstResults.getJSONObject(1).getJSONArray("result"));
+
+		// Aria2 sends the counts as strings; the total number of stopped downloads only ever grows, while removing stopped
+		// results only lowers the number of stopped downloads (and older versions do not report the total at all)
+		int numWaiting = Integer.parseInt(stats.getString("numWaiting"));
+		int numStopped = Integer.parseInt(stats.getString("numStopped"));
+		String numStoppedTotal = stats.optString("numStoppedTotal", null);
+		boolean stoppedChanged = numStoppedTotal == null || !numStoppedTotal.equals(stoppedTotal) ||
+				numStopped != stopped.size();
+		JSONArray second = new JSONArray();
+		if (numWaiting > 0) {
+			second.put(buildRequest("aria2.tellWaiting", new JSONArray().put(0).put(numWaiting).put(LIST_FIELDS)));
+		}
+		if (stoppedChanged && numStopped > 0) {
+			second.put(buildRequest("aria2.tellStopped", new JSONArray().put(0).put(numStopped).put(GID_FIELDS)));
+		}
+		JSONArray stoppedGids = new JSONArray();
+		if (second.length() > 0) {
+			JSONArray secondResults = makeRequestForArray(log, second.toString());
+			if (numWaiting > 0) {
+				addResults(entries, secondResults.getJSONObject(0).getJSONArray("result"));
+			}
+			if (stoppedChanged && numStopped > 0) {
+				stoppedGids = secondResults.getJSONObject(secondResults.length() - 1).getJSONArray("result");
+			}
+		}
+		if (stoppedChanged) {
+			updateStopped(log, stoppedGids);
+			stoppedTotal = numStoppedTotal;
+		}
+		entries.addAll(stopped.values());
+		return entries;
+
+	}
+
+	/**
+	 * Replaces the known stopped downloads with those listed, asking only for the fields of the ones not known yet.
+	 */
+	private void updateStopped(Log log, JSONArray stoppedGids) throws DaemonException, JSONException {
+
+		JSONArray unknown = new JSONArray();
+		for (int i = 0; i < stoppedGids.length(); i++) {
+			String gid = stoppedGids.getJSONObject(i).getString("gid");
+			if (!stopped.containsKey(gid)) {
+				unknown.put(buildRequest("aria2.tellStatus", new JSONArray().put(gid).put(LIST_FIELDS)));
+			}
+		}
+		Map<String, JSONObject> fetched = new HashMap<>();
+		if (unknown.length() > 0) {
+			JSONArray unknownResults = makeRequestForArray(log, unknown.toString());
+			for (int i = 0; i < unknownResults.length(); i++) {
+				// A stopped download may have been removed in the meantime, in which case there is an error instead
+				JSONObject status = unknownResults.getJSONObject(i).optJSONObject("result");
+				if (status != null) {
+					fetched.put(status.getString("gid"), status);
+				}
+			}
+		}
+		Map<String, JSONObject> known = new LinkedHashMap<>(stopped);
+		stopped.clear();
+		for (int i = 0; i < stoppedGids.length(); i++) {
+			String gid = stoppedGids.getJSONObject(i).getString("gid");
+			JSONObject entry = known.containsKey(gid) ? known.get(gid) : fetched.get(gid);
+			if (entry != null) {
+				stopped.put(gid, entry);
+			}
+		}
+
+	}
+
+	/**
+	 * Builds the torrents list from the download entries, asking for the bittorrent info and files only once per new gid
+	 * to derive its name.
+	 */
+	private List<Torrent> buildTorrents(Log log, List<JSONObject> entries) throws DaemonException, JSONException {
+
+		// Ask for the static info of downloads that we did not see before (or could not name yet)
+		JSONArray unnamed = new JSONArray();
+		for (JSONObject entry : entries) {
+			if (!names.containsKey(entry.getString("gid"))) {
+				unnamed.put(buildRequest("aria2.tellStatus", new JSONArray().put(entry.getString("gid")).put(NAME_FIELDS)));
+			}
+		}
+		Map<String, String> seen = new HashMap<>();
+		if (unnamed.length() > 0) {
+			JSONArray unnamedResults = makeRequestForArray(log, unnamed.toString());
+			for (int i = 0; i < unnamedResults.length(); i++) {
+				// A download may have been removed in the meantime, in which case there is an error instead of a result
+				JSONObject info = unnamedResults.getJSONObject(i).optJSONObject("result");
+				if (info != null) {
+					String name = parseJsonName(info);
+					if (name != null) {
+						seen.put(info.getString("gid"), name);
 					}
 				}
 			}
+		}
+
+		// Build the list while forgetting about downloads that no longer exist
+		List<Torrent> torrents = new ArrayList<>(entries.size());
+		for (JSONObject entry : entries) {
+			String gid = entry.getString("gid");
+			String name = names.get(gid);
 			if (name == null) {
-				name = tor.getString("gid"); // Fallback name
+				name = seen.get(gid);
 			}
-			// @formatter:off
-			torrents.add(new Torrent(
-					j, 
-					tor.getString("gid"), 
-					name, 
-					status, 
-					tor.getString("dir"), 
-					downloadSpeed,
-					tor.getInt("uploadSpeed"), 
-					tor.getInt("connections"), 
-					numSeeders , 
-					tor.getInt("connections"), 
-					numSeeders, 
-					(downloadSpeed > 0? (int) (totalLength / downloadSpeed): -1), 
-					completedLength, 
-					tor.getLong("uploadLength"),
-					totalLength, 
-					completedLength / (float) totalLength, // Percentage to [0..1]
-					0f, // Not available
-					null, // Not available
-					null, // Not available
-					null, // Not available
-					error, 
-					settings.getType()));
-			// @formatter:on
-
+			if (name != null) {
+				seen.put(gid, name);
+			}
+			torrents.add(parseJsonTorrent(torrents.size(), entry, name));
 		}
+		names.clear();
+		names.putAll(seen);
 		return torrents;
 
 	}
 
+	private void addResults(List<JSONObject> entries, JSONArray results) throws JSONException {
+		for (int i = 0; i < results.length(); i++) {
+			entries.add(results.getJSONObject(i));
+		}
+	}
+
+	private String parseJsonName(JSONObject tor) throws JSONException {
+
+		String name = null;
+		JSONObject bittorrent;
+		if (tor.has("bittorrent")) {
+			// Get name form the bittorrent info object
+			bittorrent = tor.getJSONObject("bittorrent");
+			if (bittorrent.has("info")) {
+				name = bittorrent.getJSONObject("info").getString("name");
+			}
+		} else if (tor.has("files")) {
+			// Get name from the first included file we can find
+			JSONArray files = tor.getJSONArray("files");
+			if (files.length() > 0) {
+				name = Uri.parse(files.getJSONObject(0).getString("path")).getLastPathSegment();
+				if (name == null) {
+					name = files.getJSONObject(0).getString("path");
+				}
+			}
+		}
+		return TextUtils.isEmpty(name) ? null : name;
+
+	}
+
+	private Torrent parseJsonTorrent(int id, JSONObject tor, String name) throws JSONException {
+
+		int downloadSpeed = tor.getInt("downloadSpeed");
+		long totalLength = tor.getLong("totalLength");
+		long completedLength = tor.getLong("completedLength");
+		int numSeeders = tor.has("numSeeders") ? tor.getInt("numSeeders") : 0;
+		TorrentStatus status = convertAriaState(tor.getString("status"), completedLength == totalLength);
+		int errorCode = tor.optInt("errorCode", 0);
+		String error = errorCode > 0 ? convertAriaError(errorCode) : null;
+		if (name == null) {
+			name = tor.getString("gid"); // Fallback name
+		}
+		// @formatter:off
+		return new Torrent(
+				id,
+				tor.getString("gid"),
+				name,
+				status,
+				tor.getString("dir"),
+				downloadSpeed,
+				tor.getInt("uploadSpeed"),
+				tor.getInt("connections"),
+				numSeeders ,
+				tor.getInt("connections"),
+				numSeeders,
+				(downloadSpeed > 0? (int) (totalLength / downloadSpeed): -1),
+				completedLength,
+				tor.getLong("uploadLength"),
+				totalLength,
+				completedLength / (float) totalLength, // Percentage to [0..1]
+				0f, // Not available
+				null, // Not available
+				null, // Not available
+				null, // Not available
+				error,
+				settings.getType());
+		// @formatter:on
+
+	}
+
 	private ArrayList<TorrentFile> parseJsonFileListing(JSONArray response, Torrent torrent) throws JSONException {
 
 		// Parse response
@@ -0,0 +1,405 @@
+/*
+ *	This file is part of Transdroid <http://www.transdroid.org>
+ *
+ *	Transdroid is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	Transdroid is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.transdroid.daemon.Aria2c;
+
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import org.base64.android.Base64;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.transdroid.daemon.DaemonException;
+import org.transdroid.daemon.DaemonException.ExceptionType;
+import org.transdroid.daemon.DaemonSettings;
+import org.transdroid.daemon.util.TlsSniSocketFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A JSON-RPC connection to aria2 over a WebSocket (RFC 6455). Calls may be made from any thread and are matched to
+ * their responses by id, while the notifications that aria2 pushes over the same connection are handed to a listener.
+ * The connection closes itself when no calls were made for a while.
+ */
+class Aria2WebSocketClient {
+
+	/**
+	 * Receives the notifications (such as aria2.onDownloadComplete) that aria2 sends for a download.
+	 */
+	interface NotificationListener {
+		void onNotification(String method, String gid);
+	}
+
+	private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+	private static final int OPCODE_CONTINUATION = 0x0;
+	private static final int OPCODE_TEXT = 0x1;
+	private static final int OPCODE_CLOSE = 0x8;
+	private static final int OPCODE_PING = 0x9;
+	private static final int OPCODE_PONG = 0xA;
+	private static final int READ_TIMEOUT = 30 * 1000;
+	private static final long IDLE_TIMEOUT = 2 * 60 * 1000;
+	// Marks that the connection closed while waiting for a response
+	private static final Object CLOSED = new Object();
+
+	private static AtomicInteger requestId = new AtomicInteger();
+
+	private final DaemonSettings settings;
+	private final NotificationListener listener;
+	private final Map<String, BlockingQueue<Object>> pending = new ConcurrentHashMap<>();
+	private final SecureRandom random = new SecureRandom();
+	private Socket socket;
+	private DataInputStream in;
+	private OutputStream out;
+	private volatile boolean open;
+	private volatile long lastUsed;
+
+	Aria2WebSocketClient(DaemonSettings settings, NotificationListener listener) {
+		this.settings = settings;
+		this.listener = listener;
+	}
+
+	/**
+	 * Opens the WebSocket connection and starts reading responses and notifications on a background thread.
+	 * @throws DaemonException If the connection could not be made or aria2 refused the WebSocket upgrade
+	 */
+	void connect() throws DaemonException {
+		try {
+			socket = openSocket();
+			socket.setSoTimeout(settings.getTimeoutInMilliseconds());
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out = socket.getOutputStream();
+			handshake();
+			socket.setSoTimeout(READ_TIMEOUT);
+		} catch (IOException e) {
+			close();
+			throw new DaemonException(ExceptionType.ConnectionError, "Failed to open WebSocket: " + e.getMessage());
+		}
+		open = true;
+		lastUsed = SystemClock.elapsedRealtime();
+		Thread reader = new Thread("Aria2 WebSocket reader") {
+			@Override
+			public void run() {
+				readMessages();
+			}
+		};
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	boolean isOpen() {
+		return open;
+	}
+
+	void close() {
+		open = false;
+		try {
+			if (socket != null)
+				socket.close();
+		} catch (IOException e) {
+			// ignore
+		}
+		// Release everyone still waiting for a response
+		for (BlockingQueue<Object> queue : pending.values()) {
+			queue.offer(CLOSED);
+		}
+	}
+
+	/**
+	 * Sends a request, or a batch of requests, and waits for the response.
+	 * @param request A JSONObject with a single request or a JSONArray with a batch of requests; its ids are replaced to
+	 * match the response to this call
+	 * @return The raw JSON response
+	 * @throws DaemonException On connection errors or if no response arrived in time
+	 */
+	String call(Object request) throws DaemonException {
+		String id = "transdroid-" + requestId.incrementAndGet();
+		BlockingQueue<Object> queue = new ArrayBlockingQueue<>(1);
+		pending.put(id, queue);
+		try {
+			if (request instanceof JSONArray) {
+				JSONArray batch = (JSONArray) request;
+				for (int i = 0; i < batch.length(); i++) {
+					batch.getJSONObject(i).put("id", id);
+				}
+			} else {
+				((JSONObject) request).put("id", id);
+			}
+			lastUsed = SystemClock.elapsedRealtime();
+			if (!open) {
+				throw new DaemonException(ExceptionType.ConnectionError, "WebSocket is closed");
+			}
+			writeFrame(OPCODE_TEXT, request.toString().getBytes("UTF-8"));
+			Object response = queue.poll(settings.getTimeoutInMilliseconds(), TimeUnit.MILLISECONDS);
+			if (response == null) {
+				throw new DaemonException(ExceptionType.ConnectionError, "No WebSocket response in time");
+			}
+			if (response == CLOSED) {
+				throw new DaemonException(ExceptionType.ConnectionError, "WebSocket closed while waiting for a response");
+			}
+			return (String) response;
+		} catch (JSONException e) {
+			throw new DaemonException(ExceptionType.UnexpectedResponse, e.toString());
+		} catch (IOException e) {
+			close();
+			throw new DaemonException(ExceptionType.ConnectionError, e.toString());
+		} catch (InterruptedException e) {
+			throw new DaemonException(ExceptionType.ConnectionError, e.toString());
+		} finally {
+			pending.remove(id);
+		}
+	}
+
+	private void readMessages() {
+		try {
+			while (open) {
+				String message;
+				try {
+					message = readMessage();
+				} catch (SocketTimeoutException e) {
+					// Nothing was received for a while (readMessage only lets this through in between messages, so the
+					// stream is still in sync); check if we are still in use
+					if (SystemClock.elapsedRealtime() - lastUsed > IDLE_TIMEOUT && pending.isEmpty()) {
+						break;
+					}
+					continue;
+				}
+				if (message != null) {
+					dispatch(message);
+				}
+			}
+		} catch (IOException e) {
+			// Connection lost; calls will fall back to plain HTTP
+		} finally {
+			close();
+		}
+	}
+
+	private void dispatch(String message) {
+		try {
+			Object json = new JSONTokener(message).nextValue();
+			JSONObject first = json instanceof JSONArray ? ((JSONArray) json).optJSONObject(0) : (JSONObject) json;
+			if (first == null) {
+				return;
+			}
+			if (first.has("method") && first.isNull("id")) {
+				// A notification, such as {"method":"aria2.onDownloadStart","params":[{"gid":"2089b05ecca3d829"}]}
+				JSONArray params = first.optJSONArray("params");
+				JSONObject event = params == null ? null : params.optJSONObject(0);
+				if (event != null && listener != null) {
+					listener.onNotification(first.getString("method"), event.getString("gid"));
+				}
+				return;
+			}
+			BlockingQueue<Object> queue = pending.get(first.optString("id"));
+			if (queue != null) {
+				queue.offer(message);
+			}
+		} catch (JSONException | ClassCastException e) {
+			// Not a message we understand; ignore it
+		}
+	}
+
+	/**
+	 * Reads frames until a complete text message arrived, answering pings along the way.
+	 * @return The text message, or null if only control frames were read
+	 * @throws SocketTimeoutException If nothing arrived while waiting for the start of a message
+	 * @throws IOException On connection errors, including the closing of the connection by aria2 and time-outs halfway
+	 * a message, after which the frame boundaries are lost
+	 */
+	private String readMessage() throws IOException {
+		ByteArrayOutputStream message = new ByteArrayOutputStream();
+		int header = in.readUnsignedByte();
+		try {
+			while (true) {
+				String read = readFrame(message, header);
+				if (read != null || message.size() == 0) {
+					return read;
+				}
+				header = in.readUnsignedByte();
+			}
+		} catch (SocketTimeoutException e) {
+			throw new IOException("WebSocket message incomplete: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the rest of a single frame, of which the first header byte was already read.
+	 * @return The text message if this frame completed it, or null otherwise
+	 */
+	private String readFrame(ByteArrayOutputStream message, int header) throws IOException {
+		boolean fin = (header & 0x80) != 0;
+		int opcode = header & 0x0F;
+		int lengthByte = in.readUnsignedByte();
+		long length = lengthByte & 0x7F;
+		if (length == 126) {
+			length = in.readUnsignedShort();
+		} else if (length == 127) {
+			length = in.readLong();
+		}
+		if (length < 0 || length > Integer.MAX_VALUE) {
+			throw new IOException("Invalid WebSocket frame length " + length);
+		}
+		byte[] mask = null;
+		if ((lengthByte & 0x80) != 0) {
+			mask = new byte[4];
+			in.readFully(mask);
+		}
+		byte[] payload = new byte[(int) length];
+		in.readFully(payload);
+		if (mask != null) {
+			for (int i = 0; i < payload.length; i++) {
+				payload[i] ^= mask[i % 4];
+			}
+		}
+		switch (opcode) {
+			case OPCODE_TEXT:
+			case OPCODE_CONTINUATION:
+				message.write(payload);
+				if (fin) {
+					return message.toString("UTF-8");
+				}
+				return null;
+			case OPCODE_PING:
+				writeFrame(OPCODE_PONG, payload);
+				return null;
+			case OPCODE_CLOSE:
+				throw new EOFException("WebSocket closed by aria2");
+			default:
+				// Pongs and binary frames are not used by aria2
+				return null;
+		}
+	}
+
+	private synchronized void writeFrame(int opcode, byte[] payload) throws IOException {
+		// Frames from the client are always masked
+		byte[] mask = new byte[4];
+		random.nextBytes(mask);
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.length + 14);
+		frame.write(0x80 | opcode);
+		if (payload.length < 126) {
+			frame.write(0x80 | payload.length);
+		} else if (payload.length <= 0xFFFF) {
+			frame.write(0x80 | 126);
+			frame.write(payload.length >>> 8);
+			frame.write(payload.length);
+		} else {
+			frame.write(0x80 | 127);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				frame.write((int) ((long) payload.length >>> shift));
+			}
+		}
+		frame.write(mask);
+		for (int i = 0; i < payload.length; i++) {
+			frame.write(payload[i] ^ mask[i % 4]);
+		}
+		out.write(frame.toByteArray());
+		out.flush();
+	}
+
+	private void handshake() throws IOException {
+		byte[] nonce = new byte[16];
+		random.nextBytes(nonce);
+		String key = Base64.encodeBytes(nonce);
+		StringBuilder request = new StringBuilder();
+		request.append("GET ").append(settings.getFolder() == null ? "" : settings.getFolder()).append("/jsonrpc HTTP/1.1\r\n");
+		request.append("Host: ").append(settings.getAddress()).append(":").append(settings.getPort()).append("\r\n");
+		request.append("Upgrade: websocket\r\n");
+		request.append("Connection: Upgrade\r\n");
+		request.append("Sec-WebSocket-Key: ").append(key).append("\r\n");
+		request.append("Sec-WebSocket-Version: 13\r\n");
+		if (!TextUtils.isEmpty(settings.getUsername())) {
+			String credentials = settings.getUsername() + ":" + (settings.getPassword() == null ? "" : settings.getPassword());
+			request.append("Authorization: Basic ").append(Base64.encodeBytes(credentials.getBytes("UTF-8"))).append("\r\n");
+		}
+		request.append("\r\n");
+		out.write(request.toString().getBytes("UTF-8"));
+		out.flush();
+
+		String status = readLine(in);
+		if (status == null || !status.contains(" 101")) {
+			throw new IOException("WebSocket upgrade refused: " + status);
+		}
+		String accept = null;
+		String line;
+		while ((line = readLine(in)) != null && line.length() > 0) {
+			int colon = line.indexOf(':');
+			if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Accept")) {
+				accept = line.substring(colon + 1).trim();
+			}
+		}
+		try {
+			MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+			String expected = Base64.encodeBytes(sha1.digest((key + ACCEPT_GUID).getBytes("UTF-8")));
+			if (!expected.equals(accept)) {
+				throw new IOException("Invalid Sec-WebSocket-Accept header: " + accept);
+			}
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e.toString());
+		}
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c;
+		while ((c = in.read()) != -1) {
+			if (c == '\n') {
+				int length = line.length();
+				return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+			}
+			line.append((char) c);
+		}
+		return line.length() > 0 ? line.toString() : null;
+	}
+
+	private Socket openSocket() throws IOException {
+		if (!settings.getSsl()) {
+			Socket plain = new Socket();
+			plain.connect(new InetSocketAddress(settings.getAddress(), settings.getPort()), settings.getTimeoutInMilliseconds());
+			return plain;
+		}
+		final TlsSniSocketFactory socketFactory;
+		if (settings.getSslTrustKey() != null && settings.getSslTrustKey().length() != 0) {
+			socketFactory = new TlsSniSocketFactory(settings.getSslTrustKey());
+		} else if (settings.getSslTrustAll()) {
+			socketFactory = new TlsSniSocketFactory(true);
+		} else {
+			socketFactory = new TlsSniSocketFactory();
+		}
+		return socketFactory.createSocket(null, settings.getAddress(), settings.getPort(), false);
+	}
+
+}
@@ -69,7 +69,9 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -81,9 +83,11 @@ import java.util.List;
 public class BitCometAdapter implements IDaemonAdapter {
 
 	private static final String LOG_NAME = "BitComet daemon";
+	private static final int HTML_TASK_CELLS = 9;
 
 	private DaemonSettings settings;
 	private DefaultHttpClient httpclient;
+	private final Map<Long, TaskSummary> taskSummaries = new HashMap<Long, TaskSummary>();
 
 	public BitCometAdapter(DaemonSettings settings) {
 		this.settings = settings;
@@ -420,37 +424,47 @@ public class BitCometAdapter implements IDaemonAdapter {
 	}
 
 	/**
-	 * Parse BitComet HTML page (http response)
+	 * Parse BitComet HTML page (http response). The task table is scanned once, locating the cells of every row by
+	 * position, without copying the page or its rows. The summary page of a task, which holds the fields that are missing
+	 * in the table, is only requested if the row of that task changed since the previous refresh.
 	 * @param response The raw HTML response from the server
 	 * @return The parsed list of torrents from the raw HTML content
 	 * @throws DaemonException
 	 */
-	private ArrayList<Torrent> parseHttpTorrents(Log log, String response) throws DaemonException {
+	private synchronized ArrayList<Torrent> parseHttpTorrents(Log log, String response) throws DaemonException {
 
 		ArrayList<Torrent> torrents = new ArrayList<Torrent>();
+		Map<Long, TaskSummary> seenSummaries = new HashMap<Long, TaskSummary>();
 
 		try {
 
-			// Find, prepare and split substring with HTML tag TABLE
-			String[] parts =
-					response.substring(response.indexOf("<TABLE"), response.indexOf("</TABLE>")).replaceAll("</td>", "")
-							.replaceAll("</tr>", "").replaceAll("\n", "").split("<tr>");
-
-			for (int i = 2; i < parts.length; i++) {
-
-				String[] subParts = parts[i].replaceAll("<td>", "<td").split("<td");
-
-				if (subParts.length == 10 && subParts[1].contains("BT")) {
+			// Find the HTML tag TABLE; the first row holds the headers
+			int tableStart = response.indexOf("<TABLE");
+			int tableEnd = response.indexOf("</TABLE>", tableStart);
+			int[] cellStarts = new int[HTML_TASK_CELLS];
+			int[] cellEnds = new int[HTML_TASK_CELLS];
+			int rowStart = response.indexOf("<tr>", tableStart);
+			int rowIndex = -1;
+			while (rowStart >= 0 && rowStart < tableEnd) {
+
+				int rowEnd = response.indexOf("<tr>", rowStart + 4);
+				if (rowEnd < 0 || rowEnd > tableEnd) {
+					rowEnd = tableEnd;
+				}
+				if (rowIndex >= 0 && scanCells(response, rowStart, rowEnd, cellStarts, cellEnds) &&
+						response.substring(cellStarts[0], cellEnds[0]).contains("BT")) {
 
-					String name = subParts[2].substring(subParts[2].indexOf("/panel/task_detail"));
+					long id = rowIndex;
+					String name = cellText(response, cellStarts[1], cellEnds[1]);
+					name = name.substring(name.indexOf("/panel/task_detail"));
 					name = name.substring(name.indexOf(">") + 1, name.indexOf("<"));
 
-					TorrentStatus status = convertStatus(subParts[3]);
-					String percenDoneStr = subParts[6];
-					String downloadRateStr = subParts[7];
-					String uploadRateStr = subParts[8];
+					TorrentStatus status = convertStatus(cellText(response, cellStarts[2], cellEnds[2]));
+					String percenDoneStr = cellText(response, cellStarts[5], cellEnds[5]);
+					String downloadRateStr = cellText(response, cellStarts[6], cellEnds[6]);
+					String uploadRateStr = cellText(response, cellStarts[7], cellEnds[7]);
 
-					long size = convertSize(subParts[5]);
+					long size = convertSize(cellText(response, cellStarts[4], cellEnds[4]));
 					float percentDone = Float.parseFloat(percenDoneStr.substring(0, percenDoneStr.indexOf("%")));
 					long sizeDone = (long) (size * percentDone / 100);
 
@@ -459,88 +473,166 @@ public class BitCometAdapter implements IDaemonAdapter {
 							1000 * Integer.parseInt(downloadRateStr.substring(0, downloadRateStr.indexOf("kB/s")));
 
 					// Unfortunately, there is no info for above values providing by BitComet now,
-					// so we may only send additional request for that
-					int leechers = 0;
-					int seeders = 0;
-					int knownLeechers = 0;
-					int knownSeeders = 0;
-					int distributed_copies = 0;
-					long sizeUp;
-					String comment;
-					Date dateAdded;
-
-					// Comment code below to speedup torrent listing
-					// P.S. feature request to extend torrents info is already sent to the BitComet developers
-					//*
-					// Lets make summary request and parse details
-					String summary = makeRequest(log, "/panel/task_detail", new BasicNameValuePair("id", "" + (i - 2)),
-							new BasicNameValuePair("show", "summary"));
-
-					String[] sumParts = summary.substring(summary.indexOf("<div align=\"left\">Value</div></th>"))
-							.split("<tr><td>");
-					comment = sumParts[7].substring(sumParts[7].indexOf("<td>") + 4, sumParts[7].indexOf("</td></tr>"));
-
-					// Indexes for date and uploaded size
-					int idx = 9;
-					int sizeIdx = 12;
-
-					if (status == TorrentStatus.Downloading) {
-						seeders = Integer.parseInt(sumParts[9]
-								.substring(sumParts[9].indexOf("Seeds:") + 6, sumParts[9].indexOf("(Max possible")));
-						leechers = Integer.parseInt(sumParts[9].substring(sumParts[9].indexOf("Peers:") + 6,
-								sumParts[9].lastIndexOf("(Max possible")));
-						knownSeeders = Integer.parseInt(sumParts[9]
-								.substring(sumParts[9].indexOf("(Max possible:") + 14, sumParts[9].indexOf(")")));
-						knownLeechers = Integer.parseInt(sumParts[9]
-								.substring(sumParts[9].lastIndexOf("(Max possible:") + 14,
-										sumParts[9].lastIndexOf(")")));
-						idx = 13;
-						sizeIdx = 16;
+					// so we may only send additional request for that, which we only do when the row changed
+					int rowHash = hashRegion(response, rowStart, rowEnd);
+					TaskSummary summary = taskSummaries.get(id);
+					if (summary == null || summary.rowHash != rowHash || !summary.name.equals(name)) {
+						summary = parseHttpTaskSummary(log, id, status);
+						summary.rowHash = rowHash;
+						summary.name = name;
 					}
-
-					DateFormat df = new SimpleDateFormat("yyyy-mm-dd kk:mm:ss");
-					dateAdded = df.parse(sumParts[idx]
-							.substring(sumParts[idx].indexOf("<td>") + 4, sumParts[idx].indexOf("</td></tr>")));
-					//sizeDone =  convertSize(sumParts[sizeIdx].substring(sumParts[sizeIdx].indexOf("<td>")+4, sumParts[sizeIdx].indexOf(" (")));
-					sizeUp = convertSize(sumParts[sizeIdx + 1]
-							.substring(sumParts[sizeIdx + 1].indexOf("<td>") + 4, sumParts[sizeIdx + 1].indexOf(" (")));
-					//*
+					seenSummaries.put(id, summary);
 
 					// Add the parsed torrent to the list
 					// @formatter:off
 					torrents.add(new Torrent(
-							(long)i-2,
+							id,
 							null,
 							name,
 							status,
 							null,
 							rateDown,
 							rateUp,
-							seeders,
-							knownSeeders,
-							leechers,
-							knownLeechers,
+							summary.seeders,
+							summary.knownSeeders,
+							summary.leechers,
+							summary.knownLeechers,
 							(rateDown == 0? -1: (int) ((size - sizeDone) / rateDown)),
 							sizeDone,
-							sizeUp,
+							summary.sizeUp,
 							size,
 							percentDone / 100,
-							distributed_copies,
-							comment,
-							dateAdded,
+							0,
+							summary.comment,
+							summary.dateAdded,
 							null,
 							null,
 							settings.getType()));
 					// @formatter:on
 				}
+				rowStart = rowEnd < tableEnd ? rowEnd : -1;
+				rowIndex++;
 			}
 		} catch (Exception e) {
 			throw new DaemonException(ExceptionType.UnexpectedResponse, "Invalid BitComet HTTP response.");
 		}
 
+		// Forget about the tasks that no longer exist
+		taskSummaries.clear();
+		taskSummaries.putAll(seenSummaries);
 		return torrents;
 	}
 
+	/**
+	 * Locates the cells of a table row. A cell starts after its (possibly attributed) td tag and ends at its closing tag
+	 * or else at the next cell.
+	 * @return True if the row has exactly as many cells as a task row
+	 */
+	private static boolean scanCells(String html, int rowStart, int rowEnd, int[] cellStarts, int[] cellEnds) {
+		int cells = 0;
+		int td = html.indexOf("<td", rowStart);
+		while (td >= 0 && td < rowEnd) {
+			if (cells == cellStarts.length) {
+				return false;
+			}
+			int start = html.indexOf('>', td);
+			if (start < 0 || start >= rowEnd) {
+				return false;
+			}
+			start++;
+			int next = html.indexOf("<td", start);
+			if (next < 0 || next > rowEnd) {
+				next = rowEnd;
+			}
+			int end = html.indexOf("</td>", start);
+			if (end < 0 || end > next) {
+				end = next;
+			}
+			cellStarts[cells] = start;
+			cellEnds[cells] = end;
+			cells++;
+			td = next < rowEnd ? next : -1;
+		}
+		return cells == cellStarts.length;
+	}
+
+	/**
+	 * Returns the text of a cell, dropping the new lines and closing row tag that may trail it.
+	 */
+	private static String cellText(String html, int start, int end) {
+		String text = html.substring(start, end);
+		if (text.indexOf('\n') >= 0) {
+			text = text.replace("\n", "");
+		}
+		int tr = text.indexOf("</tr>");
+		return tr >= 0 ? text.substring(0, tr) : text;
+	}
+
+	private static int hashRegion(String text, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + text.charAt(i);
+		}
+		return hash;
+	}
+
+	/**
+	 * Requests and parses the summary page of a task, which holds the fields that are missing in the task list
+	 */
+	private TaskSummary parseHttpTaskSummary(Log log, long id, TorrentStatus status) throws Exception {
+
+		// P.S. feature request to extend torrents info is already sent to the BitComet developers
+		TaskSummary task = new TaskSummary();
+		String summary = makeRequest(log, "/panel/task_detail", new BasicNameValuePair("id", "" + id),
+				new BasicNameValuePair("show", "summary"));
+
+		String[] sumParts = summary.substring(summary.indexOf("<div align=\"left\">Value</div></th>"))
+				.split("<tr><td>");
+		task.comment = sumParts[7].substring(sumParts[7].indexOf("<td>") + 4, sumParts[7].indexOf("</td></tr>"));
+
+		// Indexes for date and uploaded size
+		int idx = 9;
+		int sizeIdx = 12;
+
+		if (status == TorrentStatus.Downloading) {
+			task.seeders = Integer.parseInt(sumParts[9]
+					.substring(sumParts[9].indexOf("Seeds:") + 6, sumParts[9].indexOf("(Max possible")));
+			task.leechers = Integer.parseInt(sumParts[9].substring(sumParts[9].indexOf("Peers:") + 6,
+					sumParts[9].lastIndexOf("(Max possible")));
+			task.knownSeeders = Integer.parseInt(sumParts[9]
+					.substring(sumParts[9].indexOf("(Max possible:") + 14, sumParts[9].indexOf(")")));
+			task.knownLeechers = Integer.parseInt(sumParts[9]
+					.substring(sumParts[9].lastIndexOf("(Max possible:") + 14,
+							sumParts[9].lastIndexOf(")")));
+			idx = 13;
+			sizeIdx = 16;
+		}
+
+		DateFormat df = new SimpleDateFormat("yyyy-mm-dd kk:mm:ss");
+		task.dateAdded = df.parse(sumParts[idx]
+				.substring(sumParts[idx].indexOf("<td>") + 4, sumParts[idx].indexOf("</td></tr>")));
+		//sizeDone =  convertSize(sumParts[sizeIdx].substring(sumParts[sizeIdx].indexOf("<td>")+4, sumParts[sizeIdx].indexOf(" (")));
+		task.sizeUp = convertSize(sumParts[sizeIdx + 1]
+				.substring(sumParts[sizeIdx + 1].indexOf("<td>") + 4, sumParts[sizeIdx + 1].indexOf(" (")));
+		return task;
+
+	}
+
+	/**
+	 * The fields of a task that are only available on its summary page, with the hash of the task list row they belong to
+	 */
+	private static class TaskSummary {
+		private int rowHash;
+		private String name;
+		private int leechers;
+		private int seeders;
+		private int knownLeechers;
+		private int knownSeeders;
+		private long sizeUp;
+		private String comment;
+		private Date dateAdded;
+	}
+
 	/**
 	 * Parse BitComet AJAX response that code was copy-pasted and slightly modified from \Ktorrent\StatsParser.java
 	 * @param response The raw XML data as string that was returned by the server
@@ -36,6 +36,7 @@ class DelugeCommon {
 	static final String RPC_FILEPRIORITIES = "file_priorities";
 	static final String RPC_FILEPROGRESS = "file_progress";
 	static final String RPC_HASH = "hash";
+	static final String RPC_ID = "id";
 	static final String RPC_INDEX = "index";
 	static final String RPC_LABEL = "label";
 	static final String RPC_KEY = "key";
@@ -61,6 +62,7 @@ class DelugeCommon {
 	static final String RPC_METHOD_RESUME = "core.resume_torrent";
 	static final String RPC_METHOD_RESUME_ALL = "core.resume_all_torrents";
 	static final String RPC_METHOD_SETCONFIG = "core.set_config";
+	static final String RPC_METHOD_SET_EVENT_INTEREST = "daemon.set_event_interest";
 	static final String RPC_METHOD_SETFILE = "core.set_torrent_file_priorities";
 	static final String RPC_METHOD_SETLABEL = "label.set_torrent";
 	static final String RPC_METHOD_SETTRACKERS = "core.set_torrent_trackers";
@@ -100,6 +102,8 @@ class DelugeCommon {
 	static final String[] RPC_FIELDS_ARRAY = {RPC_HASH, RPC_NAME, RPC_STATUS, RPC_SAVEPATH, RPC_RATEDOWNLOAD, RPC_RATEUPLOAD, RPC_NUMPEERS,
 			RPC_NUMSEEDS, RPC_TOTALPEERS, RPC_TOTALSEEDS, RPC_ETA, RPC_DOWNLOADEDEVER, RPC_UPLOADEDEVER, RPC_TOTALSIZE, RPC_PARTDONE, RPC_LABEL,
 			RPC_MESSAGE, RPC_TIMEADDED, RPC_TRACKER_STATUS,};
+	static final String[] RPC_RATE_FIELDS_ARRAY = {RPC_RATEDOWNLOAD, RPC_RATEUPLOAD, RPC_NUMPEERS, RPC_NUMSEEDS, RPC_TOTALPEERS,
+			RPC_TOTALSEEDS, RPC_ETA, RPC_DOWNLOADEDEVER, RPC_UPLOADEDEVER, RPC_PARTDONE,};
 	static final String[] RPC_FILE_FIELDS_ARRAY = {RPC_DETAILS, RPC_FILEPROGRESS, RPC_FILEPRIORITIES,};
 
 	static TorrentStatus convertDelugeState(String state) {
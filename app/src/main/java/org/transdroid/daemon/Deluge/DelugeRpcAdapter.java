@@ -29,9 +29,8 @@ import org.transdroid.core.rssparser.RssParser;
 import org.transdroid.daemon.*;
 import org.transdroid.daemon.DaemonException.ExceptionType;
 import org.transdroid.daemon.task.*;
-import org.xml.sax.SAXException;
+import org.xmlpull.v1.XmlPullParserException;
 
-import javax.xml.parsers.ParserConfigurationException;
 import java.io.*;
 import java.net.URI;
 import java.util.*;
@@ -50,6 +49,7 @@ public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier {
 
 	private final DaemonSettings settings;
 	private final boolean isVersion2;
+	private final DelugeTorrentMirror mirror = new DelugeTorrentMirror();
 
 	private int version = -1;
 
@@ -216,10 +216,30 @@ public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier {
 	@NonNull
 	private RetrieveTaskSuccessResult doRetrieve(DelugeRpcClient client, RetrieveTask task) throws DaemonException {
 		// Get torrents
-		//noinspection unchecked
-		final Map<String, Map<String, Object>> torrentsStatus = (Map<String, Map<String, Object>>) client.sendRequest
-				(RPC_METHOD_GET_TORRENTS_STATUS, new HashMap<>(), RPC_FIELDS_ARRAY);
-		final List<Torrent> torrents = getTorrents(torrentsStatus.values());
+		final List<Torrent> torrents;
+		if (mirror.isLive() && !mirror.shouldRefreshAll()) {
+			// Torrent events keep the mirror up to date; only get new and changed torrents in full and refresh the rates
+			final String[] staleIds = mirror.takeStale();
+			if (staleIds.length > 0) {
+				final Map<String, Object> filter = new HashMap<>();
+				filter.put(RPC_ID, staleIds);
+				//noinspection unchecked
+				mirror.putAll((Map<String, Map<String, Object>>) client.sendRequest(RPC_METHOD_GET_TORRENTS_STATUS, filter,
+						RPC_FIELDS_ARRAY));
+			}
+			if (mirror.shouldRefreshRates()) {
+				//noinspection unchecked
+				mirror.mergeAll((Map<String, Map<String, Object>>) client.sendRequest(RPC_METHOD_GET_TORRENTS_STATUS,
+						new HashMap<>(), RPC_RATE_FIELDS_ARRAY));
+			}
+			torrents = getTorrents(mirror.snapshot());
+		} else {
+			//noinspection unchecked
+			final Map<String, Map<String, Object>> torrentsStatus = (Map<String, Map<String, Object>>) client.sendRequest
+					(RPC_METHOD_GET_TORRENTS_STATUS, new HashMap<>(), RPC_FIELDS_ARRAY);
+			mirror.setAll(torrentsStatus, settings, isVersion2);
+			torrents = getTorrents(torrentsStatus.values());
+		}
 
 		// Check if Label plugin is enabled
 		final boolean hasLabelPlugin = hasMethod(client, RPC_METHOD_GET_LABELS);
@@ -301,6 +321,8 @@ public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier {
 		final String torrentId = task.getTargetTorrent().getUniqueID();
 		final String label = task.getNewLabel() == null ? "" : task.getNewLabel();
 		client.sendRequest(RPC_METHOD_SETLABEL, torrentId, label);
+		// The label plugin sends no events, so get the torrent in full on the next retrieval
+		mirror.markStale(torrentId);
 		return new DaemonTaskSuccessResult(task);
 	}
 
@@ -328,6 +350,7 @@ public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier {
 
 		optionsArgs.put(RPC_FILEPRIORITIES, priorities);
 		client.sendRequest(RPC_METHOD_SET_TORRENT_OPTIONS, getTorrentIdsArg(task), optionsArgs);
+		mirror.markStale(task.getTargetTorrent().getUniqueID());
 		return new DaemonTaskSuccessResult(task);
 	}
 
@@ -351,18 +374,22 @@ public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier {
 			trackers.add(tracker);
 		}
 		client.sendRequest(RPC_METHOD_SETTRACKERS, task.getTargetTorrent().getUniqueID(), trackers);
+		mirror.markStale(task.getTargetTorrent().getUniqueID());
 		return new DaemonTaskSuccessResult(task);
 	}
 
 	@NonNull
 	private DaemonTaskResult doForceRecheck(DelugeRpcClient client, ForceRecheckTask task) throws DaemonException {
 		client.sendRequest(RPC_METHOD_FORCERECHECK, getTorrentIdsArg(task));
+		mirror.markStale(task.getTargetTorrent().getUniqueID());
 		return new DaemonTaskSuccessResult(task);
 	}
 
 	@NonNull
 	private DaemonTaskResult doSetDownloadLocation(DelugeRpcClient client, SetDownloadLocationTask task) throws DaemonException {
 		client.sendRequest(RPC_METHOD_MOVESTORAGE, getTorrentIdsArg(task), task.getNewLocation());
+		// Moving may take a while; the storage moved event marks the torrent stale again once it is done
+		mirror.markStale(task.getTargetTorrent().getUniqueID());
 		return new DaemonTaskSuccessResult(task);
 	}
 
@@ -522,9 +549,7 @@ public class DelugeRpcAdapter implements IDaemonAdapter, RemoteRssSupplier {
 			rssParser.parse();
 			final Channel channel = rssParser.getChannel();
 			return channel.getItems();
-		} catch (ParserConfigurationException e) {
-			log.e(DelugeRpcAdapter.this, "Failed to parse RSS feed.");
-		} catch (SAXException e) {
+		} catch (XmlPullParserException e) {
 			log.e(DelugeRpcAdapter.this, "Failed to parse RSS feed.");
 		} catch (IOException e) {
 			log.e(DelugeRpcAdapter.this, "Failed to load RSS feed.");
@@ -21,24 +21,30 @@ import android.support.annotation.NonNull;
 import org.transdroid.daemon.DaemonException;
 import org.transdroid.daemon.DaemonException.ExceptionType;
 import org.transdroid.daemon.DaemonSettings;
+import org.transdroid.daemon.util.RequestMetrics;
 import org.transdroid.daemon.util.TlsSniSocketFactory;
 import se.dimovski.rencode.Rencode;
 
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.Socket;
+import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
 import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterInputStream;
+import java.util.zip.Inflater;
 
 import static org.transdroid.daemon.Deluge.DelugeCommon.RPC_METHOD_DAEMON_LOGIN;
 import static org.transdroid.daemon.Deluge.DelugeCommon.RPC_METHOD_INFO;
+import static org.transdroid.daemon.Deluge.DelugeCommon.RPC_METHOD_SET_EVENT_INTEREST;
 
 /**
  * A Deluge RPC API Client.
@@ -47,13 +53,28 @@ class DelugeRpcClient implements Closeable {
 
 	private static final int RESPONSE_TYPE_INDEX = 0;
 	private static final int RESPONSE_RETURN_VALUE_INDEX = 2;
+	private static final int RESPONSE_EVENT_NAME_INDEX = 1;
+	private static final int RESPONSE_EVENT_ARGS_INDEX = 2;
 	private static final int RPC_ERROR = 2;
+	private static final int RPC_EVENT = 3;
 	private static final byte V2_PROTOCOL_VERSION = 1;
 	private static final int V2_HEADER_SIZE = 5;
 
+	/**
+	 * Receives the events that the daemon pushes after subscribing to them with {@link #subscribe(String...)}.
+	 */
+	interface EventListener {
+		void onEvent(String name, List<?> args);
+	}
+
 	private Socket socket;
 	private final boolean isVersion2;
 	private static AtomicInteger requestId = new AtomicInteger();
+	private EventListener eventListener;
+	// Bytes that were read from the socket but belong to the next (version 1 protocol) message
+	private final byte[] readBuffer = new byte[1024];
+	private int pendingOffset;
+	private int pendingLength;
 
 	DelugeRpcClient(boolean isVersion2) {
 		this.isVersion2 = isVersion2;
@@ -84,6 +105,40 @@ class DelugeRpcClient implements Closeable {
 		}
 	}
 
+	void setEventListener(EventListener eventListener) {
+		this.eventListener = eventListener;
+	}
+
+	/**
+	 * Asks the daemon to push the given events over this connection; events are delivered to the event listener while
+	 * waiting for responses or when calling {@link #readEvent()}.
+	 * @param events The names of the events to subscribe to, such as TorrentAddedEvent
+	 * @throws DaemonException On connection errors or if the daemon refused the subscription
+	 */
+	void subscribe(String... events) throws DaemonException {
+		sendRequest(RPC_METHOD_SET_EVENT_INTEREST, (Object) events);
+	}
+
+	/**
+	 * Blocks until the daemon sends a message, which is delivered to the event listener if it is an event.
+	 * @throws DaemonException If the daemon sent an unexpected message
+	 * @throws IOException On connection errors, including a time out when a read timeout was set
+	 */
+	void readEvent() throws DaemonException, IOException {
+		final List message = readMessage();
+		if (((Number) message.get(RESPONSE_TYPE_INDEX)).intValue() == RPC_EVENT) {
+			dispatchEvent(message);
+		}
+	}
+
+	void setReadTimeout(int timeout) throws DaemonException {
+		try {
+			socket.setSoTimeout(timeout);
+		} catch (SocketException e) {
+			throw new DaemonException(ExceptionType.ConnectionError, e.getMessage());
+		}
+	}
+
 	@NonNull
 	Object sendRequest(String method, Object... args) throws DaemonException {
 		final byte[] requestBytes;
@@ -97,6 +152,7 @@ class DelugeRpcClient implements Closeable {
 			throw new DaemonException(ExceptionType.ConnectionError, "Failed to encode request: " + e.getMessage());
 		}
 		try {
+			RequestMetrics.requestStarted();
 			if (isVersion2) {
 				socket.getOutputStream().write(
 						ByteBuffer.allocate(V2_HEADER_SIZE + requestBytes.length)
@@ -108,6 +164,7 @@ class DelugeRpcClient implements Closeable {
 			} else {
 				socket.getOutputStream().write(requestBytes);
 			}
+			RequestMetrics.sent((isVersion2 ? V2_HEADER_SIZE : 0) + requestBytes.length);
 			return readResponse();
 		} catch (IOException e) {
 			throw new DaemonException(ExceptionType.ConnectionError, e.getMessage());
@@ -133,29 +190,36 @@ class DelugeRpcClient implements Closeable {
 
 	@NonNull
 	private Object readResponse() throws DaemonException, IOException {
-		final InputStream in = socket.getInputStream();
-		final InflaterInputStream inflater = new InflaterInputStream(in);
-		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		while (true) {
+			final List response = readMessage();
+			final int type = ((Number) (response.get(RESPONSE_TYPE_INDEX))).intValue();
 
-		final byte[] buffer;
-		if (isVersion2) {
-			final byte[] header = new byte[V2_HEADER_SIZE];
-			in.read(header, 0, V2_HEADER_SIZE);
-			if (header[0] != V2_PROTOCOL_VERSION) {
-				throw new DaemonException(ExceptionType.ConnectionError, "Unexpected protocol version: " + header[0]);
+			if (type == RPC_EVENT) {
+				// Events may arrive before the response to our request
+				dispatchEvent(response);
+				continue;
 			}
-			buffer = new byte[ByteBuffer.wrap(header).getInt(1)];
-		} else {
-			buffer = new byte[1024];
-		}
 
-		while (inflater.available() > 0) {
-			final int n = inflater.read(buffer);
-			if (n > 0) {
-				out.write(buffer, 0, n);
+			if (type == RPC_ERROR) {
+				throw new DaemonException(ExceptionType.UnexpectedResponse, response.toString());
 			}
+
+			return response.get(RESPONSE_RETURN_VALUE_INDEX);
 		}
-		final byte[] bytes = out.toByteArray();
+	}
+
+	private void dispatchEvent(List message) {
+		if (eventListener != null && message.get(RESPONSE_EVENT_NAME_INDEX) instanceof String) {
+			final Object args = message.get(RESPONSE_EVENT_ARGS_INDEX);
+			eventListener.onEvent((String) message.get(RESPONSE_EVENT_NAME_INDEX), args instanceof List ? (List<?>) args :
+					null);
+		}
+	}
+
+	@NonNull
+	private List readMessage() throws DaemonException, IOException {
+		final byte[] bytes = isVersion2 ? readVersion2Message() : readVersion1Message();
+		RequestMetrics.responseEnded();
 		final Object responseObject = Rencode.decode(bytes);
 
 		if (!(responseObject instanceof List)) {
@@ -170,13 +234,82 @@ class DelugeRpcClient implements Closeable {
 		if (!(response.get(RESPONSE_TYPE_INDEX) instanceof Number)) {
 			throw new DaemonException(ExceptionType.UnexpectedResponse, responseObject.toString());
 		}
-		final int type = ((Number) (response.get(RESPONSE_TYPE_INDEX))).intValue();
+		return response;
+	}
 
-		if (type == RPC_ERROR) {
-			throw new DaemonException(ExceptionType.UnexpectedResponse, responseObject.toString());
+	@NonNull
+	private byte[] readVersion2Message() throws DaemonException, IOException {
+		// Version 2 messages have a header with the exact length of the compressed body
+		final DataInputStream in = new DataInputStream(socket.getInputStream());
+		final byte[] header = new byte[V2_HEADER_SIZE];
+		in.readFully(header);
+		RequestMetrics.received(V2_HEADER_SIZE);
+		if (header[0] != V2_PROTOCOL_VERSION) {
+			throw new DaemonException(ExceptionType.ConnectionError, "Unexpected protocol version: " + header[0]);
+		}
+		final byte[] body = new byte[ByteBuffer.wrap(header).getInt(1)];
+		in.readFully(body);
+		RequestMetrics.received(body.length);
+
+		final Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(body);
+			return inflate(inflater, null);
+		} finally {
+			inflater.end();
 		}
+	}
 
-		return response.get(2);
+	@NonNull
+	private byte[] readVersion1Message() throws IOException {
+		// Version 1 messages are only delimited by the end of the compressed stream, so any bytes we read after it are
+		// kept for the next message
+		final Inflater inflater = new Inflater();
+		try {
+			return inflate(inflater, socket.getInputStream());
+		} finally {
+			inflater.end();
+		}
+	}
+
+	@NonNull
+	private byte[] inflate(Inflater inflater, InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[1024];
+		int inputEnd = 0;
+		try {
+			while (!inflater.finished()) {
+				if (inflater.needsInput()) {
+					if (in == null) {
+						throw new EOFException("Incomplete message");
+					}
+					if (pendingLength == 0) {
+						final int n = in.read(readBuffer);
+						if (n < 0) {
+							throw new EOFException("Connection closed by the daemon");
+						}
+						RequestMetrics.received(n);
+						pendingOffset = 0;
+						pendingLength = n;
+					}
+					inflater.setInput(readBuffer, pendingOffset, pendingLength);
+					inputEnd = pendingOffset + pendingLength;
+					pendingLength = 0;
+				}
+				final int n = inflater.inflate(buffer);
+				if (n == 0 && inflater.needsDictionary()) {
+					throw new IOException("Unexpected compressed data");
+				}
+				out.write(buffer, 0, n);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Invalid compressed data: " + e.getMessage());
+		}
+		if (in != null) {
+			pendingLength = inflater.getRemaining();
+			pendingOffset = inputEnd - pendingLength;
+		}
+		return out.toByteArray();
 	}
 
 	@NonNull
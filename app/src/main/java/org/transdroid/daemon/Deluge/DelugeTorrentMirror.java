@@ -0,0 +1,229 @@
+/*
+ *	This file is part of Transdroid <http://www.transdroid.org>
+ *
+ *	Transdroid is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	Transdroid is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.transdroid.daemon.Deluge;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import org.transdroid.daemon.DaemonException;
+import org.transdroid.daemon.DaemonSettings;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.transdroid.daemon.Deluge.DelugeCommon.RPC_STATUS;
+
+/**
+ * A live copy of the torrents on a Deluge daemon. Once torrents are retrieved repeatedly, a dedicated connection
+ * subscribes to the daemon's torrent events, so that additions, removals and state changes are known without polling
+ * the full status of every torrent. Only the (continuously changing) rates then still need to be polled. Fields that
+ * change without an event (such as the label or the tracker status) are caught up on by a periodic full retrieval,
+ * while torrents that we changed ourselves are marked stale to be retrieved in full directly.
+ */
+class DelugeTorrentMirror implements DelugeRpcClient.EventListener {
+
+	private static final String EVENT_STATE_CHANGED = "TorrentStateChangedEvent";
+	private static final String EVENT_ADDED = "TorrentAddedEvent";
+	private static final String EVENT_REMOVED = "TorrentRemovedEvent";
+	private static final String EVENT_FINISHED = "TorrentFinishedEvent";
+	private static final String EVENT_STORAGE_MOVED = "TorrentStorageMovedEvent";
+	private static final int READ_TIMEOUT = 30 * 1000;
+	private static final long IDLE_TIMEOUT = 2 * 60 * 1000;
+	private static final long RATES_INTERVAL = 5 * 1000;
+	private static final long FULL_INTERVAL = 60 * 1000;
+
+	private final Map<String, Map<String, Object>> torrents = new LinkedHashMap<>();
+	private final Set<String> stale = new HashSet<>();
+	private long lastFullRetrieve = -1;
+	private long lastRatesRetrieve;
+	private volatile long lastUsed;
+	private Thread listener;
+	private boolean subscribed;
+	private boolean live;
+
+	/**
+	 * Whether the mirror is kept up to date by events, so that no full status retrieval is required.
+	 * @return True if the torrents are tracked through events, false if they should be retrieved in full
+	 */
+	synchronized boolean isLive() {
+		lastUsed = SystemClock.elapsedRealtime();
+		return live;
+	}
+
+	/**
+	 * Replaces the mirrored torrents with a full status listing. If torrents are retrieved repeatedly, this starts the
+	 * listening for torrent events; the mirror turns live on the first full listing after the events subscription.
+	 * @param status The full torrents status, by torrent id
+	 * @param settings The daemon settings to connect the events listener with
+	 * @param isVersion2 Whether to use the Deluge 2 protocol
+	 */
+	synchronized void setAll(Map<String, Map<String, Object>> status, DaemonSettings settings, boolean isVersion2) {
+		final long now = SystemClock.elapsedRealtime();
+		torrents.clear();
+		putAll(status);
+		live = subscribed;
+		final boolean repeated = lastFullRetrieve >= 0 && now - lastFullRetrieve < IDLE_TIMEOUT;
+		lastFullRetrieve = now;
+		lastRatesRetrieve = now;
+		lastUsed = now;
+		if (repeated && listener == null) {
+			startListening(settings, isVersion2);
+		}
+	}
+
+	/**
+	 * Adds or replaces the full status of some torrents
+	 * @param status The full status of the torrents, by torrent id
+	 */
+	synchronized void putAll(Map<String, Map<String, Object>> status) {
+		for (Map.Entry<String, Map<String, Object>> torrent : status.entrySet()) {
+			torrents.put(torrent.getKey(), new HashMap<>(torrent.getValue()));
+		}
+	}
+
+	/**
+	 * Updates some fields, typically the transfer rates, of the already known torrents
+	 * @param status The updated fields, by torrent id
+	 */
+	synchronized void mergeAll(Map<String, Map<String, Object>> status) {
+		for (Map.Entry<String, Map<String, Object>> torrent : status.entrySet()) {
+			final Map<String, Object> known = torrents.get(torrent.getKey());
+			if (known != null) {
+				known.putAll(torrent.getValue());
+			}
+		}
+		lastRatesRetrieve = SystemClock.elapsedRealtime();
+	}
+
+	/**
+	 * Returns and forgets the ids of torrents that were added or finished since the last call, for which the full
+	 * status should be retrieved
+	 * @return The torrent ids, which may be empty
+	 */
+	@NonNull
+	synchronized String[] takeStale() {
+		final String[] ids = stale.toArray(new String[stale.size()]);
+		stale.clear();
+		return ids;
+	}
+
+	/**
+	 * Marks a torrent to be retrieved in full on the next retrieval, for example after its label was changed
+	 * @param id The id of the changed torrent
+	 */
+	synchronized void markStale(String id) {
+		if (torrents.containsKey(id)) {
+			stale.add(id);
+		}
+	}
+
+	/**
+	 * Whether all torrents should be retrieved in full again, to catch up on changes that no event is sent for
+	 */
+	synchronized boolean shouldRefreshAll() {
+		return SystemClock.elapsedRealtime() - lastFullRetrieve >= FULL_INTERVAL;
+	}
+
+	synchronized boolean shouldRefreshRates() {
+		return SystemClock.elapsedRealtime() - lastRatesRetrieve >= RATES_INTERVAL;
+	}
+
+	/**
+	 * Returns a copy of the current status of all mirrored torrents
+	 * @return A list with the status map of every torrent
+	 */
+	@NonNull
+	synchronized List<Map<String, Object>> snapshot() {
+		final List<Map<String, Object>> copy = new ArrayList<>(torrents.size());
+		for (Map<String, Object> torrent : torrents.values()) {
+			copy.add(new HashMap<>(torrent));
+		}
+		return copy;
+	}
+
+	@Override
+	public synchronized void onEvent(String name, List<?> args) {
+		if (args == null || args.isEmpty() || !(args.get(0) instanceof String)) {
+			return;
+		}
+		final String id = (String) args.get(0);
+		switch (name) {
+			case EVENT_STATE_CHANGED:
+				final Map<String, Object> torrent = torrents.get(id);
+				if (torrent != null && args.size() > 1) {
+					torrent.put(RPC_STATUS, args.get(1));
+				}
+				break;
+			case EVENT_ADDED:
+			case EVENT_FINISHED:
+			case EVENT_STORAGE_MOVED:
+				stale.add(id);
+				break;
+			case EVENT_REMOVED:
+				torrents.remove(id);
+				stale.remove(id);
+				break;
+		}
+	}
+
+	private void startListening(final DaemonSettings settings, final boolean isVersion2) {
+		listener = new Thread("Deluge events listener") {
+			@Override
+			public void run() {
+				final DelugeRpcClient client = new DelugeRpcClient(isVersion2);
+				try {
+					client.connect(settings);
+					client.setEventListener(DelugeTorrentMirror.this);
+					client.subscribe(EVENT_STATE_CHANGED, EVENT_ADDED, EVENT_REMOVED, EVENT_FINISHED,
+							EVENT_STORAGE_MOVED);
+					client.setReadTimeout(READ_TIMEOUT);
+					synchronized (DelugeTorrentMirror.this) {
+						subscribed = true;
+					}
+					// Keep listening until the torrents are no longer retrieved
+					while (SystemClock.elapsedRealtime() - lastUsed < IDLE_TIMEOUT) {
+						try {
+							client.readEvent();
+						} catch (SocketTimeoutException e) {
+							// No events for a while; check if we are still in use
+						}
+					}
+				} catch (DaemonException | IOException e) {
+					// Events are not available (any more); fall back to full status polling
+				} finally {
+					client.close();
+					synchronized (DelugeTorrentMirror.this) {
+						subscribed = false;
+						live = false;
+						listener = null;
+					}
+				}
+			}
+		};
+		listener.setDaemon(true);
+		listener.start();
+	}
+
+}
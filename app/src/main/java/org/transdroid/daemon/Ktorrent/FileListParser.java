@@ -1,7 +1,7 @@
 package org.transdroid.daemon.Ktorrent;
 
 import java.io.IOException;
-import java.io.Reader;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -9,9 +9,9 @@ import org.transdroid.daemon.DaemonException;
 import org.transdroid.daemon.Priority;
 import org.transdroid.daemon.TorrentFile;
 import org.transdroid.daemon.DaemonException.ExceptionType;
+import org.transdroid.daemon.util.XmlPullParsers;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
 
 /**
  * A Ktorrent-specific parser for it's /data/torrent/files.xml output.
@@ -21,13 +21,13 @@ import org.xmlpull.v1.XmlPullParserFactory;
  */
 public class FileListParser {
 
-	public static List<TorrentFile> parse(Reader in, String torrentDownloadDir) throws DaemonException, LoggedOutException {
+	public static List<TorrentFile> parse(InputStream in, String torrentDownloadDir) throws DaemonException, LoggedOutException {
 
+		XmlPullParser xpp = null;
 		try {
 			
-			// Use a PullParser to handle XML tags one by one
-			XmlPullParser xpp = XmlPullParserFactory.newInstance().newPullParser();
-			xpp.setInput(in);
+			// Use a (reused) PullParser to handle XML tags one by one, reading straight from the stream
+			xpp = XmlPullParsers.obtain(in, XmlPullParsers.DEFAULT_CHARSET);
 
 			// Temp variables to load into torrent objects
 			int i = 0;
@@ -101,6 +101,10 @@ public class FileListParser {
 			throw new DaemonException(ExceptionType.ParsingFailed, e.toString());
 		} catch (IOException e) {
 			throw new DaemonException(ExceptionType.ConnectionError, e.toString());
+		} finally {
+			if (xpp != null) {
+				XmlPullParsers.release(xpp);
+			}
 		}
 		
 	}
@@ -56,7 +56,6 @@ import org.transdroid.daemon.util.HttpHelper;
 
 import java.io.File;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.math.BigInteger;
 import java.net.URI;
 import java.security.MessageDigest;
@@ -254,7 +253,7 @@ public class KtorrentAdapter implements IDaemonAdapter {
 
 			// Read XML response
 			InputStream instream = response.getEntity().getContent();
-			List<Torrent> torrents = StatsParser.parse(new InputStreamReader(instream), settings.getDownloadDir(),
+			List<Torrent> torrents = StatsParser.parse(instream, settings.getDownloadDir(),
 					settings.getOS().getPathSeperator());
 			instream.close();
 			return torrents;
@@ -285,7 +284,7 @@ public class KtorrentAdapter implements IDaemonAdapter {
 
 			// Read XML response
 			InputStream instream = response.getEntity().getContent();
-			List<TorrentFile> files = FileListParser.parse(new InputStreamReader(instream), torrent.getLocationDir());
+			List<TorrentFile> files = FileListParser.parse(instream, torrent.getLocationDir());
 			instream.close();
 
 			// If the files list is empty, it means that this is a single-file torrent
@@ -1,7 +1,7 @@
 package org.transdroid.daemon.Ktorrent;
 
 import java.io.IOException;
-import java.io.Reader;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,9 +10,9 @@ import org.transdroid.daemon.DaemonException;
 import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.TorrentStatus;
 import org.transdroid.daemon.DaemonException.ExceptionType;
+import org.transdroid.daemon.util.XmlPullParsers;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
 
 /**
  * A Ktorrent-specific parser for it's /data/torrents.xml output.
@@ -22,14 +22,13 @@ import org.xmlpull.v1.XmlPullParserFactory;
  */
 public class StatsParser {
 
-	public static List<Torrent> parse(Reader in, String baseDir, String pathSeperator) throws DaemonException, LoggedOutException {
+	public static List<Torrent> parse(InputStream in, String baseDir, String pathSeperator) throws DaemonException, LoggedOutException {
 
+		XmlPullParser xpp = null;
 		try {
 			
-			// Use a PullParser to handle XML tags one by one
-			XmlPullParser xpp = XmlPullParserFactory.newInstance().newPullParser();
-			xpp.setInput(in);
-			//xpp.setInput(new FileReader("/sdcard/torrents.xml")); // Used for debugging
+			// Use a (reused) PullParser to handle XML tags one by one, reading straight from the stream
+			xpp = XmlPullParsers.obtain(in, XmlPullParsers.DEFAULT_CHARSET);
 
 			// Temp variables to load into torrent objects
 			int id = 0;
@@ -158,6 +157,10 @@ public class StatsParser {
 			throw new DaemonException(ExceptionType.ParsingFailed, e.toString());
 		} catch (IOException e) {
 			throw new DaemonException(ExceptionType.ConnectionError, e.toString());
+		} finally {
+			if (xpp != null) {
+				XmlPullParsers.release(xpp);
+			}
 		}
 		
 	}
@@ -0,0 +1,144 @@
+/*
+ *	This file is part of Transdroid <http://www.transdroid.org>
+ *
+ *	Transdroid is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	Transdroid is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.transdroid.daemon;
+
+/**
+ * The download state of every piece of a torrent, packed at 2 bits per piece. Counts per block of pieces are kept
+ * alongside, so that summaries over large ranges of pieces (as drawn in a pieces map) do not need to look at every
+ * single piece.
+ */
+public final class PieceStates {
+
+	public static final int STATE_MISSING = 0;
+	public static final int STATE_DOWNLOADING = 1;
+	public static final int STATE_DONE = 2;
+	/** Only used in summaries: some but not all pieces are done, while none is downloading */
+	public static final int STATE_PARTIAL = 3;
+
+	private static final int PIECES_PER_BYTE = 4;
+	private static final int BLOCK_SIZE = 64;
+
+	private final int count;
+	private final byte[] packed;
+	private final byte[] blockDownloading;
+	private final byte[] blockDone;
+
+	/**
+	 * Creates the piece states from a packed array, as returned by {@link #getPacked()}.
+	 * @param count The number of pieces
+	 * @param packed The states of the pieces, 4 per byte, with the first piece in the lowest bits
+	 */
+	public PieceStates(int count, byte[] packed) {
+		this.count = count;
+		this.packed = packed;
+		int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		this.blockDownloading = new byte[blocks];
+		this.blockDone = new byte[blocks];
+		for (int i = 0; i < count; i++) {
+			int state = get(i);
+			if (state == STATE_DOWNLOADING) {
+				blockDownloading[i / BLOCK_SIZE]++;
+			} else if (state == STATE_DONE) {
+				blockDone[i / BLOCK_SIZE]++;
+			}
+		}
+	}
+
+	/**
+	 * Packs an array of piece states, as reported by the server; unknown states are treated as missing.
+	 * @param states The state of each piece
+	 * @return The packed piece states
+	 */
+	public static PieceStates fromStates(int[] states) {
+		byte[] packed = new byte[(states.length + PIECES_PER_BYTE - 1) / PIECES_PER_BYTE];
+		for (int i = 0; i < states.length; i++) {
+			int state = states[i] == STATE_DOWNLOADING || states[i] == STATE_DONE ? states[i] : STATE_MISSING;
+			packed[i / PIECES_PER_BYTE] |= state << ((i % PIECES_PER_BYTE) * 2);
+		}
+		return new PieceStates(states.length, packed);
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	public int get(int piece) {
+		return (packed[piece / PIECES_PER_BYTE] >> ((piece % PIECES_PER_BYTE) * 2)) & 0x3;
+	}
+
+	public byte[] getPacked() {
+		return packed;
+	}
+
+	/**
+	 * Summarizes the pieces into a number of equally sized buckets, where the last bucket also holds the remaining
+	 * pieces. A bucket is downloading if any of its pieces is, done if all its pieces are, partial if some are done and
+	 * missing otherwise.
+	 * @param bucketCount The number of buckets to summarize into
+	 * @return The state of each bucket, being one of the STATE_ constants
+	 */
+	public byte[] summarize(int bucketCount) {
+		byte[] buckets = new byte[bucketCount];
+		int bucketSize = count / bucketCount;
+		int[] counts = new int[2];
+		for (int i = 0; i < bucketCount; i++) {
+			int start = i * bucketSize;
+			int end = (i == bucketCount - 1) ? count : (i + 1) * bucketSize;
+			countRange(start, end, counts);
+			if (counts[0] > 0) {
+				buckets[i] = STATE_DOWNLOADING;
+			} else if (counts[1] == end - start) {
+				buckets[i] = STATE_DONE;
+			} else if (counts[1] > 0) {
+				buckets[i] = STATE_PARTIAL;
+			} else {
+				buckets[i] = STATE_MISSING;
+			}
+		}
+		return buckets;
+	}
+
+	/**
+	 * Counts the downloading and done pieces in a range, using the block counts for all whole blocks in it.
+	 */
+	private void countRange(int start, int end, int[] counts) {
+		counts[0] = 0;
+		counts[1] = 0;
+		int i = start;
+		while (i < end) {
+			if (i % BLOCK_SIZE == 0 && i + BLOCK_SIZE <= end) {
+				counts[0] += blockDownloading[i / BLOCK_SIZE];
+				counts[1] += blockDone[i / BLOCK_SIZE];
+				i += BLOCK_SIZE;
+			} else {
+				int state = get(i);
+				if (state == STATE_DOWNLOADING) {
+					counts[0]++;
+				} else if (state == STATE_DONE) {
+					counts[1]++;
+				}
+				i++;
+			}
+		}
+	}
+
+}
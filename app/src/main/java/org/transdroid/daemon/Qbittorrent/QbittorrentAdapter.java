@@ -42,6 +42,7 @@ import org.transdroid.daemon.DaemonException.ExceptionType;
 import org.transdroid.daemon.DaemonSettings;
 import org.transdroid.daemon.IDaemonAdapter;
 import org.transdroid.daemon.Label;
+import org.transdroid.daemon.PieceStates;
 import org.transdroid.daemon.Priority;
 import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.TorrentDetails;
@@ -625,12 +626,11 @@ public class QbittorrentAdapter implements IDaemonAdapter {
 			}
 		}
 
-                ArrayList<Integer> pieces = new ArrayList<>();
-                if (pieceStates.length() > 0) {
-		        for (int i = 0; i < pieceStates.length(); i++) {
-                               pieces.add(pieceStates.getInt(i));
-                        }
-                }
+		int[] states = new int[pieceStates.length()];
+		for (int i = 0; i < states.length; i++) {
+			states[i] = pieceStates.getInt(i);
+		}
+		PieceStates pieces = PieceStates.fromStates(states);
 
 		// Return the list
 		return new TorrentDetails(trackers, errors, pieces);
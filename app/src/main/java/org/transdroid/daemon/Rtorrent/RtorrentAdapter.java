@@ -60,6 +60,7 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -86,6 +87,40 @@ public class RtorrentAdapter implements IDaemonAdapter {
 	private DaemonSettings settings;
 	private XMLRPCClient rpcclient;
 	private List<Label> lastKnownLabels = null;
+
+	// @formatter:off
+	private static final String[] RETRIEVE_FIELDS = {
+			"d.hash=",
+			"d.name=",
+			"d.state=",
+			"d.down.rate=",
+			"d.up.rate=",
+			"d.peers_connected=",
+			"d.peers_not_connected=",
+			"d.peers_accounted=",
+			"d.bytes_done=",
+			"d.up.total=",
+			"d.size_bytes=",
+			"d.creation_date=",
+			"d.left_bytes=",
+			"d.complete=",
+			"d.is_active=",
+			"d.is_hash_checking=",
+			"d.is_multi_file=",
+			"d.base_filename=",
+			"d.message=",
+			"d.custom=addtime",
+			"d.custom=seedingtime",
+			"d.custom1=",
+			"d.peers_complete=",
+			"d.peers_accounted=",
+			"d.is_open=" };
+	// Indexes in RETRIEVE_FIELDS that are text rather than numbers
+	private static final int[] RETRIEVE_TEXT_FIELDS = { 0, 1, 17, 18, 19, 20, 21 };
+	// Indexes in RETRIEVE_FIELDS per profile; these always include the down rate, to tell the number type used
+	private static final int[] RETRIEVE_WIDGET_FIELDS = { 0, 1, 2, 3, 4, 8, 9, 10, 11, 12, 13, 14, 15, 18, 19, 20, 24 };
+	private static final int[] RETRIEVE_NOTIFICATION_FIELDS = { 0, 1, 3, 8, 10 };
+	// @formatter:on
 	private Integer version = null;
 
 	public RtorrentAdapter(DaemonSettings settings) {
@@ -109,36 +144,20 @@ public class RtorrentAdapter implements IDaemonAdapter {
 			switch (task.getMethod()) {
 				case Retrieve:
 
-					// @formatter:off
-					Object result = makeRtorrentCall(log, "d.multicall2",
-							new String[] { "", "main",
-							"d.hash=",
-							"d.name=",
-							"d.state=",
-							"d.down.rate=",
-							"d.up.rate=",
-							"d.peers_connected=",
-							"d.peers_not_connected=",
-							"d.peers_accounted=",
-							"d.bytes_done=",
-							"d.up.total=",
-							"d.size_bytes=",
-							"d.creation_date=",
-							"d.left_bytes=",
-							"d.complete=",
-							"d.is_active=",
-							"d.is_hash_checking=",
-							"d.is_multi_file=",
-							"d.base_filename=",
-							"d.message=",
-							"d.custom=addtime",
-							"d.custom=seedingtime",
-							"d.custom1=",
-							"d.peers_complete=",
-							"d.peers_accounted=",
-							"d.is_open=" });
-					// @formatter:on
-					return new RetrieveTaskSuccessResult((RetrieveTask) task, onTorrentsRetrieved(result),
+					// Only ask for the fields and the view the caller needs
+					RetrieveTask retrieveTask = (RetrieveTask) task;
+					int[] projection = getRetrieveProjection(retrieveTask.getProfile());
+					String view = getRetrieveView(retrieveTask.getScope());
+					String[] params = new String[2 + (projection == null ? RETRIEVE_FIELDS.length : projection.length)];
+					params[0] = "";
+					params[1] = view;
+					for (int i = 2; i < params.length; i++) {
+						params[i] = RETRIEVE_FIELDS[projection == null ? i - 2 : projection[i - 2]];
+					}
+					Object result = makeRtorrentCall(log, "d.multicall2", params);
+					// Labels can only be counted if they were retrieved, for all torrents
+					boolean countLabels = projection == null && view.equals("main");
+					return new RetrieveTaskSuccessResult(retrieveTask, onTorrentsRetrieved(result, projection, countLabels),
 							lastKnownLabels);
 
 				case GetTorrentDetails:
@@ -381,7 +400,37 @@ public class RtorrentAdapter implements IDaemonAdapter {
 				(TextUtils.isEmpty(folder) ? DEFAULT_RPC_URL : folder);
 	}
 
-	private List<Torrent> onTorrentsRetrieved(Object response) throws DaemonException {
+	/**
+	 * Returns the indexes in {@link #RETRIEVE_FIELDS} that the given profile needs, or null if it needs all of them
+	 */
+	private int[] getRetrieveProjection(RetrieveTask.Profile profile) {
+		switch (profile) {
+			case Widget:
+				return RETRIEVE_WIDGET_FIELDS;
+			case NotificationCheck:
+				return RETRIEVE_NOTIFICATION_FIELDS;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Returns the rTorrent view that holds (at least) all torrents that may match the given scope
+	 */
+	private String getRetrieveView(RetrieveTask.Scope scope) {
+		switch (scope) {
+			case Downloading:
+				return "leeching";
+			case Seeding:
+				return "seeding";
+			case Active:
+				return "started";
+			default:
+				return "main";
+		}
+	}
+
+	private List<Torrent> onTorrentsRetrieved(Object response, int[] projection, boolean countLabels) throws DaemonException {
 
 		if (response == null || !(response instanceof Object[])) {
 
@@ -398,6 +447,9 @@ public class RtorrentAdapter implements IDaemonAdapter {
 			for (int i = 0; i < responseList.length; i++) {
 
 				Object[] info = (Object[]) responseList[i];
+				if (projection != null) {
+					info = expandProjection(info, projection);
+				}
 				String error = (String) info[18];
 				error = error.equals("") ? null : error;
 
@@ -515,10 +567,12 @@ public class RtorrentAdapter implements IDaemonAdapter {
 
 				}
 			}
-			lastKnownLabels = new ArrayList<Label>();
-			for (Entry<String, Integer> pair : labels.entrySet()) {
-				if (pair.getKey() != null) {
-					lastKnownLabels.add(new Label(pair.getKey(), pair.getValue()));
+			if (countLabels) {
+				lastKnownLabels = new ArrayList<Label>();
+				for (Entry<String, Integer> pair : labels.entrySet()) {
+					if (pair.getKey() != null) {
+						lastKnownLabels.add(new Label(pair.getKey(), pair.getValue()));
+					}
 				}
 			}
 			return torrents;
@@ -527,6 +581,24 @@ public class RtorrentAdapter implements IDaemonAdapter {
 
 	}
 
+	/**
+	 * Places the values of a projected retrieval at their index in {@link #RETRIEVE_FIELDS}, with empty texts and zeros
+	 * for the fields that were not retrieved
+	 */
+	private Object[] expandProjection(Object[] info, int[] projection) {
+		Object[] full = new Object[RETRIEVE_FIELDS.length];
+		// Older rTorrent versions send numbers as Integer rather than Long
+		Object zero = info[Arrays.binarySearch(projection, 3)] instanceof Long ? (Object) 0L : (Object) 0;
+		Arrays.fill(full, zero);
+		for (int textField : RETRIEVE_TEXT_FIELDS) {
+			full[textField] = "";
+		}
+		for (int i = 0; i < projection.length; i++) {
+			full[projection[i]] = info[i];
+		}
+		return full;
+	}
+
 	private List<TorrentFile> onTorrentFilesRetrieved(Object response, Torrent torrent) throws DaemonException {
 
 		if (response == null || !(response instanceof Object[])) {
@@ -0,0 +1,148 @@
+/*
+ *	This file is part of Transdroid <http://www.transdroid.org>
+ *
+ *	Transdroid is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	Transdroid is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.transdroid.daemon;
+
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide circuit breaker per server, shared by everything that executes tasks on servers (the torrents screen,
+ * widgets, background jobs and the control service). After a few consecutive connection failures, tasks on that
+ * server fail directly instead of each waiting for the connection to time out. Once the backoff period is over, a
+ * single task is let through as a probe; if the server responds it is considered healthy again, otherwise the backoff
+ * period is doubled (up to a maximum).
+ */
+public final class ServerHealth {
+
+	private static final int FAILURE_THRESHOLD = 2;
+	private static final long BACKOFF_BASE = 15 * 1000; // 15 seconds
+	private static final long BACKOFF_MAX = 2 * 60 * 1000; // 2 minutes
+	// A probe that never reported back (such as when its thread was killed) no longer holds back other tasks after this
+	private static final long PROBE_TIMEOUT = 2 * 60 * 1000;
+
+	private static final Map<String, Health> servers = new HashMap<>();
+
+	private ServerHealth() {
+	}
+
+	/**
+	 * Asks whether a task may be executed on a server now. If the server is due to be probed, the calling task becomes
+	 * that probe, so its outcome should always be reported back using report().
+	 * @param serverKey The id string of the server to execute a task on
+	 * @return True if the task may be executed, false if it should fail directly as the server is not reachable
+	 */
+	public static synchronized boolean acquire(String serverKey) {
+		Health health = serverKey == null ? null : servers.get(serverKey);
+		if (health == null || health.failures < FAILURE_THRESHOLD) {
+			return true;
+		}
+		long now = SystemClock.elapsedRealtime();
+		if (now < health.retryAt || (health.probeStarted > 0 && now - health.probeStarted < PROBE_TIMEOUT)) {
+			return false;
+		}
+		health.probeStarted = now;
+		return true;
+	}
+
+	/**
+	 * Reports the outcome of a task that was executed on a server.
+	 * @param serverKey The id string of the server the task was executed on
+	 * @param reachable Whether the server responded at all; any response, including errors, counts as reachable
+	 */
+	public static synchronized void report(String serverKey, boolean reachable) {
+		if (serverKey == null) {
+			return;
+		}
+		if (reachable) {
+			servers.remove(serverKey);
+			return;
+		}
+		Health health = servers.get(serverKey);
+		if (health == null) {
+			health = new Health();
+			servers.put(serverKey, health);
+		}
+		health.failures++;
+		health.probeStarted = 0;
+		if (health.failures >= FAILURE_THRESHOLD) {
+			long backoff = BACKOFF_BASE << Math.min(health.failures - FAILURE_THRESHOLD, 10);
+			health.retryAt = SystemClock.elapsedRealtime() + Math.min(backoff, BACKOFF_MAX);
+		}
+	}
+
+	/**
+	 * Ends a task on a server without reporting an outcome, for example when it failed before it could tell whether the
+	 * server responded. If the task was let through as a probe, the next task will be the probe instead.
+	 * @param serverKey The id string of the server the task was executed on
+	 */
+	public static synchronized void release(String serverKey) {
+		Health health = serverKey == null ? null : servers.get(serverKey);
+		if (health != null) {
+			health.probeStarted = 0;
+		}
+	}
+
+	/**
+	 * Whether tasks on some server currently fail directly, because it did not respond recently and it is not yet due
+	 * to be probed again
+	 */
+	public static synchronized boolean isUnavailable(String serverKey) {
+		Health health = serverKey == null ? null : servers.get(serverKey);
+		return health != null && health.failures >= FAILURE_THRESHOLD
+				&& SystemClock.elapsedRealtime() < health.retryAt;
+	}
+
+	/**
+	 * Returns the number of milliseconds until the next task on some server will be let through as a probe.
+	 * @return The time until the server's backoff period is over, or 0 if tasks may be executed now
+	 */
+	public static synchronized long getRetryDelay(String serverKey) {
+		Health health = serverKey == null ? null : servers.get(serverKey);
+		if (health == null || health.failures < FAILURE_THRESHOLD) {
+			return 0;
+		}
+		return Math.max(health.retryAt - SystemClock.elapsedRealtime(), 0);
+	}
+
+	/**
+	 * Ends the backoff period of some server, such that the next task is let through as a probe directly, for example
+	 * when the user explicitly asks to refresh.
+	 */
+	public static synchronized void retryNow(String serverKey) {
+		Health health = serverKey == null ? null : servers.get(serverKey);
+		if (health != null) {
+			health.retryAt = 0;
+		}
+	}
+
+	/**
+	 * Forgets all recorded failures, for example when the server settings changed.
+	 */
+	public static synchronized void clear() {
+		servers.clear();
+	}
+
+	private static class Health {
+		int failures = 0;
+		long retryAt = 0;
+		long probeStarted = 0;
+	}
+
+}
@@ -17,6 +17,8 @@
  */
 package org.transdroid.daemon.Synology;
 
+import android.os.SystemClock;
+
 import com.android.internalcopy.http.multipart.FilePart;
 import com.android.internalcopy.http.multipart.MultipartEntity;
 import com.android.internalcopy.http.multipart.Part;
@@ -66,7 +68,9 @@ import java.net.URI;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The daemon adapter from the Synology Download Station torrent client.
@@ -74,11 +78,15 @@ import java.util.List;
 public class SynologyAdapter implements IDaemonAdapter {
 
 	private static final String LOG_NAME = "Synology daemon";
+	private static final int LIST_PAGE_SIZE = 200;
+	private static final int DETAILS_BATCH_SIZE = 50;
+	private static final long DETAILS_INTERVAL = 5 * 60 * 1000;
 
 	private DaemonSettings settings;
 	private DefaultHttpClient httpClient;
 
 	private String sid;
+	private final Map<String, TaskCache> taskCache = new HashMap<String, TaskCache>();
 
 	public SynologyAdapter(DaemonSettings settings) {
 		this.settings = settings;
@@ -247,26 +255,93 @@ public class SynologyAdapter implements IDaemonAdapter {
 				"&method=resume&id=" + Collections2.joinString(tids, ",")).ensureSuccess(log);
 	}
 
-	private List<Torrent> tasksList(Log log) throws DaemonException {
+	/**
+	 * Lists the tasks in pages, building the torrents of every page as it arrives. The first listing includes all
+	 * details and trackers; after that only the transfer fields are listed. The details and tracker totals that are
+	 * kept per task are requested in batches for new tasks and once they get older than {@link #DETAILS_INTERVAL}.
+	 */
+	private synchronized List<Torrent> tasksList(Log log) throws DaemonException {
 		try {
-			JSONArray jsonTasks = authGet(log, "SYNO.DownloadStation.Task", "1", "DownloadStation/task.cgi",
-					"&method=list&additional=detail,transfer,tracker").getData(log).getJSONArray("tasks");
-			log.d(LOG_NAME, "Tasks = " + jsonTasks.toString());
+			String additional = taskCache.isEmpty() ? "detail,transfer,tracker" : "transfer";
 			List<Torrent> result = new ArrayList<Torrent>();
-			for (int i = 0; i < jsonTasks.length(); i++) {
-				result.add(parseTorrent(i, jsonTasks.getJSONObject(i)));
-			}
+			Map<String, TaskCache> listed = new HashMap<String, TaskCache>();
+			long now = SystemClock.elapsedRealtime();
+			int offset = 0;
+			int total;
+			do {
+				JSONObject page = authGet(log, "SYNO.DownloadStation.Task", "1", "DownloadStation/task.cgi",
+						"&method=list&offset=" + offset + "&limit=" + LIST_PAGE_SIZE + "&additional=" + additional)
+						.getData(log);
+				total = page.getInt("total");
+				JSONArray jsonTasks = page.getJSONArray("tasks");
+				List<String> outdated = new ArrayList<String>();
+				for (int i = 0; i < jsonTasks.length(); i++) {
+					JSONObject jsonTask = jsonTasks.getJSONObject(i);
+					String id = jsonTask.getString("id");
+					TaskCache cache = taskCache.get(id);
+					if (cache == null) {
+						cache = new TaskCache();
+					}
+					JSONObject jsonAdditional = jsonTask.getJSONObject("additional");
+					if (jsonAdditional.has("detail")) {
+						cache.setDetails(jsonAdditional.getJSONObject("detail"), jsonAdditional.optJSONArray("tracker"), now);
+					} else if (cache.updated < 0 || now - cache.updated > DETAILS_INTERVAL) {
+						outdated.add(id);
+					}
+					listed.put(id, cache);
+				}
+				// Make sure that new tasks never show up without their details, seeders and leechers
+				refreshDetails(log, outdated, listed, now);
+				for (int i = 0; i < jsonTasks.length(); i++) {
+					JSONObject jsonTask = jsonTasks.getJSONObject(i);
+					result.add(parseTorrent(result.size(), jsonTask, listed.get(jsonTask.getString("id"))));
+				}
+				if (jsonTasks.length() == 0) {
+					break;
+				}
+				offset += jsonTasks.length();
+			} while (offset < total);
+			log.d(LOG_NAME, "Tasks listed: " + result.size());
+			// Forget about tasks that no longer exist
+			taskCache.clear();
+			taskCache.putAll(listed);
 			return result;
 		} catch (JSONException e) {
 			throw new DaemonException(ExceptionType.ParsingFailed, e.toString());
 		}
 	}
 
-	private List<TorrentFile> fileList(Log log, String torrentId) throws DaemonException {
+	/**
+	 * Requests the details and trackers of the given tasks, in batches, and stores them with the tasks' cache.
+	 */
+	private void refreshDetails(Log log, List<String> outdated, Map<String, TaskCache> caches, long now)
+			throws DaemonException, JSONException {
+		for (int from = 0; from < outdated.size(); from += DETAILS_BATCH_SIZE) {
+			List<String> tids = outdated.subList(from, Math.min(from + DETAILS_BATCH_SIZE, outdated.size()));
+			JSONArray jsonTasks = authGet(log, "SYNO.DownloadStation.Task", "1", "DownloadStation/task.cgi",
+					"&method=getinfo&id=" + Collections2.joinString(tids, ",") + "&additional=detail,tracker")
+					.getData(log).getJSONArray("tasks");
+			for (int i = 0; i < jsonTasks.length(); i++) {
+				JSONObject jsonTask = jsonTasks.getJSONObject(i);
+				TaskCache cache = caches.get(jsonTask.getString("id"));
+				JSONObject jsonAdditional = jsonTask.optJSONObject("additional");
+				if (cache != null && jsonAdditional != null && jsonAdditional.has("detail")) {
+					cache.setDetails(jsonAdditional.getJSONObject("detail"), jsonAdditional.optJSONArray("tracker"), now);
+				}
+			}
+		}
+	}
+
+	private synchronized List<TorrentFile> fileList(Log log, String torrentId) throws DaemonException {
 		try {
+			// Once a task is complete its files no longer change
+			TaskCache cache = taskCache.get(torrentId);
+			if (cache != null && cache.files != null) {
+				return cache.files;
+			}
 			List<TorrentFile> result = new ArrayList<TorrentFile>();
 			JSONObject jsonTask = authGet(log, "SYNO.DownloadStation.Task", "1", "DownloadStation/task.cgi",
-					"&method=getinfo&id=" + torrentId + "&additional=detail,transfer,tracker,file").getData(log)
+					"&method=getinfo&id=" + torrentId + "&additional=file").getData(log)
 					.getJSONArray("tasks").getJSONObject(0);
 			log.d(LOG_NAME, "File list = " + jsonTask.toString());
 			JSONObject additional = jsonTask.getJSONObject("additional");
@@ -288,13 +363,17 @@ public class SynologyAdapter implements IDaemonAdapter {
 				// @formatter:on
 				));
 			}
+			String status = jsonTask.optString("status");
+			if (cache != null && ("finished".equals(status) || "seeding".equals(status))) {
+				cache.files = result;
+			}
 			return result;
 		} catch (JSONException e) {
 			throw new DaemonException(ExceptionType.ParsingFailed, e.toString());
 		}
 	}
 
-	private TorrentDetails torrentDetails(Log log, String torrentId) throws DaemonException {
+	private synchronized TorrentDetails torrentDetails(Log log, String torrentId) throws DaemonException {
 		List<String> trackers = new ArrayList<String>();
 		List<String> errors = new ArrayList<String>();
 		try {
@@ -312,6 +391,11 @@ public class SynologyAdapter implements IDaemonAdapter {
 						errors.add(t.getString("status"));
 					}
 				}
+				// We have fresh tracker totals now as well
+				TaskCache cache = taskCache.get(torrentId);
+				if (cache != null) {
+					cache.setTrackers(tracker);
+				}
 			}
 			return new TorrentDetails(trackers, errors);
 		} catch (JSONException e) {
@@ -319,39 +403,26 @@ public class SynologyAdapter implements IDaemonAdapter {
 		}
 	}
 
-	private Torrent parseTorrent(long id, JSONObject jsonTorrent) throws JSONException, DaemonException {
+	private Torrent parseTorrent(long id, JSONObject jsonTorrent, TaskCache cache) throws JSONException, DaemonException {
 		JSONObject additional = jsonTorrent.getJSONObject("additional");
-		JSONObject detail = additional.getJSONObject("detail");
 		JSONObject transfer = additional.getJSONObject("transfer");
 		long downloaded = transfer.getLong("size_downloaded");
 		int speed = transfer.getInt("speed_download");
 		long size = jsonTorrent.getLong("size");
 		Float eta = Float.valueOf(size - downloaded) / speed;
-		int totalSeeders = 0;
-		int totalLeechers = 0;
-		if (additional.has("tracker")) {
-			JSONArray tracker = additional.getJSONArray("tracker");
-			for (int i = 0; i < tracker.length(); i++) {
-				JSONObject t = tracker.getJSONObject(i);
-				if ("Success".equals(t.getString("status"))) {
-					totalLeechers += t.getInt("peers");
-					totalSeeders += t.getInt("seeds");
-				}
-			}
-		}
 		// @formatter:off
 		return new Torrent(
 				id,
 				jsonTorrent.getString("id"),
 				jsonTorrent.getString("title"),
 				torrentStatus(jsonTorrent.getString("status")),
-				detail.getString("destination"),
+				cache.destination,
 				speed,
 				transfer.getInt("speed_upload"),
-				detail.getInt("connected_seeders"),
-				totalSeeders,
-				detail.getInt("connected_leechers"),
-				totalLeechers,
+				cache.connectedSeeders,
+				cache.totalSeeders,
+				cache.connectedLeechers,
+				cache.totalLeechers,
 				eta.intValue(),
 				downloaded,
 				transfer.getLong("size_uploaded"),
@@ -359,7 +430,7 @@ public class SynologyAdapter implements IDaemonAdapter {
 				(size == 0) ? 0 : (Float.valueOf(downloaded) / size),
 				0,
 				jsonTorrent.getString("title"),
-				new Date(detail.getLong("create_time") * 1000),
+				cache.createTime == 0 ? null : new Date(cache.createTime * 1000),
 				null,
 				"",
 				settings.getType()
@@ -435,6 +506,47 @@ public class SynologyAdapter implements IDaemonAdapter {
 		return httpClient;
 	}
 
+	/**
+	 * What is remembered of a task between listings: its static details, its connected peers and the seeders and
+	 * leechers totals of its trackers (which are refreshed every {@link #DETAILS_INTERVAL}), and its files once the task
+	 * is complete.
+	 */
+	private static class TaskCache {
+
+		private String destination;
+		private long createTime;
+		private int connectedSeeders;
+		private int connectedLeechers;
+		private int totalSeeders;
+		private int totalLeechers;
+		private long updated = -1;
+		private List<TorrentFile> files;
+
+		private void setDetails(JSONObject detail, JSONArray tracker, long now) throws JSONException {
+			destination = detail.getString("destination");
+			createTime = detail.getLong("create_time");
+			connectedSeeders = detail.getInt("connected_seeders");
+			connectedLeechers = detail.getInt("connected_leechers");
+			setTrackers(tracker);
+			updated = now;
+		}
+
+		private void setTrackers(JSONArray tracker) throws JSONException {
+			totalSeeders = 0;
+			totalLeechers = 0;
+			if (tracker != null) {
+				for (int i = 0; i < tracker.length(); i++) {
+					JSONObject t = tracker.getJSONObject(i);
+					if ("Success".equals(t.getString("status"))) {
+						totalLeechers += t.getInt("peers");
+						totalSeeders += t.getInt("seeds");
+					}
+				}
+			}
+		}
+
+	}
+
 	private static class SynoResponse {
 
 		private final HttpResponse response;
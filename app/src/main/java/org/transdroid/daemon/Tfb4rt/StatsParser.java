@@ -1,7 +1,7 @@
 package org.transdroid.daemon.Tfb4rt;
 
 import java.io.IOException;
-import java.io.Reader;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,9 +10,9 @@ import org.transdroid.daemon.DaemonException;
 import org.transdroid.daemon.Torrent;
 import org.transdroid.daemon.TorrentStatus;
 import org.transdroid.daemon.DaemonException.ExceptionType;
+import org.transdroid.daemon.util.XmlPullParsers;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
 
 /**
  * A Torrentflux-b4rt-specific parser for it's stats.xml output.
@@ -22,14 +22,13 @@ import org.xmlpull.v1.XmlPullParserFactory;
  */
 public class StatsParser {
 
-	public static List<Torrent> parse(Reader in) throws DaemonException {
+	public static List<Torrent> parse(InputStream in) throws DaemonException {
 
+		XmlPullParser xpp = null;
 		try {
 			
-			// Use a PullParser to handle XML tags one by one
-			XmlPullParser xpp = XmlPullParserFactory.newInstance().newPullParser();
-			//in = new FileReader("/sdcard/tfdebug.xml");
-			xpp.setInput(in);
+			// Use a (reused) PullParser to handle XML tags one by one, reading straight from the stream
+			xpp = XmlPullParsers.obtain(in, XmlPullParsers.DEFAULT_CHARSET);
 
 			// Temp variables to load into torrent objects
 			int id = 0;
@@ -140,6 +139,10 @@ public class StatsParser {
 			throw new DaemonException(ExceptionType.ParsingFailed, e.toString());
 		} catch (IOException e) {
 			throw new DaemonException(ExceptionType.ConnectionError, e.toString());
+		} finally {
+			if (xpp != null) {
+				XmlPullParsers.release(xpp);
+			}
 		}
 		
 	}
@@ -19,7 +19,6 @@ package org.transdroid.daemon.Tfb4rt;
 
 import java.io.File;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.math.BigInteger;
 import java.net.URI;
 import java.security.MessageDigest;
@@ -165,7 +164,7 @@ public class Tfb4rtAdapter implements IDaemonAdapter {
 
 			// Read XML response
 			InputStream instream = response.getEntity().getContent();
-			List<Torrent> torrents = StatsParser.parse(new InputStreamReader(instream));
+			List<Torrent> torrents = StatsParser.parse(instream);
 			instream.close();
 			return torrents;
 
@@ -19,6 +19,7 @@ package org.transdroid.daemon;
 
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Map;
 
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -29,6 +30,22 @@ import android.os.Parcelable;
  */
 public final class Torrent implements Parcelable, Comparable<Torrent>, Finishable {
 
+	/**
+	 * Used for dates (in milliseconds since the epoch) that are not known
+	 */
+	public static final long NO_DATE = Long.MIN_VALUE;
+	// Done date to use for finished torrents without a known done date, to move them to the bottom of the list
+	private static final long FINISHED_WITHOUT_DATE;
+	static {
+		Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.set(1900, Calendar.DECEMBER, 31);
+		FINISHED_WITHOUT_DATE = cal.getTimeInMillis();
+	}
+	// Parcel formats: all fields, or only a reference to the torrent in the TorrentStore
+	private static final byte PARCEL_FULL = 0;
+	private static final byte PARCEL_REFERENCE = 1;
+
 	final private long id;
 	final private String hash;
 	final private String name;
@@ -52,11 +69,16 @@ public final class Torrent implements Parcelable, Comparable<Torrent>, Finishabl
         private boolean sequentialDownload;
         private boolean firstLastPieceDownload;
 
-	final private Date dateAdded;
-	final private Date dateDone;
+	final private long dateAdded;
+	final private long dateDone;
 	final private String error;
 	final private Daemon daemon;
 
+	// Not parcelled: the server and version under which this torrent is held in the TorrentStore, if any
+	private String storeKey = null;
+	private long storeVersion = 0;
+	private boolean placeholder = false;
+
 	private Torrent(Parcel in) {
 		this.id = in.readLong();
 		this.hash = in.readString();
@@ -82,9 +104,9 @@ public final class Torrent implements Parcelable, Comparable<Torrent>, Finishabl
                 this.firstLastPieceDownload = in.readByte() != 0;
 
 		long lDateAdded = in.readLong();
-		this.dateAdded = (lDateAdded == -1) ? null : new Date(lDateAdded);
+		this.dateAdded = (lDateAdded == -1) ? NO_DATE : lDateAdded;
 		long lDateDone = in.readLong();
-		this.dateDone = (lDateDone == -1) ? null : new Date(lDateDone);
+		this.dateDone = (lDateDone == -1) ? NO_DATE : lDateDone;
 		this.error = in.readString();
 		this.daemon = Daemon.valueOf(in.readString());
 	}
@@ -116,23 +138,18 @@ public final class Torrent implements Parcelable, Comparable<Torrent>, Finishabl
                 this.sequentialDownload = false;
                 this.firstLastPieceDownload = false;
 
-		this.dateAdded = dateAdded;
+		this.dateAdded = dateAdded == null ? NO_DATE : dateAdded.getTime();
 		if (realDateDone != null) {
-			this.dateDone = realDateDone;
+			this.dateDone = realDateDone.getTime();
 		} else {
 			if (this.partDone == 1) {
 				// Finished but no finished date: set so move to bottom of list
-				Calendar cal = Calendar.getInstance();
-				cal.clear();
-				cal.set(1900, Calendar.DECEMBER, 31);
-				this.dateDone = cal.getTime();
+				this.dateDone = FINISHED_WITHOUT_DATE;
 			} else if (eta == -1 || eta == -2) {
 				// UNknown eta: move to the top of the list
-				this.dateDone = new Date(Long.MAX_VALUE);
+				this.dateDone = Long.MAX_VALUE;
 			} else {
-				Calendar cal = Calendar.getInstance();
-				cal.add(Calendar.SECOND, eta);
-				this.dateDone = cal.getTime();
+				this.dateDone = System.currentTimeMillis() + eta * 1000L;
 			}
 		}
 		this.error = error;
@@ -211,10 +228,26 @@ public final class Torrent implements Parcelable, Comparable<Torrent>, Finishabl
         }
 
 	public Date getDateAdded() {
+		return dateAdded == NO_DATE ? null : new Date(dateAdded);
+	}
+
+	/**
+	 * Returns the date added without creating a Date object, as used for sorting
+	 * @return The date added in milliseconds since the epoch, or NO_DATE if not known
+	 */
+	public long getDateAddedMillis() {
 		return dateAdded;
 	}
 
 	public Date getDateDone() {
+		return dateDone == NO_DATE ? null : new Date(dateDone);
+	}
+
+	/**
+	 * Returns the (expected) date done without creating a Date object, as used for sorting
+	 * @return The date done in milliseconds since the epoch, or NO_DATE if not known
+	 */
+	public long getDateDoneMillis() {
 		return dateDone;
 	}
 
@@ -371,6 +404,50 @@ public final class Torrent implements Parcelable, Comparable<Torrent>, Finishabl
 		locationDir = newLocation;
 	}
 
+	/**
+	 * Replaces the label and location strings by equal, shared instances, such that these are held only once for all
+	 * torrents in a list
+	 * @param pool The strings that are already in use, which is updated with this torrent's strings
+	 */
+	void internStrings(Map<String, String> pool) {
+		label = intern(pool, label);
+		locationDir = intern(pool, locationDir);
+	}
+
+	private static String intern(Map<String, String> pool, String value) {
+		if (value == null) {
+			return null;
+		}
+		String shared = pool.get(value);
+		if (shared == null) {
+			pool.put(value, value);
+			return value;
+		}
+		return shared;
+	}
+
+	/**
+	 * Whether this torrent was passed on as a reference that could no longer be resolved, such that only its identity
+	 * (id, hash, name and daemon type) is known and its actual state needs to be retrieved from the server again
+	 * @return True if this is an otherwise empty placeholder torrent
+	 */
+	public boolean isPlaceholder() {
+		return placeholder;
+	}
+
+	void setStored(String storeKey, long storeVersion) {
+		this.storeKey = storeKey;
+		this.storeVersion = storeVersion;
+	}
+
+	String getStoreKey() {
+		return storeKey;
+	}
+
+	long getStoreVersion() {
+		return storeVersion;
+	}
+
 	@Override
 	public String toString() {
 		// (HASH_OR_ID) NAME
@@ -385,7 +462,24 @@ public final class Torrent implements Parcelable, Comparable<Torrent>, Finishabl
 
 	public static final Parcelable.Creator<Torrent> CREATOR = new Parcelable.Creator<Torrent>() {
 		public Torrent createFromParcel(Parcel in) {
-			return new Torrent(in);
+			if (in.readByte() != PARCEL_REFERENCE) {
+				return new Torrent(in);
+			}
+			String serverKey = in.readString();
+			long version = in.readLong();
+			long id = in.readLong();
+			String hash = in.readString();
+			String name = in.readString();
+			Daemon daemon = Daemon.valueOf(in.readString());
+			Torrent stored = TorrentStore.resolve(serverKey, hash == null ? "" + id : hash, version);
+			if (stored != null) {
+				return stored;
+			}
+			// No longer in memory (the process was restarted): only the torrent's identity is known
+			Torrent placeholder = new Torrent(id, hash, name, TorrentStatus.Unknown, null, 0, 0, 0, 0, 0, 0, -1, 0, 0,
+					0, 0f, 0f, null, null, null, null, daemon);
+			placeholder.placeholder = true;
+			return placeholder;
 		}
 
 		public Torrent[] newArray(int size) {
@@ -400,6 +494,18 @@ public final class Torrent implements Parcelable, Comparable<Torrent>, Finishabl
 
 	@Override
 	public void writeToParcel(Parcel dest, int flags) {
+		if (TorrentStore.isCurrent(this)) {
+			// Only write a reference, which the receiver resolves against the store again
+			dest.writeByte(PARCEL_REFERENCE);
+			dest.writeString(storeKey);
+			dest.writeLong(storeVersion);
+			dest.writeLong(id);
+			dest.writeString(hash);
+			dest.writeString(name);
+			dest.writeString(daemon.name());
+			return;
+		}
+		dest.writeByte(PARCEL_FULL);
 		dest.writeLong(id);
 		dest.writeString(hash);
 		dest.writeString(name);
@@ -423,8 +529,8 @@ public final class Torrent implements Parcelable, Comparable<Torrent>, Finishabl
                 dest.writeByte((byte) (sequentialDownload ? 1 : 0));
                 dest.writeByte((byte) (firstLastPieceDownload ? 1 : 0));
 
-		dest.writeLong((dateAdded == null) ? -1 : dateAdded.getTime());
-		dest.writeLong((dateDone == null) ? -1 : dateDone.getTime());
+		dest.writeLong((dateAdded == NO_DATE) ? -1 : dateAdded);
+		dest.writeLong((dateDone == NO_DATE) ? -1 : dateDone);
 		dest.writeString(error);
 		dest.writeString(daemon.name());
 	}
@@ -18,7 +18,6 @@
 package org.transdroid.daemon;
 
 import java.util.List;
-import java.util.ArrayList;
 
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -33,7 +32,7 @@ public final class TorrentDetails implements Parcelable {
 
 	private final List<String> trackers;
 	private final List<String> errors;
-	private final List<Integer> pieces;
+	private final PieceStates pieces;
 
 	public TorrentDetails(List<String> trackers, List<String> errors) {
 		this.trackers = trackers;
@@ -41,7 +40,7 @@ public final class TorrentDetails implements Parcelable {
 		this.pieces = null;
 	}
 
-	public TorrentDetails(List<String> trackers, List<String> errors, List<Integer> pieces) {
+	public TorrentDetails(List<String> trackers, List<String> errors, PieceStates pieces) {
 		this.trackers = trackers;
 		this.errors = errors;
 		this.pieces = pieces;
@@ -51,11 +50,8 @@ public final class TorrentDetails implements Parcelable {
 		this.trackers = in.createStringArrayList();
 		this.errors = in.createStringArrayList();
 
-		int[] piecesarray = in.createIntArray();
-                this.pieces = new ArrayList<Integer>(piecesarray.length);
-                for (int i : piecesarray) {
-                    this.pieces.add(i);
-                }
+		int pieceCount = in.readInt();
+		this.pieces = pieceCount < 0 ? null : new PieceStates(pieceCount, in.createByteArray());
 	}
 	
 	public List<String> getTrackers() {
@@ -92,9 +88,13 @@ public final class TorrentDetails implements Parcelable {
 		return errorsText;
 	}
 
-        public  List<Integer> getPieces() {
-                return this.pieces;
-        }
+	/**
+	 * Returns the download state of the individual pieces, if the server reported these
+	 * @return The piece states, or null if not known
+	 */
+	public PieceStates getPieces() {
+		return this.pieces;
+	}
 
     public static final Parcelable.Creator<TorrentDetails> CREATOR = new Parcelable.Creator<TorrentDetails>() {
     	public TorrentDetails createFromParcel(Parcel in) {
@@ -116,13 +116,12 @@ public final class TorrentDetails implements Parcelable {
 		dest.writeStringList(trackers);
 		dest.writeStringList(errors);
 
-		int[] piecesarray = new int[this.pieces.size()];
-                for(int i = 0; i < this.pieces.size(); i++) {
-                        if (this.pieces.get(i) != null) {
-                                piecesarray[i] = this.pieces.get(i);
-                        }
-                }
-                dest.writeIntArray(piecesarray);
+		if (pieces == null) {
+			dest.writeInt(-1);
+		} else {
+			dest.writeInt(pieces.size());
+			dest.writeByteArray(pieces.getPacked());
+		}
 	}
 
 }
@@ -0,0 +1,129 @@
+/*
+ *	This file is part of Transdroid <http://www.transdroid.org>
+ *
+ *	Transdroid is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	Transdroid is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.transdroid.daemon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A retrieved list of torrents, with the values that are used to sort them held in primitive arrays. Sorting (even
+ * large lists, repeatedly while the user changes filters) then compares plain numbers rather than calling getters and
+ * boxing values or lower-casing names on every comparison. The sort keys are those of {@link TorrentsComparator}, so
+ * sorting the list gives the same order as sorting the torrents with that comparator. All torrents in the list share
+ * equal label and location strings. Values that the user can change locally (status, label and location, through the
+ * mimic methods) are always read from the torrents themselves.
+ */
+public final class TorrentList {
+
+	private final Torrent[] torrents;
+	// The sort keys per sorting property (by ordinal), calculated on first use
+	private final double[][] sortKeys = new double[TorrentsSortBy.values().length][];
+	private String[] sortNames = null;
+
+	public TorrentList(List<Torrent> torrents) {
+		this.torrents = torrents.toArray(new Torrent[torrents.size()]);
+		Map<String, String> stringPool = new HashMap<>();
+		for (Torrent torrent : this.torrents) {
+			torrent.internStrings(stringPool);
+		}
+	}
+
+	public int size() {
+		return torrents.length;
+	}
+
+	public Torrent get(int row) {
+		return torrents[row];
+	}
+
+	/**
+	 * Returns the torrents of this list, or a selection of them, in the order as requested.
+	 * @param include The rows to include, or null to include all torrents
+	 * @param comparator The sorting property and direction to use, which is applied in the same way as when sorting
+	 *            with the comparator directly
+	 * @return A new list of the selected torrents in sorted order
+	 */
+	public ArrayList<Torrent> sorted(BitSet include, final TorrentsComparator comparator) {
+		Integer[] rows;
+		if (include == null) {
+			rows = new Integer[torrents.length];
+			for (int i = 0; i < rows.length; i++) {
+				rows[i] = i;
+			}
+		} else {
+			List<Integer> included = new ArrayList<>(include.cardinality());
+			for (int i = include.nextSetBit(0); i >= 0 && i < torrents.length; i = include.nextSetBit(i + 1)) {
+				included.add(i);
+			}
+			rows = included.toArray(new Integer[included.size()]);
+		}
+		// Stable sort, like Collections.sort, of the row numbers on their precalculated sort keys
+		if (comparator.sortsByName()) {
+			final String[] names = getSortNames(comparator);
+			Arrays.sort(rows, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer row1, Integer row2) {
+					return comparator.compareNames(names[row1], names[row2]);
+				}
+			});
+		} else {
+			final double[] keys = getSortKeys(comparator);
+			Arrays.sort(rows, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer row1, Integer row2) {
+					return comparator.compareKeys(keys[row1], keys[row2]);
+				}
+			});
+		}
+		ArrayList<Torrent> sorted = new ArrayList<>(rows.length);
+		for (Integer row : rows) {
+			sorted.add(torrents[row]);
+		}
+		return sorted;
+	}
+
+	private String[] getSortNames(TorrentsComparator comparator) {
+		if (sortNames == null) {
+			sortNames = new String[torrents.length];
+			for (int i = 0; i < torrents.length; i++) {
+				sortNames[i] = comparator.sortName(torrents[i]);
+			}
+		}
+		return sortNames;
+	}
+
+	private double[] getSortKeys(TorrentsComparator comparator) {
+		TorrentsSortBy sortBy = comparator.getSortBy();
+		double[] keys = sortKeys[sortBy.ordinal()];
+		// The status may be changed locally, so its keys are never reused
+		if (keys == null || sortBy == TorrentsSortBy.Status) {
+			keys = new double[torrents.length];
+			for (int i = 0; i < torrents.length; i++) {
+				keys[i] = comparator.sortKey(torrents[i]);
+			}
+			sortKeys[sortBy.ordinal()] = keys;
+		}
+		return keys;
+	}
+
+}
@@ -52,7 +52,7 @@ public enum TorrentStatus {
 	}
 
 	public int compareStatusCodeTo(TorrentStatus another) {
-		return new Integer(this.getCode()).compareTo(new Integer(another.getCode()));
+		return this.getCode() < another.getCode() ? -1 : (this.getCode() == another.getCode() ? 0 : 1);
 	}
 	
 }
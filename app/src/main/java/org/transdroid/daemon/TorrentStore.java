@@ -0,0 +1,158 @@
+/*
+ *	This file is part of Transdroid <http://www.transdroid.org>
+ *
+ *	Transdroid is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	Transdroid is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.transdroid.daemon;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide store of the torrents that were most recently retrieved from every server. Torrents that are held here
+ * are parcelled as a compact reference (the server id, unique id and version stamp) and resolved against this store
+ * again on the receiving side, so intents, widget click extras and activity results do not need to carry full copies.
+ * Torrents that are not (or no longer) in the store are parcelled in full instead. The stored torrents also serve as
+ * the last known state of a server, to show while it can not be reached.
+ */
+public final class TorrentStore {
+
+	private static final Map<String, Map<String, Torrent>> servers = new HashMap<>();
+	private static final Map<String, List<Label>> labels = new HashMap<>();
+	private static final Map<String, Long> retrievedAt = new HashMap<>();
+	private static long lastVersion = 0;
+
+	private TorrentStore() {
+	}
+
+	/**
+	 * Stores a newly retrieved list of torrents for some server.
+	 * @param serverKey The id string of the server that the torrents were retrieved from
+	 * @param torrents The list of torrents as retrieved from the server
+	 * @param serverLabels The labels as retrieved along with the torrents, or null if these were not retrieved
+	 * @param complete Whether this is the full list, which replaces all stored torrents, or a part of it (such as only
+	 *            the downloading torrents), which replaces only the stored torrents with the same unique id
+	 */
+	public static synchronized void put(String serverKey, List<Torrent> torrents, List<Label> serverLabels,
+			boolean complete) {
+		if (serverKey == null || torrents == null) {
+			return;
+		}
+		// Torrents from an earlier retrieval are no longer current, so these are parcelled in full from now on
+		Map<String, Torrent> stored = complete ? null : servers.get(serverKey);
+		if (stored == null) {
+			// Keep the order in which the server returned the torrents
+			stored = new LinkedHashMap<>(torrents.size() * 2);
+		}
+		for (Torrent torrent : torrents) {
+			torrent.setStored(serverKey, ++lastVersion);
+			stored.put(torrent.getUniqueID(), torrent);
+		}
+		servers.put(serverKey, stored);
+		if (serverLabels != null) {
+			labels.put(serverKey, serverLabels);
+		}
+		retrievedAt.put(serverKey, System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the last known state of a server, for example to show while the server does not respond.
+	 * @param serverKey The id string of the server to get the torrents of
+	 * @return The last retrieved torrents and labels of the server, or null if nothing was retrieved from it yet
+	 */
+	public static synchronized Snapshot getSnapshot(String serverKey) {
+		Map<String, Torrent> stored = servers.get(serverKey);
+		if (stored == null) {
+			return null;
+		}
+		List<Label> serverLabels = labels.get(serverKey);
+		return new Snapshot(new ArrayList<>(stored.values()),
+				serverLabels == null ? new ArrayList<Label>() : new ArrayList<>(serverLabels), retrievedAt.get(serverKey));
+	}
+
+	/**
+	 * Drops all stored torrents, for example when the server settings changed.
+	 */
+	public static synchronized void clear() {
+		servers.clear();
+		labels.clear();
+		retrievedAt.clear();
+	}
+
+	/**
+	 * Whether this exact torrent object is the current one in the store, such that it can be parcelled as a reference
+	 */
+	static synchronized boolean isCurrent(Torrent torrent) {
+		if (torrent.getStoreKey() == null) {
+			return false;
+		}
+		Map<String, Torrent> stored = servers.get(torrent.getStoreKey());
+		return stored != null && stored.get(torrent.getUniqueID()) == torrent;
+	}
+
+	/**
+	 * Resolves a parcelled torrent reference against the store.
+	 * @return The torrent as it was parcelled, or a refreshed copy of it if the server's torrents were retrieved again
+	 *         meanwhile, or null if the torrent is not known (any more), for example after the process was restarted
+	 */
+	static synchronized Torrent resolve(String serverKey, String uniqueId, long version) {
+		Map<String, Torrent> stored = servers.get(serverKey);
+		if (stored == null) {
+			return null;
+		}
+		Torrent torrent = stored.get(uniqueId);
+		if (torrent == null || torrent.getStoreVersion() < version) {
+			// Not a torrent from this process' store (any more)
+			return null;
+		}
+		return torrent;
+	}
+
+	/**
+	 * The torrents and labels that were last retrieved from some server
+	 */
+	public static final class Snapshot {
+
+		private final List<Torrent> torrents;
+		private final List<Label> labels;
+		private final long retrievedAt;
+
+		private Snapshot(List<Torrent> torrents, List<Label> labels, long retrievedAt) {
+			this.torrents = torrents;
+			this.labels = labels;
+			this.retrievedAt = retrievedAt;
+		}
+
+		public List<Torrent> getTorrents() {
+			return torrents;
+		}
+
+		public List<Label> getLabels() {
+			return labels;
+		}
+
+		/**
+		 * The wall clock time in milliseconds at which these torrents were (last) retrieved
+		 */
+		public long getRetrievedAt() {
+			return retrievedAt;
+		}
+
+	}
+
+}
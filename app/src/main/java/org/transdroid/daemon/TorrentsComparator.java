@@ -54,57 +54,75 @@ public class TorrentsComparator implements Comparator<Torrent> {
 	
 	@Override
 	public int compare(Torrent tor1, Torrent tor2) {
-		if (!reversed) {
-			switch (sortBy) {
-			case Status:
-				return tor1.getStatusCode().compareStatusCodeTo(tor2.getStatusCode());
-			case DateAdded:
-				if (tor1.getDateAdded() == null)
-					return -1;
-				if (tor2.getDateAdded() == null)
-					return 1;
-				return tor1.getDateAdded().compareTo(tor2.getDateAdded());
-			case DateDone:
-				return tor1.getDateDone().compareTo(tor2.getDateDone());
-			case Percent:
-				return Float.valueOf(tor1.getDownloadedPercentage()).compareTo(tor2.getDownloadedPercentage());
-			case DownloadSpeed:
-				return Integer.valueOf(tor1.getRateDownload()).compareTo(tor2.getRateDownload());
-			case UploadSpeed:
-				return Integer.valueOf(tor1.getRateUpload()).compareTo(tor2.getRateUpload());
-			case Ratio:
-				return Double.valueOf(tor1.getRatio()).compareTo(tor2.getRatio());
-			case Size:
-				return Double.valueOf(tor1.getTotalSize()).compareTo((double) tor2.getTotalSize());
-			default:
-				return alphanumComparator.compare(tor1.getName().toLowerCase(), tor2.getName().toLowerCase());
-			}
-		} else {
-			switch (sortBy) {
-			case Status:
-				return 0 - tor1.getStatusCode().compareStatusCodeTo(tor2.getStatusCode());
-			case DateAdded:
-				if (tor1.getDateAdded() == null)
-					return 1;
-				if (tor2.getDateAdded() == null)
-					return -1;
-				return 0 - tor1.getDateAdded().compareTo(tor2.getDateAdded());
-			case DateDone:
-				return 0 - tor1.getDateDone().compareTo(tor2.getDateDone());
-			case Percent:
-				return 0 - (Float.valueOf(tor1.getDownloadedPercentage()).compareTo(tor2.getDownloadedPercentage()));
-			case DownloadSpeed:
-				return 0 - (Integer.valueOf(tor1.getRateDownload()).compareTo(tor2.getRateDownload()));
-			case UploadSpeed:
-				return 0 - (Integer.valueOf(tor1.getRateUpload()).compareTo(tor2.getRateUpload()));
-			case Ratio:
-				return 0 - Double.valueOf(tor1.getRatio()).compareTo(tor2.getRatio());
-			case Size:
-				return 0 - Double.valueOf(tor1.getTotalSize()).compareTo((double) tor2.getTotalSize());
-			default:
-				return 0 - alphanumComparator.compare(tor1.getName().toLowerCase(), tor2.getName().toLowerCase());
-			}
+		if (sortsByName()) {
+			return compareNames(sortName(tor1), sortName(tor2));
+		}
+		return compareKeys(sortKey(tor1), sortKey(tor2));
+	}
+
+	/**
+	 * Whether torrents are sorted on their name, using {@link #sortName(Torrent)}, rather than on a numeric property,
+	 * using {@link #sortKey(Torrent)}
+	 */
+	boolean sortsByName() {
+		switch (sortBy) {
+		case Status:
+		case DateAdded:
+		case DateDone:
+		case Percent:
+		case DownloadSpeed:
+		case UploadSpeed:
+		case Ratio:
+		case Size:
+			return false;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Returns the numeric property that torrents are sorted on. A double holds all of these exactly (sizes and dates
+	 * stay far below 2^53) and a missing date (Torrent.NO_DATE) still sorts first.
+	 */
+	double sortKey(Torrent torrent) {
+		switch (sortBy) {
+		case Status:
+			return torrent.getStatusCode().getCode();
+		case DateAdded:
+			return torrent.getDateAddedMillis();
+		case DateDone:
+			return torrent.getDateDoneMillis();
+		case Percent:
+			return torrent.getDownloadedPercentage();
+		case DownloadSpeed:
+			return torrent.getRateDownload();
+		case UploadSpeed:
+			return torrent.getRateUpload();
+		case Ratio:
+			return torrent.getRatio();
+		case Size:
+			return torrent.getTotalSize();
+		default:
+			return 0;
 		}
 	}
 
+	String sortName(Torrent torrent) {
+		return torrent.getName().toLowerCase();
+	}
+
+	int compareKeys(double key1, double key2) {
+		int result = Double.compare(key1, key2);
+		return reversed ? 0 - result : result;
+	}
+
+	int compareNames(String name1, String name2) {
+		int result = alphanumComparator.compare(name1, name2);
+		return reversed ? 0 - result : result;
+	}
+
+	TorrentsSortBy getSortBy() {
+		return sortBy;
+	}
+
 }
@@ -73,10 +73,13 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An adapter that allows for easy access to uTorrent torrent data. Communication is handled via authenticated JSON-RPC
@@ -121,7 +124,11 @@ public class UtorrentAdapter implements IDaemonAdapter, RemoteRssSupplier {
 
 	private static ArrayList<RemoteRssChannel> remoteRssChannels = new ArrayList<>();
 
-
+	// The last known torrents and RSS feeds (as raw JSON rows, by hash and id) and the cache id to request changes with
+	private final Map<String, JSONArray> torrentTable = new LinkedHashMap<>();
+	private final Map<Integer, JSONArray> rssfeedTable = new LinkedHashMap<>();
+	private JSONArray labels = new JSONArray();
+	private String cacheId;
 
 	/**
 	 * Initialises an adapter that provides operations to the uTorrent web daemon
@@ -137,17 +144,13 @@ public class UtorrentAdapter implements IDaemonAdapter, RemoteRssSupplier {
 			switch (task.getMethod()) {
 				case Retrieve:
 
-					// Request all torrents from server
-					JSONObject result = makeUtorrentRequest(log, "&list=1");
-
-					if (result.has("rssfeeds")) {
-						parseJsonRemoteRssLists(result.getJSONArray("rssfeeds"));
+					// Request all (or only the changed) torrents from server
+					synchronized (this) {
+						retrieveTorrents(log);
+						return new RetrieveTaskSuccessResult((RetrieveTask) task,
+								parseJsonRetrieveTorrents(torrentTable.values()), parseJsonRetrieveGetLabels(labels));
 					}
 
-					return new RetrieveTaskSuccessResult((RetrieveTask) task,
-							parseJsonRetrieveTorrents(result.getJSONArray("torrents")),
-							parseJsonRetrieveGetLabels(result.getJSONArray("label")));
-
 				case GetTorrentDetails:
 
 					// Request fine details of a specific torrent
@@ -325,13 +328,87 @@ public class UtorrentAdapter implements IDaemonAdapter, RemoteRssSupplier {
 		}
 	}
 
-	private void parseJsonRemoteRssLists(JSONArray results) {
+	/**
+	 * Updates the locally known torrents, labels and RSS feeds. If a cache id is known, only the torrents and feeds that
+	 * changed since the last request are retrieved and merged into the known state; otherwise, or when the server no
+	 * longer accepts the cache id, the full lists are retrieved.
+	 * @param log The logger to report the retrieval to
+	 * @throws DaemonException On connection or parsing problems
+	 * @throws JSONException On unexpected JSON responses
+	 */
+	private synchronized void retrieveTorrents(Log log) throws DaemonException, JSONException {
+
+		JSONObject result = null;
+		if (cacheId != null) {
+			result = makeUtorrentRequest(log, "&list=1&cid=" + cacheId);
+			if (!result.has("torrentp") && !result.has("torrents")) {
+				log.d(LOG_NAME, "Cache id " + cacheId + " was rejected; requesting the full torrents list");
+				result = null;
+			}
+		}
+		if (result == null) {
+			result = makeUtorrentRequest(log, "&list=1");
+		}
+
+		// Merge the full or changed torrents and drop the removed ones
+		if (result.has("torrents")) {
+			torrentTable.clear();
+			putRows(torrentTable, result.getJSONArray("torrents"));
+		} else {
+			putRows(torrentTable, result.getJSONArray("torrentp"));
+			JSONArray removed = result.optJSONArray("torrentm");
+			for (int i = 0; removed != null && i < removed.length(); i++) {
+				torrentTable.remove(removed.getString(i));
+			}
+		}
+		cacheId = result.optString("torrentc", null);
+		if (result.has("label")) {
+			labels = result.getJSONArray("label");
+		}
+
+		// The RSS feeds are part of the same changes stream
+		boolean rssfeedsChanged = false;
+		if (result.has("rssfeeds")) {
+			rssfeedTable.clear();
+			putRssfeedRows(result.getJSONArray("rssfeeds"));
+			rssfeedsChanged = true;
+		}
+		if (result.has("rssfeedp")) {
+			putRssfeedRows(result.getJSONArray("rssfeedp"));
+			rssfeedsChanged |= result.getJSONArray("rssfeedp").length() > 0;
+		}
+		JSONArray removedFeeds = result.optJSONArray("rssfeedm");
+		for (int i = 0; removedFeeds != null && i < removedFeeds.length(); i++) {
+			rssfeedTable.remove(removedFeeds.getInt(i));
+			rssfeedsChanged = true;
+		}
+		if (rssfeedsChanged) {
+			parseJsonRemoteRssLists(rssfeedTable.values());
+		}
+
+	}
+
+	private void putRows(Map<String, JSONArray> table, JSONArray rows) throws JSONException {
+		for (int i = 0; i < rows.length(); i++) {
+			JSONArray row = rows.getJSONArray(i);
+			table.put(row.getString(RPC_HASH_IDX), row);
+		}
+	}
+
+	private void putRssfeedRows(JSONArray rows) throws JSONException {
+		for (int i = 0; i < rows.length(); i++) {
+			JSONArray row = rows.getJSONArray(i);
+			rssfeedTable.put(row.getInt(0), row);
+		}
+	}
+
+	private void parseJsonRemoteRssLists(Collection<JSONArray> results) {
 		remoteRssChannels = new ArrayList<>();
 		RemoteRssChannel item;
 
-		for (int i = 0; i < results.length(); i++) {
+		for (JSONArray result : results) {
 			try {
-				item = new UTorrentRemoteRssChannel(results.getJSONArray(i));
+				item = new UTorrentRemoteRssChannel(result);
 				remoteRssChannels.add(item);
 			} catch (JSONException e) {
 				// Ignore unparseable items so app doesn't crash.
@@ -543,13 +620,13 @@ public class UtorrentAdapter implements IDaemonAdapter, RemoteRssSupplier {
 		}
 	}
 
-	private ArrayList<Torrent> parseJsonRetrieveTorrents(JSONArray results) throws JSONException {
+	private ArrayList<Torrent> parseJsonRetrieveTorrents(Collection<JSONArray> results) throws JSONException {
 
 		// Parse response
 		ArrayList<Torrent> torrents = new ArrayList<Torrent>();
 		boolean createPaths = !(settings.getDownloadDir() == null || settings.getDownloadDir().equals(""));
-		for (int i = 0; i < results.length(); i++) {
-			JSONArray tor = results.getJSONArray(i);
+		int i = 0;
+		for (JSONArray tor : results) {
 			String name = tor.getString(RPC_NAME_IDX);
 			boolean downloaded = (tor.getLong(RPC_PARTDONE) == 1000l);
 			float available = ((float) tor.getInt(RPC_AVAILABILITY_IDX)) / 65536f; // Integer in 1/65536ths
@@ -580,6 +657,7 @@ public class UtorrentAdapter implements IDaemonAdapter, RemoteRssSupplier {
 					tor.getString(RPC_LABEL_IDX).trim(), addedOnDate, completedOnDate,
 					// uTorrent doesn't give the error message, so just remind that there is some error
 					status == TorrentStatus.Error ? "See GUI for error message" : null, settings.getType()));
+			i++;
 		}
 		return torrents;
 
@@ -636,15 +714,16 @@ public class UtorrentAdapter implements IDaemonAdapter, RemoteRssSupplier {
 	private String getAllHashes(Log log) throws DaemonException, JSONException {
 
 		// Make a retrieve torrents call first to gather all hashes
-		JSONObject result = makeUtorrentRequest(log, "&list=1");
-		ArrayList<Torrent> torrents = parseJsonRetrieveTorrents(result.getJSONArray("torrents"));
+		retrieveTorrents(log);
 
 		// Build a string of hashes of all the torrents
-		String hashes = "";
-		for (Torrent torrent : torrents) {
-			hashes += RPC_URL_HASH + torrent.getUniqueID();
+		StringBuilder hashes = new StringBuilder();
+		synchronized (this) {
+			for (String hash : torrentTable.keySet()) {
+				hashes.append(RPC_URL_HASH).append(hash);
+			}
 		}
-		return hashes;
+		return hashes.toString();
 
 	}
 
@@ -224,6 +224,24 @@ public class VuzeAdapter implements IDaemonAdapter {
 
 	private synchronized Map<String, Object> makeVuzeCall(DaemonMethod method, String serverMethod, Long actOnObject, Object[] params, TorrentStatus torrentStatus) throws DaemonException {
 
+		try {
+			return makeVuzeObjectCall(method, serverMethod, actOnObject, params, torrentStatus);
+		} catch (DaemonException e) {
+			if (e.getType() == ExceptionType.ConnectionError) {
+				// The connection (and with it the object IDs we stored) may have expired; ask for them again next time
+				savedConnectionID = null;
+				savedPluginID = null;
+				savedDownloadManagerID = null;
+				savedTorrentManagerID = null;
+				savedPluginConfigID = null;
+			}
+			throw e;
+		}
+
+	}
+
+	private Map<String, Object> makeVuzeObjectCall(DaemonMethod method, String serverMethod, Long actOnObject, Object[] params, TorrentStatus torrentStatus) throws DaemonException {
+
 		// TODO: It would be nicer to now split each of these steps into separate makeVuzeCalls when there are multiple logical steps such as stopping a torrent before removing it
 	
 		// Initialise the HTTP client
@@ -47,6 +47,7 @@ import org.base64.android.Base64;
 import org.transdroid.daemon.DaemonException;
 import org.transdroid.daemon.DaemonSettings;
 import org.transdroid.daemon.DaemonException.ExceptionType;
+import org.transdroid.daemon.util.HttpHelper;
 import org.transdroid.daemon.util.TlsSniSocketFactory;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -126,6 +127,8 @@ public class VuzeXmlOverHttpClient {
 		registry.register(new Scheme("https", httpsSocketFactory, 443));
 		
         client = new DefaultHttpClient(new ThreadSafeClientConnManager(httpParams, registry), httpParams);
+        client.addRequestInterceptor(HttpHelper.metricsRequestInterceptor);
+        client.addResponseInterceptor(HttpHelper.metricsResponseInterceptor);
         if (settings.shouldUseAuthentication()) {
             if (settings.getUsername() == null || settings.getPassword() == null) {
                     throw new DaemonException(DaemonException.ExceptionType.AuthenticationFailure, "No username or password set, while authentication was enabled.");
@@ -207,7 +210,8 @@ public class VuzeXmlOverHttpClient {
 			// Force preemptive authentication
 			// This makes sure there is an 'Authentication: ' header being send before trying and failing and retrying 
 			// by the basic authentication mechanism of DefaultHttpClient
-			postMethod.addHeader("Authorization", "Basic " + Base64.encodeBytes((username + ":" + password).getBytes()));
+			// (Set rather than add it, as the same request object is reused for every call)
+			postMethod.setHeader("Authorization", "Basic " + Base64.encodeBytes((username + ":" + password).getBytes()));
 			
 			// execute HTTP POST request
 			HttpResponse response = client.execute(postMethod);
@@ -354,6 +358,11 @@ public class VuzeXmlOverHttpClient {
 			// Just continue trying the next type
 		}*/
 		
+		// Only try to parse numbers if it looks like one, as most values are text and failed parses are expensive
+		if (!looksNumeric(rawText)) {
+			return rawText;
+		}
+
 		// Long?
 		try {
 			Long longnum = Long.parseLong(rawText);
@@ -373,5 +382,18 @@ public class VuzeXmlOverHttpClient {
 		// String otherwise
 		return rawText;
 	}
+
+	private static boolean looksNumeric(String rawText) {
+		if (rawText.length() == 0) {
+			return false;
+		}
+		char first = rawText.charAt(0);
+		if (first == '-' || first == '+' || first == '.') {
+			return rawText.length() > 1 && (Character.isDigit(rawText.charAt(1)) || rawText.charAt(1) == '.' ||
+					rawText.equals("-Infinity"));
+		}
+		// Also allow the special Double values, such as for an infinite availability
+		return Character.isDigit(first) || rawText.equals("NaN") || rawText.equals("Infinity");
+	}
 	
 }
@@ -23,9 +23,15 @@ import android.os.Parcelable;
 
 import org.transdroid.core.gui.log.Log;
 import org.transdroid.daemon.Daemon;
+import org.transdroid.daemon.DaemonException;
+import org.transdroid.daemon.DaemonException.ExceptionType;
 import org.transdroid.daemon.DaemonMethod;
+import org.transdroid.daemon.DaemonSettings;
 import org.transdroid.daemon.IDaemonAdapter;
+import org.transdroid.daemon.ServerHealth;
 import org.transdroid.daemon.Torrent;
+import org.transdroid.daemon.TorrentStore;
+import org.transdroid.daemon.util.RequestMetrics;
 
 /**
  * A daemon task represents some action that needs to be performed on the server daemon. It has no capabilities on
@@ -56,7 +62,7 @@ public class DaemonTask implements Parcelable {
 
 	private DaemonTask(Parcel in) {
 		this.method = DaemonMethod.getStatus(in.readInt());
-		this.targetTorrent = in.readParcelable(Torrent.class.getClassLoader());
+		this.targetTorrent = in.readByte() == 0 ? null : Torrent.CREATOR.createFromParcel(in);
 		this.extras = in.readBundle();
 	}
 
@@ -76,7 +82,59 @@ public class DaemonTask implements Parcelable {
 	 * @param log The logger to use when writing exceptions and debug information
 	 */
 	public DaemonTaskResult execute(Log log) {
-		return adapter.executeTask(log, this);
+		String serverKey = adapter.getSettings() == null ? null : adapter.getSettings().getIdString();
+		if (!ServerHealth.acquire(serverKey)) {
+			// The server did not respond recently, so fail directly rather than waiting for yet another time-out
+			return new DaemonTaskFailureResult(this, new DaemonException(ExceptionType.ConnectionError,
+					getServerName() + " did not respond recently; retrying in " +
+							(ServerHealth.getRetryDelay(serverKey) / 1000) + " seconds"));
+		}
+		RequestMetrics.Sample sample = RequestMetrics.start(method);
+		DaemonTaskResult result = null;
+		try {
+			result = adapter.executeTask(log, this);
+		} finally {
+			RequestMetrics.finish(sample, getServerName(), result != null && result.wasSuccessful());
+			if (result == null) {
+				// The adapter threw, which tells nothing about the server, but do let another task probe it
+				ServerHealth.release(serverKey);
+			} else {
+				// Only failing to connect counts against the server; any other error still means that it responded
+				ServerHealth.report(serverKey, !isConnectionFailure(result));
+			}
+		}
+		if (result instanceof RetrieveTaskSuccessResult && serverKey != null && hasAllFields()) {
+			// Keep the retrieved torrents in memory so they can be passed around as references
+			boolean complete = !(this instanceof RetrieveTask) || ((RetrieveTask) this).getScope() == RetrieveTask.Scope.All;
+			TorrentStore.put(serverKey, ((RetrieveTaskSuccessResult) result).getTorrents(),
+					((RetrieveTaskSuccessResult) result).getLabels(), complete);
+		}
+		return result;
+	}
+
+	/**
+	 * Whether the torrents that this task retrieves carry all their fields. Those retrieved for the widget or the
+	 * background checker may carry only some (such as with rTorrent), so they should not replace the stored torrents.
+	 */
+	private boolean hasAllFields() {
+		return !(this instanceof RetrieveTask) || ((RetrieveTask) this).getProfile() == RetrieveTask.Profile.List;
+	}
+
+	private static boolean isConnectionFailure(DaemonTaskResult result) {
+		return result instanceof DaemonTaskFailureResult && ((DaemonTaskFailureResult) result).getException() != null
+				&& ((DaemonTaskFailureResult) result).getException().getType() == ExceptionType.ConnectionError;
+	}
+
+	private String getServerName() {
+		DaemonSettings settings = adapter.getSettings();
+		if (settings == null) {
+			return adapter.getType() == null ? null : adapter.getType().name();
+		}
+		// Include the address, as a server might be reached on a local as well as a remote address
+		if (settings.getName() == null || settings.getName().isEmpty()) {
+			return settings.getHumanReadableIdentifier();
+		}
+		return settings.getName() + " (" + settings.getAddress() + ")";
 	}
 
 	public DaemonMethod getMethod() {
@@ -103,7 +161,13 @@ public class DaemonTask implements Parcelable {
 	@Override
 	public void writeToParcel(Parcel dest, int flags) {
 		dest.writeInt(method.getCode());
-		dest.writeParcelable(targetTorrent, 0);
+		// The torrent is written directly (without its class name) and usually as a compact TorrentStore reference
+		if (targetTorrent == null) {
+			dest.writeByte((byte) 0);
+		} else {
+			dest.writeByte((byte) 1);
+			targetTorrent.writeToParcel(dest, flags);
+		}
 		dest.writeBundle(extras);
 	}
 
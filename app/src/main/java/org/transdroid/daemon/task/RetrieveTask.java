@@ -17,14 +17,52 @@
  */
  package org.transdroid.daemon.task;
 
+import android.os.Bundle;
+
 import org.transdroid.daemon.DaemonMethod;
 import org.transdroid.daemon.IDaemonAdapter;
 
 public class RetrieveTask extends DaemonTask {
-	protected RetrieveTask(IDaemonAdapter adapter) {
-		super(adapter, DaemonMethod.Retrieve, null, null);
+
+	/**
+	 * Which torrent fields the caller will look at. Adapters that can limit what the server sends may leave out the
+	 * other fields (which then have default values); others simply return everything.
+	 */
+	public enum Profile {
+		/** Everything that the torrents list and its navigation (such as labels) show */
+		List,
+		/** Names, status, progress, rates, eta and dates, as shown and sorted by the home screen widget */
+		Widget,
+		/** Only the name and progress, to notice new and finished torrents */
+		NotificationCheck
+	}
+
+	/**
+	 * Which torrents the caller will look at. Adapters that can ask the server for a subset may return only those that
+	 * possibly match; others simply return all torrents, so callers should still filter the result.
+	 */
+	public enum Scope {
+		All, Downloading, Seeding, Active
+	}
+
+	protected RetrieveTask(IDaemonAdapter adapter, Bundle data) {
+		super(adapter, DaemonMethod.Retrieve, null, data);
 	}
 	public static RetrieveTask create(IDaemonAdapter adapter) {
-		return new RetrieveTask(adapter);
+		return create(adapter, Profile.List, Scope.All);
+	}
+	public static RetrieveTask create(IDaemonAdapter adapter, Profile profile, Scope scope) {
+		Bundle data = new Bundle();
+		data.putString("PROFILE", profile.name());
+		data.putString("SCOPE", scope.name());
+		return new RetrieveTask(adapter, data);
+	}
+	public Profile getProfile() {
+		String profile = extras.getString("PROFILE");
+		return profile == null ? Profile.List : Profile.valueOf(profile);
+	}
+	public Scope getScope() {
+		String scope = extras.getString("SCOPE");
+		return scope == null ? Scope.All : Scope.valueOf(scope);
 	}
 }
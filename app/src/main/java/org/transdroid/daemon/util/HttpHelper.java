@@ -21,6 +21,7 @@ import android.net.Uri;
 
 import org.apache.http.Header;
 import org.apache.http.HeaderElement;
+import org.apache.http.HttpConnection;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
@@ -40,12 +41,14 @@ import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.ExecutionContext;
 import org.apache.http.protocol.HttpContext;
 import org.transdroid.daemon.DaemonException;
 import org.transdroid.daemon.DaemonException.ExceptionType;
 import org.transdroid.daemon.DaemonSettings;
 
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -97,6 +100,47 @@ public class HttpHelper {
 		}
 
 	};
+	private static final String METRICS_SENT_BYTES = "transdroid.metrics.sent";
+	/**
+	 * HTTP request interceptor that reports the start of every request to the {@link RequestMetrics} of the task that
+	 * is executed on the current thread
+	 */
+	public static HttpRequestInterceptor metricsRequestInterceptor = new HttpRequestInterceptor() {
+		public void process(final HttpRequest request, final HttpContext context) throws HttpException, IOException {
+			if (RequestMetrics.current() == null) {
+				return;
+			}
+			RequestMetrics.requestStarted();
+			// The connection metrics are counted per (reused) connection, so remember where this request started
+			HttpConnection connection = (HttpConnection) context.getAttribute(ExecutionContext.HTTP_CONNECTION);
+			if (connection != null && connection.getMetrics() != null) {
+				context.setAttribute(METRICS_SENT_BYTES, connection.getMetrics().getSentBytesCount());
+			}
+		}
+	};
+	/**
+	 * HTTP response interceptor that reports the response and, while the response is read, the number of received
+	 * bytes to the {@link RequestMetrics} of the task that is executed on the current thread
+	 */
+	public static HttpResponseInterceptor metricsResponseInterceptor = new HttpResponseInterceptor() {
+		public void process(final HttpResponse response, final HttpContext context) throws HttpException, IOException {
+			RequestMetrics.Sample sample = RequestMetrics.current();
+			if (sample == null) {
+				return;
+			}
+			sample.responseStarted();
+			HttpConnection connection = (HttpConnection) context.getAttribute(ExecutionContext.HTTP_CONNECTION);
+			Object sentBefore = context.getAttribute(METRICS_SENT_BYTES);
+			if (connection != null && connection.getMetrics() != null && sentBefore instanceof Long) {
+				sample.sent(connection.getMetrics().getSentBytesCount() - (Long) sentBefore);
+			}
+			if (response.getEntity() == null) {
+				sample.responseEnded();
+			} else {
+				response.setEntity(new MeteredEntity(response.getEntity(), sample));
+			}
+		}
+	};
 
 	/**
 	 * Creates a standard Apache HttpClient that is thread safe, supports different SSL auth methods and basic
@@ -150,6 +194,9 @@ public class HttpHelper {
 
 		DefaultHttpClient httpclient =
 				new DefaultHttpClient(new ThreadSafeClientConnManager(httpparams, registry), httpparams);
+		// Added first, so that the received bytes are counted before any decompression
+		httpclient.addRequestInterceptor(metricsRequestInterceptor);
+		httpclient.addResponseInterceptor(metricsResponseInterceptor);
 
 		// Authentication credentials
 		if (userBasicAuth) {
@@ -266,4 +313,51 @@ public class HttpHelper {
 
 	}
 
+	/**
+	 * HTTP entity wrapper that reports the bytes read from the response to a task's {@link RequestMetrics} sample
+	 */
+	private static class MeteredEntity extends HttpEntityWrapper {
+
+		private final RequestMetrics.Sample sample;
+
+		public MeteredEntity(final HttpEntity entity, RequestMetrics.Sample sample) {
+			super(entity);
+			this.sample = sample;
+		}
+
+		@Override
+		public InputStream getContent() throws IOException, IllegalStateException {
+			return new FilterInputStream(wrappedEntity.getContent()) {
+				@Override
+				public int read() throws IOException {
+					int b = super.read();
+					if (b < 0) {
+						sample.responseEnded();
+					} else {
+						sample.received(1);
+					}
+					return b;
+				}
+
+				@Override
+				public int read(byte[] buffer, int offset, int length) throws IOException {
+					int n = super.read(buffer, offset, length);
+					if (n < 0) {
+						sample.responseEnded();
+					} else {
+						sample.received(n);
+					}
+					return n;
+				}
+
+				@Override
+				public void close() throws IOException {
+					sample.responseEnded();
+					super.close();
+				}
+			};
+		}
+
+	}
+
 }
\ No newline at end of file
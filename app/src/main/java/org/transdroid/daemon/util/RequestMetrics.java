@@ -0,0 +1,510 @@
+/*
+ *	This file is part of Transdroid <http://www.transdroid.org>
+ *
+ *	Transdroid is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	Transdroid is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.transdroid.daemon.util;
+
+import org.transdroid.daemon.DaemonMethod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Records how long every executed daemon task spent in connecting, the TLS handshake, waiting for the server,
+ * downloading and parsing and how many bytes it sent and received. A sample is started for every task on the thread
+ * that executes it; the transports (HttpHelper's clients, the TLS socket factory and the Deluge RPC client) report their
+ * progress to the sample of the current thread. The most recent samples are kept in a bounded ring buffer, from which
+ * per server and per method summaries can be made.
+ */
+public final class RequestMetrics {
+
+	/**
+	 * The number of samples that are kept; older samples are overwritten
+	 */
+	public static final int CAPACITY = 512;
+
+	private static final ThreadLocal<Sample> current = new ThreadLocal<>();
+	private static final Sample[] samples = new Sample[CAPACITY];
+	private static int next = 0;
+	private static int count = 0;
+
+	private RequestMetrics() {
+	}
+
+	/**
+	 * Starts measuring a task on the current thread, which the transports that it uses will report to.
+	 * @param method The method that is executed
+	 * @return The started sample, to pass to {@link #finish(Sample, String, boolean)} when the task completed
+	 */
+	public static Sample start(DaemonMethod method) {
+		Sample sample = new Sample(method, current.get());
+		current.set(sample);
+		return sample;
+	}
+
+	/**
+	 * Completes a started sample and stores it in the ring buffer.
+	 * @param sample The sample as returned by {@link #start(DaemonMethod)}
+	 * @param server A name that identifies the server (endpoint) that the task was executed on
+	 * @param success Whether the task succeeded
+	 */
+	public static void finish(Sample sample, String server, boolean success) {
+		sample.finish(server, success);
+		if (sample.parent == null) {
+			current.remove();
+		} else {
+			current.set(sample.parent);
+		}
+		synchronized (samples) {
+			samples[next] = sample;
+			next = (next + 1) % CAPACITY;
+			count = Math.min(count + 1, CAPACITY);
+		}
+	}
+
+	/**
+	 * Returns the sample that is measured on the current thread
+	 * @return The current sample, or null if no task is being executed on this thread
+	 */
+	public static Sample current() {
+		return current.get();
+	}
+
+	/**
+	 * Reports that a new connection (the TCP layer) was established
+	 */
+	public static void connected() {
+		Sample sample = current.get();
+		if (sample != null) {
+			sample.connected();
+		}
+	}
+
+	/**
+	 * Reports that the TLS handshake on a new connection completed
+	 */
+	public static void handshakeDone() {
+		Sample sample = current.get();
+		if (sample != null) {
+			sample.handshakeDone();
+		}
+	}
+
+	/**
+	 * Reports that a request is about to be sent to the server
+	 */
+	public static void requestStarted() {
+		Sample sample = current.get();
+		if (sample != null) {
+			sample.requestStarted();
+		}
+	}
+
+	/**
+	 * Reports that some bytes were sent to the server
+	 */
+	public static void sent(long bytes) {
+		Sample sample = current.get();
+		if (sample != null) {
+			sample.sent(bytes);
+		}
+	}
+
+	/**
+	 * Reports that the server started to respond
+	 */
+	public static void responseStarted() {
+		Sample sample = current.get();
+		if (sample != null) {
+			sample.responseStarted();
+		}
+	}
+
+	/**
+	 * Reports that some bytes were received from the server
+	 */
+	public static void received(long bytes) {
+		Sample sample = current.get();
+		if (sample != null) {
+			sample.received(bytes);
+		}
+	}
+
+	/**
+	 * Reports that the response was received completely
+	 */
+	public static void responseEnded() {
+		Sample sample = current.get();
+		if (sample != null) {
+			sample.responseEnded();
+		}
+	}
+
+	/**
+	 * Returns a copy of the recorded samples
+	 * @return The samples in the ring buffer, oldest first
+	 */
+	public static List<Sample> getSamples() {
+		synchronized (samples) {
+			List<Sample> copy = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				copy.add(samples[(next - count + i + CAPACITY) % CAPACITY]);
+			}
+			return copy;
+		}
+	}
+
+	/**
+	 * Drops all recorded samples
+	 */
+	public static void clear() {
+		synchronized (samples) {
+			Arrays.fill(samples, null);
+			next = 0;
+			count = 0;
+		}
+	}
+
+	/**
+	 * Summarizes the recorded samples per server and per method.
+	 * @return The summaries, ordered by server and then by method, in the order that they were first seen
+	 */
+	public static List<Summary> summarize() {
+		Map<String, List<Sample>> grouped = new LinkedHashMap<>();
+		for (Sample sample : getSamples()) {
+			String key = sample.server + "\n" + sample.method;
+			List<Sample> group = grouped.get(key);
+			if (group == null) {
+				group = new ArrayList<>();
+				grouped.put(key, group);
+			}
+			group.add(sample);
+		}
+		List<Summary> summaries = new ArrayList<>(grouped.size());
+		for (List<Sample> group : grouped.values()) {
+			summaries.add(new Summary(group));
+		}
+		Collections.sort(summaries, SUMMARY_ORDER);
+		return summaries;
+	}
+
+	private static final Comparator<Summary> SUMMARY_ORDER = new Comparator<Summary>() {
+		@Override
+		public int compare(Summary a, Summary b) {
+			// Stable sort, so methods stay in the order they were first seen within a server
+			return a.getServer().compareTo(b.getServer());
+		}
+	};
+
+	/**
+	 * Exports the recorded samples as comma-separated values, one line per sample, with times in milliseconds.
+	 * @return The samples as text with a header line
+	 */
+	public static String export() {
+		StringBuilder csv = new StringBuilder(
+				"time,server,method,success,total,connect,tls,wait,download,parse,exchanges,sent,received\n");
+		for (Sample sample : getSamples()) {
+			csv.append(sample.startTime).append(',');
+			csv.append('"').append(sample.server.replace("\"", "\"\"")).append('"').append(',');
+			csv.append(sample.method).append(',');
+			csv.append(sample.success).append(',');
+			csv.append(sample.getTotalMillis()).append(',');
+			csv.append(sample.getConnectMillis()).append(',');
+			csv.append(sample.getTlsMillis()).append(',');
+			csv.append(sample.getWaitMillis()).append(',');
+			csv.append(sample.getDownloadMillis()).append(',');
+			csv.append(sample.getParseMillis()).append(',');
+			csv.append(sample.exchanges).append(',');
+			csv.append(sample.bytesSent).append(',');
+			csv.append(sample.bytesReceived).append('\n');
+		}
+		return csv.toString();
+	}
+
+	/**
+	 * The measurements of a single executed daemon task. Durations are collected over all requests that the task
+	 * makes; time between requests (such as processing one response before sending the next request) is counted as
+	 * parsing time.
+	 */
+	public static final class Sample {
+
+		private static final int PHASE_CONNECT = 0;
+		private static final int PHASE_WAIT = 1;
+		private static final int PHASE_DOWNLOAD = 2;
+		private static final int PHASE_PARSE = 3;
+
+		private String server = "";
+		private final DaemonMethod method;
+		private final long startTime;
+		private final Sample parent;
+		private final long start;
+		private long mark;
+		private int phase = PHASE_CONNECT;
+		private long connect, tls, wait, download, parse, total;
+		private long bytesSent, bytesReceived;
+		private int exchanges;
+		private boolean success;
+
+		private Sample(DaemonMethod method, Sample parent) {
+			this.method = method;
+			this.parent = parent;
+			this.startTime = System.currentTimeMillis();
+			this.start = System.nanoTime();
+			this.mark = start;
+		}
+
+		private long lap() {
+			long now = System.nanoTime();
+			long lap = now - mark;
+			mark = now;
+			return lap;
+		}
+
+		private void addLap() {
+			long lap = lap();
+			switch (phase) {
+				case PHASE_WAIT:
+					wait += lap;
+					break;
+				case PHASE_DOWNLOAD:
+					download += lap;
+					break;
+				case PHASE_PARSE:
+					parse += lap;
+					break;
+				default:
+					connect += lap;
+					break;
+			}
+		}
+
+		public void connected() {
+			connect += lap();
+			phase = PHASE_CONNECT;
+		}
+
+		public void handshakeDone() {
+			tls += lap();
+			phase = PHASE_CONNECT;
+		}
+
+		public void requestStarted() {
+			addLap();
+			phase = PHASE_WAIT;
+			exchanges++;
+		}
+
+		public void sent(long bytes) {
+			bytesSent += bytes;
+		}
+
+		public void responseStarted() {
+			if (phase == PHASE_WAIT) {
+				wait += lap();
+				phase = PHASE_DOWNLOAD;
+			}
+		}
+
+		public void received(long bytes) {
+			responseStarted();
+			bytesReceived += bytes;
+		}
+
+		public void responseEnded() {
+			if (phase == PHASE_WAIT || phase == PHASE_DOWNLOAD) {
+				addLap();
+				phase = PHASE_PARSE;
+			}
+		}
+
+		private void finish(String server, boolean success) {
+			addLap();
+			this.server = server == null ? "" : server;
+			this.total = System.nanoTime() - start;
+			this.success = success;
+		}
+
+		public String getServer() {
+			return server;
+		}
+
+		public DaemonMethod getMethod() {
+			return method;
+		}
+
+		public long getStartTime() {
+			return startTime;
+		}
+
+		public boolean wasSuccessful() {
+			return success;
+		}
+
+		public long getTotalMillis() {
+			return total / 1000000;
+		}
+
+		public long getConnectMillis() {
+			return connect / 1000000;
+		}
+
+		public long getTlsMillis() {
+			return tls / 1000000;
+		}
+
+		public long getWaitMillis() {
+			return wait / 1000000;
+		}
+
+		public long getDownloadMillis() {
+			return download / 1000000;
+		}
+
+		public long getParseMillis() {
+			return parse / 1000000;
+		}
+
+		public long getBytesSent() {
+			return bytesSent;
+		}
+
+		public long getBytesReceived() {
+			return bytesReceived;
+		}
+
+	}
+
+	/**
+	 * Latency percentiles and totals of all recorded samples of one method on one server
+	 */
+	public static final class Summary {
+
+		private final String server;
+		private final DaemonMethod method;
+		private final int count;
+		private final int failures;
+		private final long totalP50, totalP95, connectP50, tlsP50, waitP50, downloadP50, parseP50;
+		private final long bytesSent, bytesReceived;
+
+		private Summary(List<Sample> group) {
+			Sample first = group.get(0);
+			this.server = first.server;
+			this.method = first.method;
+			this.count = group.size();
+			int failures = 0;
+			long sent = 0, received = 0;
+			long[] total = new long[count], connect = new long[count], tls = new long[count], wait = new long[count],
+					download = new long[count], parse = new long[count];
+			for (int i = 0; i < count; i++) {
+				Sample sample = group.get(i);
+				if (!sample.success) {
+					failures++;
+				}
+				sent += sample.bytesSent;
+				received += sample.bytesReceived;
+				total[i] = sample.getTotalMillis();
+				connect[i] = sample.getConnectMillis();
+				tls[i] = sample.getTlsMillis();
+				wait[i] = sample.getWaitMillis();
+				download[i] = sample.getDownloadMillis();
+				parse[i] = sample.getParseMillis();
+			}
+			this.failures = failures;
+			this.bytesSent = sent;
+			this.bytesReceived = received;
+			this.totalP50 = percentile(total, 50);
+			this.totalP95 = percentile(total, 95);
+			this.connectP50 = percentile(connect, 50);
+			this.tlsP50 = percentile(tls, 50);
+			this.waitP50 = percentile(wait, 50);
+			this.downloadP50 = percentile(download, 50);
+			this.parseP50 = percentile(parse, 50);
+		}
+
+		private static long percentile(long[] values, int percentile) {
+			Arrays.sort(values);
+			// Nearest-rank percentile
+			int rank = (int) Math.ceil(percentile / 100.0 * values.length);
+			return values[Math.max(0, rank - 1)];
+		}
+
+		public String getServer() {
+			return server;
+		}
+
+		public DaemonMethod getMethod() {
+			return method;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public int getFailures() {
+			return failures;
+		}
+
+		public long getTotalP50() {
+			return totalP50;
+		}
+
+		public long getTotalP95() {
+			return totalP95;
+		}
+
+		public long getConnectP50() {
+			return connectP50;
+		}
+
+		public long getTlsP50() {
+			return tlsP50;
+		}
+
+		public long getWaitP50() {
+			return waitP50;
+		}
+
+		public long getDownloadP50() {
+			return downloadP50;
+		}
+
+		public long getParseP50() {
+			return parseP50;
+		}
+
+		public long getBytesSent() {
+			return bytesSent;
+		}
+
+		public long getBytesReceived() {
+			return bytesReceived;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%s %s: %d calls (%d failed), p50 %d ms, p95 %d ms", server, method, count,
+					failures, totalP50, totalP95);
+		}
+
+	}
+
+}
@@ -119,6 +119,7 @@ public class TlsSniSocketFactory implements LayeredSocketFactory {
 
 		// create and connect SSL socket, but don't do hostname/certificate verification yet
 		SSLSocket ssl = (SSLSocket) sslSocketFactory.createSocket(InetAddress.getByName(host), port);
+		RequestMetrics.connected();
 
 		// enable TLSv1.1/1.2 if available
 		ssl.setEnabledProtocols(ssl.getSupportedProtocols());
@@ -137,6 +138,7 @@ public class TlsSniSocketFactory implements LayeredSocketFactory {
 
 		// verify hostname and certificate
 		SSLSession session = ssl.getSession();
+		RequestMetrics.handshakeDone();
 		if (!(acceptAllCertificates || selfSignedCertificateKey != null) && !hostnameVerifier.verify(host, session)) {
 			throw new SSLPeerUnverifiedException("Cannot verify hostname: " + host);
 		}
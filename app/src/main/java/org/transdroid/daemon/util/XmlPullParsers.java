@@ -0,0 +1,76 @@
+/*
+ *	This file is part of Transdroid <http://www.transdroid.org>
+ *
+ *	Transdroid is free software: you can redistribute it and/or modify
+ *	it under the terms of the GNU General Public License as published by
+ *	the Free Software Foundation, either version 3 of the License, or
+ *	(at your option) any later version.
+ *
+ *	Transdroid is distributed in the hope that it will be useful,
+ *	but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *	GNU General Public License for more details.
+ *
+ *	You should have received a copy of the GNU General Public License
+ *	along with Transdroid.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.transdroid.daemon.util;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Hands out pull parsers that are kept per thread, so that parsing the stats of a server on every refresh does not
+ * create a new factory and parser each time. Parsers read directly from the (HTTP entity) stream in a fixed charset.
+ */
+public class XmlPullParsers {
+
+	public static final String DEFAULT_CHARSET = "UTF-8";
+
+	private static XmlPullParserFactory factory;
+	private static final ThreadLocal<XmlPullParser> parsers = new ThreadLocal<>();
+
+	/**
+	 * Returns the pull parser of the current thread, set up to read from the given stream. Call
+	 * {@link #release(XmlPullParser)} when done so the parser no longer holds on to the stream.
+	 * @param in The stream to parse, typically the content of an HTTP entity
+	 * @param charset The charset of the stream, such as {@link #DEFAULT_CHARSET}
+	 * @return A parser positioned at the start of the document
+	 * @throws XmlPullParserException If no parser could be created or the input could not be set
+	 */
+	public static XmlPullParser obtain(InputStream in, String charset) throws XmlPullParserException {
+		XmlPullParser xpp = parsers.get();
+		if (xpp == null) {
+			xpp = getFactory().newPullParser();
+			parsers.set(xpp);
+		}
+		xpp.setInput(in, charset);
+		return xpp;
+	}
+
+	/**
+	 * Detaches the parser from the stream it was reading from, so it can be reused on this thread.
+	 * @param xpp The parser as returned by {@link #obtain(InputStream, String)}
+	 */
+	public static void release(XmlPullParser xpp) {
+		try {
+			xpp.setInput((Reader) null);
+		} catch (XmlPullParserException e) {
+			// Parser refuses to be reset; just make sure it is not reused
+			parsers.remove();
+		}
+	}
+
+	private static synchronized XmlPullParserFactory getFactory() throws XmlPullParserException {
+		if (factory == null) {
+			factory = XmlPullParserFactory.newInstance();
+		}
+		return factory;
+	}
+
+}